@@ -5,6 +5,7 @@ import { pinoHttp } from 'pino-http';
 import { sessionRouter } from './routes/session.js';
 import { errorHandler } from './middleware/error-handler.js';
 import { rateLimiter } from './middleware/rate-limiter.js';
+import { decompressBody } from './middleware/decompress.js';
 import { logger } from './lib/logger.js';
 import { startBufferFlush, stopBufferFlush } from './buffer/index.js';
 
@@ -15,7 +16,8 @@ const PORT = process.env.PORT || 4001;
 app.use(helmet());
 app.use(cors());
 
-// Request parsing
+// Request parsing (compressed and binary bodies are decoded first)
+app.use(decompressBody);
 app.use(express.json({ limit: '1mb' }));
 
 // Logging (minimal for high-throughput)
@@ -0,0 +1,305 @@
+/**
+ * Decoder for the compact columnar batch format written by the plugin's BinaryBatchEncoder
+ * (plugins/common/src/main/java/com/mctrack/common/api/BinaryBatchEncoder.java).
+ *
+ * Produces the same object shape as the JSON body of POST /session/batch, so the route
+ * handlers do not care which format a plugin sent.
+ */
+
+export const BINARY_BATCH_CONTENT_TYPE = 'application/vnd.mctrack.batch';
+
+const MAGIC = 'MCTB';
+const VERSION = 1;
+
+const SESSION_STARTS = 1;
+const SESSION_ENDS = 2;
+const HEARTBEATS = 3;
+const PRESENCE = 4;
+const SERVER_SWITCHES = 5;
+const GAMEMODE_CHANGES = 6;
+const PAYMENTS = 7;
+const GAMEMODE_SESSION_STARTS = 8;
+const GAMEMODE_SESSION_ENDS = 9;
+const COMPLETED_SESSIONS = 10;
+
+// Bounds hostile input before any allocation (the body is already capped at 8MB decompressed)
+const MAX_ROWS = 100_000;
+
+type Row = Record<string, unknown>;
+
+export class BatchDecodeError extends Error {}
+
+class Reader {
+  private offset = 0;
+  dictionary: string[] = [];
+  baseTime = 0;
+
+  constructor(private readonly buf: Buffer) {}
+
+  get remaining(): number {
+    return this.buf.length - this.offset;
+  }
+
+  private ensure(bytes: number): void {
+    if (this.offset + bytes > this.buf.length) {
+      throw new BatchDecodeError('Unexpected end of batch');
+    }
+  }
+
+  u8(): number {
+    this.ensure(1);
+    return this.buf[this.offset++];
+  }
+
+  varint(): number {
+    let result = 0;
+    let multiplier = 1;
+    for (let i = 0; i < 8; i++) {
+      const byte = this.u8();
+      result += (byte & 0x7f) * multiplier;
+      if ((byte & 0x80) === 0) {
+        if (!Number.isSafeInteger(result)) {
+          throw new BatchDecodeError('Varint out of range');
+        }
+        return result;
+      }
+      multiplier *= 128;
+    }
+    throw new BatchDecodeError('Varint too long');
+  }
+
+  zigzag(): number {
+    const value = this.varint();
+    return value % 2 === 0 ? value / 2 : -(value + 1) / 2;
+  }
+
+  count(): number {
+    const value = this.varint();
+    if (value > MAX_ROWS) {
+      throw new BatchDecodeError(`Too many rows: ${value}`);
+    }
+    return value;
+  }
+
+  f64(): number {
+    this.ensure(8);
+    const value = this.buf.readDoubleLE(this.offset);
+    this.offset += 8;
+    return value;
+  }
+
+  str(): string | undefined {
+    const header = this.varint();
+    if (header === 0) return undefined;
+    const length = header - 1;
+    this.ensure(length);
+    const value = this.buf.toString('utf8', this.offset, this.offset + length);
+    this.offset += length;
+    return value;
+  }
+
+  ref(): string | undefined {
+    const index = this.varint();
+    if (index === 0) return undefined;
+    const value = this.dictionary[index - 1];
+    if (value === undefined) {
+      throw new BatchDecodeError(`Bad dictionary reference: ${index}`);
+    }
+    return value;
+  }
+
+  uuid(): string {
+    this.ensure(16);
+    const hex = this.buf.toString('hex', this.offset, this.offset + 16);
+    this.offset += 16;
+    return `${hex.slice(0, 8)}-${hex.slice(8, 12)}-${hex.slice(12, 16)}-${hex.slice(16, 20)}-${hex.slice(20)}`;
+  }
+
+  time(): number {
+    return this.baseTime + this.zigzag();
+  }
+
+  // Column readers: each fills one field across every row of the section
+
+  uuids(rows: Row[], field: string): void {
+    const canonical = this.u8() === 1;
+    for (const row of rows) {
+      set(row, field, canonical ? this.uuid() : this.str());
+    }
+  }
+
+  uuidList(count: number): (string | undefined)[] {
+    const canonical = this.u8() === 1;
+    const values: (string | undefined)[] = new Array(count);
+    for (let i = 0; i < count; i++) {
+      values[i] = canonical ? this.uuid() : this.str();
+    }
+    return values;
+  }
+
+  strings(rows: Row[], field: string): void {
+    for (const row of rows) set(row, field, this.str());
+  }
+
+  refs(rows: Row[], field: string): void {
+    for (const row of rows) set(row, field, this.ref());
+  }
+
+  times(rows: Row[], field: string): void {
+    for (const row of rows) row[field] = this.time();
+  }
+}
+
+// Mirrors Gson, which leaves null fields out of the JSON
+function set(row: Row, field: string, value: unknown): void {
+  if (value !== undefined) row[field] = value;
+}
+
+function emptyRows(count: number): Row[] {
+  const rows: Row[] = new Array(count);
+  for (let i = 0; i < count; i++) rows[i] = {};
+  return rows;
+}
+
+/**
+ * Decode a binary batch into the JSON batch shape.
+ * Throws BatchDecodeError on malformed input.
+ */
+export function decodeBinaryBatch(buf: Buffer): Record<string, unknown> {
+  const reader = new Reader(buf);
+
+  if (buf.length < 5 || buf.toString('latin1', 0, 4) !== MAGIC) {
+    throw new BatchDecodeError('Not a binary batch');
+  }
+  reader.u8(); reader.u8(); reader.u8(); reader.u8();
+  const version = reader.u8();
+  if (version !== VERSION) {
+    throw new BatchDecodeError(`Unsupported batch version: ${version}`);
+  }
+
+  reader.baseTime = reader.varint();
+  const dictionarySize = reader.count();
+  for (let i = 0; i < dictionarySize; i++) {
+    reader.dictionary.push(reader.str() ?? '');
+  }
+
+  const body: Record<string, unknown> = {};
+  set(body, 'networkId', reader.ref());
+  set(body, 'serverName', reader.ref());
+
+  const sectionCount = reader.varint();
+  for (let s = 0; s < sectionCount; s++) {
+    const type = reader.u8();
+    const rows = emptyRows(reader.count());
+
+    switch (type) {
+      case SESSION_STARTS:
+      case COMPLETED_SESSIONS:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.strings(rows, 'playerName');
+        reader.refs(rows, 'platform');
+        reader.refs(rows, 'bedrockDevice');
+        reader.strings(rows, 'ipAddress');
+        reader.refs(rows, 'joinDomain');
+        reader.refs(rows, 'serverName');
+        reader.refs(rows, 'gamemode');
+        reader.times(rows, 'timestamp');
+        if (type === COMPLETED_SESSIONS) {
+          reader.times(rows, 'endTimestamp');
+          body.completedSessions = rows;
+        } else {
+          body.sessionStarts = rows;
+        }
+        break;
+      case SESSION_ENDS:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.times(rows, 'timestamp');
+        body.sessionEnds = rows;
+        break;
+      case HEARTBEATS:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.refs(rows, 'serverName');
+        reader.refs(rows, 'gamemode');
+        reader.times(rows, 'timestamp');
+        body.heartbeats = rows;
+        break;
+      case PRESENCE:
+        reader.times(rows, 'timestamp');
+        for (const row of rows) {
+          // Keys come from the client, so avoid inheriting (or overwriting) Object.prototype
+          const servers: Record<string, (string | undefined)[]> = Object.create(null);
+          const groups = reader.count();
+          for (let g = 0; g < groups; g++) {
+            const serverName = reader.ref() ?? '';
+            servers[serverName] = reader.uuidList(reader.count());
+          }
+          row.servers = servers;
+        }
+        body.presence = rows;
+        break;
+      case SERVER_SWITCHES:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.refs(rows, 'fromServer');
+        reader.refs(rows, 'toServer');
+        reader.times(rows, 'timestamp');
+        body.serverSwitches = rows;
+        break;
+      case GAMEMODE_CHANGES:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.refs(rows, 'fromGamemode');
+        reader.refs(rows, 'toGamemode');
+        reader.times(rows, 'timestamp');
+        body.gamemodeChanges = rows;
+        break;
+      case PAYMENTS:
+        reader.uuids(rows, 'paymentUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.strings(rows, 'playerName');
+        for (const row of rows) row.amount = reader.f64();
+        reader.refs(rows, 'currency');
+        reader.refs(rows, 'provider');
+        reader.strings(rows, 'transactionId');
+        reader.times(rows, 'timestamp');
+        for (const row of rows) {
+          const products = emptyRows(reader.count());
+          for (const product of products) {
+            set(product, 'name', reader.str());
+            product.quantity = reader.zigzag();
+            if (reader.u8() === 1) product.price = reader.f64();
+          }
+          row.products = products;
+        }
+        body.payments = rows;
+        break;
+      case GAMEMODE_SESSION_STARTS:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        reader.strings(rows, 'playerName');
+        reader.refs(rows, 'gamemodeId');
+        reader.refs(rows, 'serverName');
+        reader.strings(rows, 'ipAddress');
+        reader.refs(rows, 'platform');
+        reader.refs(rows, 'bedrockDevice');
+        body.gamemodeSessionStarts = rows;
+        break;
+      case GAMEMODE_SESSION_ENDS:
+        reader.uuids(rows, 'sessionUuid');
+        reader.uuids(rows, 'playerUuid');
+        body.gamemodeSessionEnds = rows;
+        break;
+      default:
+        // Sections are not length-prefixed, so an unknown one cannot be skipped
+        throw new BatchDecodeError(`Unknown section type: ${type}`);
+    }
+  }
+
+  if (reader.remaining !== 0) {
+    throw new BatchDecodeError('Trailing bytes after batch');
+  }
+  return body;
+}
@@ -0,0 +1,123 @@
+import { Request, Response, NextFunction } from 'express';
+import zlib from 'zlib';
+import { promisify } from 'util';
+import { ApiError } from './error-handler.js';
+import { BINARY_BATCH_CONTENT_TYPE, BatchDecodeError, decodeBinaryBatch } from '../lib/batch-codec.js';
+
+// Compressed bodies keep the same wire limit as plain JSON; the decompressed size is capped separately
+const MAX_COMPRESSED_BYTES = 1024 * 1024;
+const MAX_DECOMPRESSED_BYTES = 8 * 1024 * 1024;
+
+type Decoder = (input: Buffer) => Promise<Buffer>;
+
+const gunzip = promisify(zlib.gunzip);
+const inflate = promisify(zlib.inflate);
+const brotliDecompress = promisify(zlib.brotliDecompress);
+
+const decoders: Record<string, Decoder> = {
+  gzip: (input) => gunzip(input, { maxOutputLength: MAX_DECOMPRESSED_BYTES }),
+  deflate: (input) => inflate(input, { maxOutputLength: MAX_DECOMPRESSED_BYTES }),
+  br: (input) => brotliDecompress(input, { maxOutputLength: MAX_DECOMPRESSED_BYTES }),
+};
+
+// zstd is only built into Node 22.15+ / 23.8+
+const zstdDecompress = (zlib as unknown as {
+  zstdDecompress?: (input: Buffer, options: { maxOutputLength: number }, cb: (err: Error | null, out: Buffer) => void) => void;
+}).zstdDecompress;
+
+if (typeof zstdDecompress === 'function') {
+  decoders.zstd = (input) => new Promise((resolve, reject) => {
+    zstdDecompress(input, { maxOutputLength: MAX_DECOMPRESSED_BYTES }, (err, out) => (err ? reject(err) : resolve(out)));
+  });
+}
+
+/**
+ * Content encodings accepted on request bodies (advertised to plugins via /session/auth)
+ */
+export const supportedContentEncodings: string[] = Object.keys(decoders);
+
+function readBody(req: Request, limit: number): Promise<Buffer> {
+  return new Promise((resolve, reject) => {
+    const chunks: Buffer[] = [];
+    let size = 0;
+
+    const onData = (chunk: Buffer) => {
+      size += chunk.length;
+      if (size > limit) {
+        // Drain the rest so the response can still be written
+        req.removeListener('data', onData);
+        req.resume();
+        reject(new ApiError(413, 'PAYLOAD_TOO_LARGE', 'Request body too large'));
+        return;
+      }
+      chunks.push(chunk);
+    };
+
+    req.on('data', onData);
+    req.on('end', () => resolve(Buffer.concat(chunks, size)));
+    req.on('error', reject);
+  });
+}
+
+/**
+ * Decompress request bodies sent with a Content-Encoding header and decode binary batches.
+ * Uncompressed JSON requests fall through to express.json unchanged.
+ */
+export async function decompressBody(
+  req: Request,
+  _res: Response,
+  next: NextFunction
+): Promise<void> {
+  const encoding = (req.headers['content-encoding'] || 'identity').toString().trim().toLowerCase();
+  const binaryBatch = Boolean(req.is(BINARY_BATCH_CONTENT_TYPE));
+  if (encoding === 'identity' && !binaryBatch) {
+    return next();
+  }
+
+  try {
+    let body: Buffer;
+    if (encoding === 'identity') {
+      body = await readBody(req, MAX_COMPRESSED_BYTES);
+    } else {
+      const decode = decoders[encoding];
+      if (!decode) {
+        throw new ApiError(415, 'UNSUPPORTED_ENCODING', `Unsupported content encoding: ${encoding}`);
+      }
+
+      const compressed = await readBody(req, MAX_COMPRESSED_BYTES);
+
+      try {
+        body = await decode(compressed);
+      } catch (err) {
+        if ((err as NodeJS.ErrnoException).code === 'ERR_BUFFER_TOO_LARGE') {
+          throw new ApiError(413, 'PAYLOAD_TOO_LARGE', 'Decompressed body too large');
+        }
+        throw new ApiError(400, 'INVALID_ENCODING', 'Failed to decompress request body');
+      }
+    }
+
+    if (binaryBatch) {
+      try {
+        req.body = decodeBinaryBatch(body);
+      } catch (err) {
+        if (err instanceof BatchDecodeError) {
+          throw new ApiError(400, 'INVALID_BATCH', err.message);
+        }
+        throw err;
+      }
+    } else if (req.is('application/json')) {
+      try {
+        req.body = JSON.parse(body.toString('utf8'));
+      } catch {
+        throw new ApiError(400, 'INVALID_JSON', 'Malformed JSON body');
+      }
+    } else {
+      req.body = body;
+    }
+
+    // The stream has been consumed, so express.json skips this request
+    next();
+  } catch (error) {
+    next(error);
+  }
+}
@@ -7,11 +7,30 @@ import { query, insert } from '@mctrack/db/clickhouse';
 import { Platform, BedrockDevice } from '@mctrack/shared';
 import { apiKeyAuth, AuthenticatedRequest } from '../middleware/api-key-auth.js';
 import { ApiError } from '../middleware/error-handler.js';
+import { supportedContentEncodings } from '../middleware/decompress.js';
 import { addSession, addGamemodeSession } from '../buffer/index.js';
 import { redis } from '../lib/redis.js';
 
 const router: IRouter = Router();
 
+// Compressed uploads let plugins send far fewer, larger batches. Advertised via /session/auth;
+// plugins stay at the old limit of 100 until they have seen it
+const MAX_BATCH_EVENTS = 1000;
+
+// A presence snapshot counts as one event but may cover every player on a proxy
+const MAX_PRESENCE_SESSIONS = 20000;
+// Keeps each ALTER ... IN (...) well under ClickHouse's max_query_size
+const PRESENCE_UPDATE_CHUNK = 1000;
+
+// Plugins may resend a payment whose response was lost (from their spool, possibly days later);
+// payments is a plain MergeTree, so each payment_uuid is only inserted once within this window
+const PAYMENT_DEDUP_TTL_SECONDS = 30 * 86400;
+
+/**
+ * Optional batch features this server understands (advertised to plugins via /session/auth)
+ */
+const supportedFeatures = ['presence', 'binary-batch', 'completed-sessions'];
+
 // Convert Date to ClickHouse DateTime format: "2025-12-03 00:49:40"
 function formatDateTimeForClickHouse(date: Date): string {
   return date.toISOString().replace('T', ' ').replace('Z', '').slice(0, 19);
@@ -43,6 +62,9 @@ router.get('/auth', apiKeyAuth, async (req, res, next) => {
       gamemodeId, // null if API key is not scoped to a gamemode
       gamemodeName,
       apiKeyId,
+      contentEncodings: supportedContentEncodings,
+      features: supportedFeatures,
+      maxBatchEvents: MAX_BATCH_EVENTS,
     });
   } catch (error) {
     next(error);
@@ -70,6 +92,15 @@ const sessionEndSchema = z.object({
   sessionUuid: z.string().uuid(),
 });
 
+const presenceSnapshotSchema = z.object({
+  timestamp: z.number().int().positive().optional(),
+  // serverName -> IDs of the network sessions currently on it
+  servers: z.record(z.string().max(100), z.array(z.string().uuid())),
+}).refine(
+  (snapshot) => Object.values(snapshot.servers).reduce((total, ids) => total + ids.length, 0) <= MAX_PRESENCE_SESSIONS,
+  { message: `Maximum ${MAX_PRESENCE_SESSIONS} sessions per presence snapshot` }
+);
+
 const gamemodeSessionSchema = z.object({
   sessionUuid: z.string().uuid(),
   gamemodeId: z.string().uuid(),
@@ -217,6 +248,7 @@ router.post('/gamemode', apiKeyAuth, async (req, res, next) => {
  *   sessionStarts: [...],           // Network session starts (proxy or no-proxy mode)
  *   sessionEnds: [...],             // Network session ends
  *   heartbeats: [...],              // Session heartbeats
+ *   presence: [...],                // Presence snapshots: { timestamp, servers: { name: [sessionUuid] } }
  *   serverSwitches: [...],          // Server switch events (proxy)
  *   gamemodeChanges: [...],         // Vanilla MC gamemode changes (legacy)
  *   gamemodeSessionStarts: [...],   // MCTrack gamemode session starts (Spigot)
@@ -231,24 +263,26 @@ router.post('/batch', apiKeyAuth, async (req, res, next) => {
       sessionStarts = [],
       sessionEnds = [],
       heartbeats = [],
+      presence = [],
       serverSwitches = [],
       gamemodeChanges = [],
       gamemodeSessionStarts = [],
       gamemodeSessionEnds = [],
       payments = [],
+      completedSessions = [],
     } = req.body;
 
-    const totalEvents = sessionStarts.length + sessionEnds.length + heartbeats.length +
+    const totalEvents = sessionStarts.length + sessionEnds.length + heartbeats.length + presence.length +
       serverSwitches.length + gamemodeChanges.length + gamemodeSessionStarts.length +
-      gamemodeSessionEnds.length + payments.length;
+      gamemodeSessionEnds.length + payments.length + completedSessions.length;
 
     if (totalEvents === 0) {
       // Empty batch is ok, just return success
       return res.json({ success: true, processed: 0 });
     }
 
-    if (totalEvents > 100) {
-      throw new ApiError(400, 'BATCH_TOO_LARGE', 'Maximum 100 events per batch');
+    if (totalEvents > MAX_BATCH_EVENTS) {
+      throw new ApiError(400, 'BATCH_TOO_LARGE', `Maximum ${MAX_BATCH_EVENTS} events per batch`);
     }
 
     let processed = 0;
@@ -305,6 +339,49 @@ router.post('/batch', apiKeyAuth, async (req, res, next) => {
       }
     }
 
+    // Process completed sessions - started and ended within one batch, so they are written
+    // once with their end time and never need a Redis entry or an end_time mutation
+    for (const event of completedSessions) {
+      try {
+        const sessionUuid = event.sessionUuid || randomUUID();
+        const cleanUuid = (event.playerUuid || '').replace(/-/g, '');
+        const playerCountry = await getCountryFromIp(event.ipAddress || '0.0.0.0');
+        const startTime = event.timestamp ? new Date(event.timestamp) : new Date();
+        const endTime = event.endTimestamp ? new Date(event.endTimestamp) : startTime;
+
+        addSession({
+          network_id: networkId,
+          session_uuid: sessionUuid,
+          player_uuid: cleanUuid,
+          proxy_id: null,
+          gamemode_id: null,
+          domain: (event.joinDomain || event.domain || '').toLowerCase(),
+          ip_address: event.ipAddress || '0.0.0.0',
+          player_country: playerCountry,
+          platform: (event.platform?.toLowerCase() || 'java') as 'java' | 'bedrock',
+          bedrock_device: event.bedrockDevice || null,
+          start_time: startTime,
+          end_time: endTime,
+          last_heartbeat: endTime,
+        });
+
+        if (cleanUuid && event.playerName) {
+          upsertPlayer(networkId, cleanUuid, {
+            playerUuid: cleanUuid,
+            playerName: event.playerName,
+            domain: event.joinDomain || event.domain || '',
+            ipAddress: event.ipAddress || '0.0.0.0',
+            platform: (event.platform?.toLowerCase() || 'java') as 'java' | 'bedrock',
+            bedrockDevice: event.bedrockDevice,
+          }, playerCountry).catch(() => {});
+        }
+
+        processed++;
+      } catch (err) {
+        console.error('Error processing completed session:', err);
+      }
+    }
+
     // Process session ends
     for (const event of sessionEnds) {
       try {
@@ -352,6 +429,40 @@ router.post('/batch', apiKeyAuth, async (req, res, next) => {
       }
     }
 
+    // Process presence snapshots - one bulk last_heartbeat update for every listed session
+    for (const raw of presence) {
+      try {
+        const snapshot = presenceSnapshotSchema.parse(raw);
+        const now = snapshot.timestamp ? new Date(snapshot.timestamp) : new Date();
+        const sessionUuids = Object.values(snapshot.servers).flat();
+
+        for (let i = 0; i < sessionUuids.length; i += PRESENCE_UPDATE_CHUNK) {
+          const chunk = sessionUuids.slice(i, i + PRESENCE_UPDATE_CHUNK);
+          // IDs are validated as UUIDs above, so they are safe to inline
+          await query(`
+            ALTER TABLE network_sessions
+            UPDATE last_heartbeat = '${formatDateTimeForClickHouse(now)}'
+            WHERE network_id = '${networkId}'
+              AND session_uuid IN (${chunk.map((id) => `'${id}'`).join(', ')})
+          `);
+        }
+
+        // Refresh TTLs in Redis in a single round trip
+        if (sessionUuids.length > 0) {
+          const pipeline = redis.pipeline();
+          for (const sessionUuid of sessionUuids) {
+            pipeline.expire(`session:${sessionUuid}`, 86400);
+          }
+          await pipeline.exec();
+        }
+
+        processed++;
+      } catch (err) {
+        console.error('Error processing presence snapshot:', err);
+        processed++; // Still count as processed, like heartbeats
+      }
+    }
+
     // Process server switches (when players move between backend servers)
     for (const event of serverSwitches) {
       try {
@@ -405,9 +516,16 @@ router.post('/batch', apiKeyAuth, async (req, res, next) => {
     for (const event of payments) {
       try {
         if (event.paymentUuid && event.amount) {
+          const dedupKey = `payment:${networkId}:${event.paymentUuid}`;
+          const first = await redis.set(dedupKey, '1', 'EX', PAYMENT_DEDUP_TTL_SECONDS, 'NX');
+          if (!first) {
+            // Already stored by an earlier delivery of the same payment
+            processed++;
+            continue;
+          }
           await insert('payments', [{
             network_id: networkId,
-            payment_uuid: event.paymentUuid || randomUUID(),
+            payment_uuid: event.paymentUuid,
             merchant_payment_id: event.merchantPaymentId || '',
             player_name: event.playerName || '',
             player_uuid: event.playerUuid?.replace(/-/g, '') || null,
@@ -418,7 +536,11 @@ router.post('/batch', apiKeyAuth, async (req, res, next) => {
             currency: event.currency || 'USD',
             timestamp: event.timestamp ? new Date(event.timestamp) : new Date(),
             products_dump_json: JSON.stringify(event.products || []),
-          }]);
+          }]).catch(async (err) => {
+            // Let a retry of this payment through
+            await redis.del(dedupKey);
+            throw err;
+          });
         }
         processed++;
       } catch (err) {
@@ -0,0 +1,27 @@
+import { test } from 'node:test';
+import assert from 'node:assert/strict';
+import { readFileSync } from 'node:fs';
+import { decodeBinaryBatch, BatchDecodeError } from '../src/lib/batch-codec.js';
+
+// Encoded from golden-batch.json by the plugin's BinaryBatchGoldenTest
+const fixture = (name: string) => readFileSync(new URL(`./fixtures/${name}`, import.meta.url));
+
+test('decodes the plugin golden batch to its JSON body', () => {
+  const decoded = decodeBinaryBatch(fixture('golden-batch.bin'));
+  const expected = JSON.parse(fixture('golden-batch.json').toString('utf8'));
+
+  // Presence maps are created without a prototype; compare plain JSON values
+  assert.deepEqual(JSON.parse(JSON.stringify(decoded)), expected);
+});
+
+test('rejects a truncated batch', () => {
+  const golden = fixture('golden-batch.bin');
+
+  assert.throws(() => decodeBinaryBatch(golden.subarray(0, golden.length - 1)), BatchDecodeError);
+});
+
+test('rejects trailing bytes', () => {
+  const golden = fixture('golden-batch.bin');
+
+  assert.throws(() => decodeBinaryBatch(Buffer.concat([golden, Buffer.from([0])])), BatchDecodeError);
+});
@@ -0,0 +1,29 @@
+plugins {
+    java
+    id("me.champeau.jmh")
+}
+
+dependencies {
+    implementation(project(":common"))
+    implementation("com.google.code.gson:gson:2.10.1")
+}
+
+// ./gradlew :benchmarks:loadTest --args="--players=20000 --duration=1800 --error-rate=0.02"
+tasks.register<JavaExec>("loadTest") {
+    group = "verification"
+    description = "Runs synthetic players against an in-process mock ingestion server and reports throughput, latency and losses."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.mctrack.loadtest.LoadHarness")
+    maxHeapSize = "1g"
+}
+
+// ./gradlew :benchmarks:jmh [-PjmhIncludes=EventQueue] writes build/results/jmh/results.json
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (findProperty("jmhIncludes") as String?)?.let { includes.add(it) }
+}
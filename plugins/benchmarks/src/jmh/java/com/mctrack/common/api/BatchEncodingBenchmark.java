@@ -0,0 +1,90 @@
+package com.mctrack.common.api;
+
+import com.google.gson.GsonBuilder;
+import com.mctrack.common.model.TrackedEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a batch of queued events into a request body: coalescing, sorting events
+ * into payload sections ({@code filterByType}) and encoding as JSON (Gson) or binary.
+ *
+ * <p>{@link EncodedSize#bytesPerBatch} reports the encoded size, so the results show bytes/op
+ * next to ns/op; add {@code -prof gc} for allocation per batch.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BatchEncodingBenchmark {
+
+    @Param({BenchmarkEvents.HEARTBEATS, BenchmarkEvents.SESSIONS, BenchmarkEvents.MIXED})
+    public String mix;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    @Param({"json", "binary"})
+    public String format;
+
+    private List<TrackedEvent> events;
+    private BatchPayload payload;
+    private BatchEncoder encoder;
+    private BatchBuffer buffer;
+    private EventCoalescer coalescer;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytesPerBatch;
+        public long bytesPerEvent;
+    }
+
+    @Setup
+    public void setUp() {
+        events = BenchmarkEvents.generate(mix, batchSize, 42);
+        payload = BatchSender.buildPayload("network", "proxy-1", events);
+        encoder = "binary".equals(format)
+            ? new BinaryBatchEncoder()
+            : new JsonBatchEncoder(new GsonBuilder().create());
+        buffer = new BatchBuffer(64 * 1024);
+        coalescer = new EventCoalescer();
+    }
+
+    @Benchmark
+    public BatchPayload buildPayload() {
+        return BatchSender.buildPayload("network", "proxy-1", events);
+    }
+
+    @Benchmark
+    public List<TrackedEvent> coalesce() {
+        // The coalescer may return its input, so hand it a fresh list like takeBatch does
+        return coalescer.coalesce(new ArrayList<>(events), true);
+    }
+
+    @Benchmark
+    public void encode(EncodedSize size, Blackhole blackhole) throws IOException {
+        buffer.reset();
+        encoder.encode(payload, buffer);
+        size.bytesPerBatch = buffer.size();
+        size.bytesPerEvent = buffer.size() / batchSize;
+        blackhole.consume(buffer);
+    }
+
+    /**
+     * The whole path from a taken batch to request bytes, as {@code BatchSender.send} runs it.
+     */
+    @Benchmark
+    public void takeAndEncode(EncodedSize size, Blackhole blackhole) throws IOException {
+        List<TrackedEvent> batch = coalescer.coalesce(new ArrayList<>(events), true);
+        buffer.reset();
+        encoder.encode(BatchSender.buildPayload("network", "proxy-1", batch), buffer);
+        size.bytesPerBatch = buffer.size();
+        size.bytesPerEvent = buffer.size() / batchSize;
+        blackhole.consume(buffer);
+    }
+}
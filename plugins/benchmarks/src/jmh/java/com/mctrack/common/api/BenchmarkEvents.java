@@ -0,0 +1,110 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic event mixes shared by the benchmarks.
+ */
+final class BenchmarkEvents {
+    static final String HEARTBEATS = "heartbeats";
+    static final String SESSIONS = "sessions";
+    static final String MIXED = "mixed";
+
+    private static final String[] SERVERS = { "lobby", "survival", "skyblock", "bedwars-1", "bedwars-2" };
+
+    private BenchmarkEvents() {
+    }
+
+    /**
+     * {@code count} events of the given mix for a pool of players.
+     *
+     * <ul>
+     *   <li>heartbeats: heartbeats only, the steady-state load</li>
+     *   <li>sessions: starts, switches and ends, a login storm</li>
+     *   <li>mixed: mostly heartbeats with some session traffic, switches and payments</li>
+     * </ul>
+     */
+    static List<TrackedEvent> generate(String mix, int count, long seed) {
+        Random random = new Random(seed);
+        int players = Math.max(1, count / 4);
+        String[] playerUuids = new String[players];
+        String[] sessionUuids = new String[players];
+        for (int i = 0; i < players; i++) {
+            playerUuids[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+            sessionUuids[i] = new UUID(random.nextLong(), random.nextLong()).toString();
+        }
+
+        List<TrackedEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int player = random.nextInt(players);
+            String server = SERVERS[random.nextInt(SERVERS.length)];
+            int roll = random.nextInt(100);
+            switch (mix) {
+                case HEARTBEATS:
+                    events.add(heartbeat(sessionUuids[player], playerUuids[player], server));
+                    break;
+                case SESSIONS:
+                    events.add(roll < 40 ? start(sessionUuids[player], playerUuids[player], server)
+                        : roll < 70 ? switchOf(sessionUuids[player], playerUuids[player], server)
+                        : new SessionEndEvent(sessionUuids[player], playerUuids[player]));
+                    break;
+                case MIXED:
+                    if (roll < 70) {
+                        events.add(heartbeat(sessionUuids[player], playerUuids[player], server));
+                    } else if (roll < 80) {
+                        events.add(start(sessionUuids[player], playerUuids[player], server));
+                    } else if (roll < 90) {
+                        events.add(new SessionEndEvent(sessionUuids[player], playerUuids[player]));
+                    } else if (roll < 98) {
+                        events.add(switchOf(sessionUuids[player], playerUuids[player], server));
+                    } else {
+                        events.add(payment(random, playerUuids[player]));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown event mix: " + mix);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * One presence snapshot covering {@code sessions} sessions spread over the servers.
+     */
+    static PresenceSnapshot presence(int sessions, long seed) {
+        Random random = new Random(seed);
+        Map<String, List<String>> servers = new HashMap<>();
+        for (int i = 0; i < sessions; i++) {
+            servers.computeIfAbsent(SERVERS[random.nextInt(SERVERS.length)], key -> new ArrayList<>())
+                .add(new UUID(random.nextLong(), random.nextLong()).toString());
+        }
+        return new PresenceSnapshot(servers);
+    }
+
+    private static SessionHeartbeatEvent heartbeat(String sessionUuid, String playerUuid, String server) {
+        return new SessionHeartbeatEvent(sessionUuid, playerUuid, server, null);
+    }
+
+    private static SessionStartEvent start(String sessionUuid, String playerUuid, String server) {
+        return new SessionStartEvent(sessionUuid, playerUuid, "Player" + (playerUuid.hashCode() & 0xffff),
+            Platform.JAVA, null, null, "play.example.com", server, null);
+    }
+
+    private static ServerSwitchEvent switchOf(String sessionUuid, String playerUuid, String server) {
+        return new ServerSwitchEvent(sessionUuid, playerUuid, "lobby", server);
+    }
+
+    private static PaymentEvent payment(Random random, String playerUuid) {
+        return new PaymentEvent(new UUID(random.nextLong(), random.nextLong()).toString(), playerUuid,
+            "Player", 4.99 + random.nextInt(20), "USD", "tebex", "tbx-" + random.nextInt(1_000_000),
+            Collections.singletonList(new PaymentProduct("VIP Rank", 1, 4.99)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.TrackedEvent;
+import com.mctrack.common.queue.EventQueue;
+import com.mctrack.common.queue.OverflowPolicy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the event queue that every {@code track*} call goes through.
+ *
+ * <p>{@code mpsc} has producers offering (as server/proxy threads do) while one consumer polls
+ * (as the flush does); change the producer count with {@code -tg N,1}. {@code full} keeps the
+ * queue at capacity so every offer runs the overflow policy.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Group)
+public class EventQueueBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    @Param({"10000"})
+    public int capacity;
+
+    @Param({"drop-oldest", "reject"})
+    public String policy;
+
+    private EventQueue<TrackedEvent> queue;
+    private TrackedEvent[] events;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        queue = new EventQueue<>(capacity, OverflowPolicy.fromConfig(policy, OverflowPolicy.DROP_OLDEST), 0,
+            MCTrackAPI::priorityOf);
+        List<TrackedEvent> mixed = BenchmarkEvents.generate(BenchmarkEvents.MIXED, EVENTS, 42);
+        events = mixed.toArray(new TrackedEvent[0]);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(4)
+    public boolean offer(Cursor cursor) {
+        return queue.offer(events[cursor.next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public TrackedEvent poll() {
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("full")
+    @GroupThreads(4)
+    public boolean offerWhenFull(Cursor cursor) {
+        return queue.offer(events[cursor.next++ & (EVENTS - 1)]);
+    }
+}
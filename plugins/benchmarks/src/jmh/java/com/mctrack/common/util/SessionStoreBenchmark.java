@@ -0,0 +1,80 @@
+package com.mctrack.common.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session map churn: joins, quits, server switches and lookups against a populated
+ * {@link SessionStore}, plus the heartbeat-time reads. Run with {@code -t N} to add contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SessionStoreBenchmark {
+
+    private static final String[] SERVERS = { "lobby", "survival", "skyblock", "bedwars-1", "bedwars-2" };
+
+    @Param({"1000", "20000"})
+    public int onlinePlayers;
+
+    private SessionStore store;
+    private UUID[] players;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        store = new SessionStore();
+        players = new UUID[onlinePlayers];
+        for (int i = 0; i < onlinePlayers; i++) {
+            players[i] = UUID.randomUUID();
+            store.createSession(players[i], "Player" + i);
+            store.updateServer(players[i], SERVERS[i % SERVERS.length]);
+        }
+    }
+
+    /**
+     * A player quits and rejoins on another server: remove, create and index.
+     */
+    @Benchmark
+    public PlayerSession rejoin() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID player = players[random.nextInt(onlinePlayers)];
+        store.removeSession(player);
+        PlayerSession session = store.createSession(player, "Player");
+        store.updateServer(player, SERVERS[random.nextInt(SERVERS.length)]);
+        return session;
+    }
+
+    @Benchmark
+    public void switchServer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.updateServer(players[random.nextInt(onlinePlayers)], SERVERS[random.nextInt(SERVERS.length)]);
+    }
+
+    @Benchmark
+    public PlayerSession lookup() {
+        return store.getSession(players[ThreadLocalRandom.current().nextInt(onlinePlayers)]);
+    }
+
+    @Benchmark
+    public int countOnServer() {
+        return store.getOnlineCount(SERVERS[ThreadLocalRandom.current().nextInt(SERVERS.length)]);
+    }
+
+    /**
+     * What a presence heartbeat reads every interval.
+     */
+    @Benchmark
+    public int snapshotByServer() {
+        int[] total = new int[1];
+        store.forEachServer((server, sessions) -> total[0] += sessions.size());
+        return total[0];
+    }
+
+    @Benchmark
+    public UUID nextSessionId() {
+        return SessionIdGenerator.timeOrdered().next();
+    }
+}
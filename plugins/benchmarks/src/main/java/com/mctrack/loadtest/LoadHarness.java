@@ -0,0 +1,359 @@
+package com.mctrack.loadtest;
+
+import com.mctrack.common.api.MCTrackAPI;
+import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.util.SessionStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Load and soak test: a proxy's worth of synthetic players driving a real {@link MCTrackAPI}
+ * and {@link SessionStore} against a {@link MockIngestServer} in the same JVM.
+ *
+ * <pre>
+ * ./gradlew :benchmarks:loadTest --args="--players=20000 --duration=1800 --error-rate=0.02 --throttle-rate=0.01"
+ * </pre>
+ *
+ * <p>Prints a status line every {@code --report-interval} seconds and a summary at the end:
+ * sustained events/sec, delivery latency from event timestamp to arrival at the mock, heap
+ * footprint and how many session starts, ends, switches and payments never arrived. After the
+ * players stop, the harness ends their sessions and waits up to {@code --drain-timeout} seconds
+ * for delivery before stopping the API. Exits with status 1 if any event was lost.</p>
+ *
+ * <p>Client settings are written to a temporary config.yml; {@code --set=key=value} adds any
+ * config.yml option (for example {@code --set=queue-capacity=50000}). Coalescing stays on as in
+ * production: a server switch merged into a later one counts as delivered, and so do the start
+ * and end folded into a completed session.</p>
+ */
+public final class LoadHarness {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("players", "2000");
+        DEFAULTS.put("threads", "4");
+        DEFAULTS.put("duration", "300");
+        DEFAULTS.put("join-rate", "200");
+        DEFAULTS.put("quit-rate", "20");
+        DEFAULTS.put("switch-rate", "50");
+        DEFAULTS.put("payment-rate", "1");
+        DEFAULTS.put("servers", "8");
+        DEFAULTS.put("heartbeat-interval", "30");
+        DEFAULTS.put("latency-ms", "20");
+        DEFAULTS.put("jitter-ms", "30");
+        DEFAULTS.put("error-rate", "0");
+        DEFAULTS.put("throttle-rate", "0");
+        DEFAULTS.put("retry-after", "1");
+        DEFAULTS.put("mock-threads", "16");
+        DEFAULTS.put("report-interval", "10");
+        DEFAULTS.put("drain-timeout", "60");
+        DEFAULTS.put("debug", "false");
+    }
+
+    private final Map<String, String> options;
+    private final List<String> settings;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final PlayerSimulator.Submitted submitted = new PlayerSimulator.Submitted();
+    private long peakHeapBytes;
+
+    private LoadHarness(Map<String, String> options, List<String> settings) {
+        this.options = options;
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        List<String> settings = new ArrayList<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                usage("Unrecognized argument: " + arg);
+                return;
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            if (name.equals("set")) {
+                settings.add(value);
+            } else if (options.containsKey(name)) {
+                options.put(name, value);
+            } else {
+                usage("Unknown option: --" + name);
+                return;
+            }
+        }
+
+        boolean lossFree = new LoadHarness(options, settings).run();
+        System.exit(lossFree ? 0 : 1);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options (defaults shown), rates are per second:");
+        for (Map.Entry<String, String> option : DEFAULTS.entrySet()) {
+            System.err.println("  --" + option.getKey() + "=" + option.getValue());
+        }
+        System.err.println("  --set=<config key>=<value>   any config.yml option, repeatable");
+        System.exit(2);
+    }
+
+    private boolean run() throws Exception {
+        MockIngestServer mock = MockIngestServer.start(intOption("mock-threads"));
+        mock.setLatency(intOption("latency-ms"), intOption("jitter-ms"));
+        mock.setFaults(doubleOption("error-rate"), doubleOption("throttle-rate"), intOption("retry-after"));
+
+        Path dataFolder = Files.createTempDirectory("mctrack-load");
+        MCTrackConfig config = writeConfig(dataFolder.toFile(), mock.getUrl());
+        MCTrackAPI api = new MCTrackAPI(config, System.out::println, dataFolder.toFile());
+        SessionStore sessions = new SessionStore();
+
+        String[] servers = new String[Math.max(1, intOption("servers"))];
+        for (int i = 0; i < servers.length; i++) {
+            servers[i] = i == 0 ? "lobby" : "game-" + i;
+        }
+
+        int threads = Math.max(1, intOption("threads"));
+        int players = intOption("players");
+        List<PlayerSimulator> simulators = new ArrayList<>();
+        List<Thread> simulatorThreads = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int share = players / threads + (i < players % threads ? 1 : 0);
+            PlayerSimulator simulator = new PlayerSimulator(api, sessions, submitted, servers, 31L * i + 7, share,
+                doubleOption("join-rate") / threads,
+                doubleOption("quit-rate") / threads,
+                doubleOption("switch-rate") / threads,
+                doubleOption("payment-rate") / threads);
+            simulators.add(simulator);
+            simulatorThreads.add(new Thread(simulator, "Simulated Players " + i));
+        }
+
+        System.out.println("[Load] Mock ingestion at " + mock.getUrl() + ", data folder " + dataFolder);
+        System.out.println("[Load] " + options);
+        api.start();
+
+        ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Load Timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timers.scheduleAtFixedRate(() -> api.trackHeartbeats(sessions),
+            config.getHeartbeatInterval(), config.getHeartbeatInterval(), TimeUnit.SECONDS);
+
+        long startNanos = System.nanoTime();
+        Reporter reporter = new Reporter(api, sessions, mock, startNanos);
+        int reportInterval = Math.max(1, intOption("report-interval"));
+        timers.scheduleAtFixedRate(reporter::report, reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        simulatorThreads.forEach(Thread::start);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(intOption("duration")));
+
+        for (PlayerSimulator simulator : simulators) {
+            simulator.stop();
+        }
+        for (Thread thread : simulatorThreads) {
+            thread.join();
+        }
+        double runSeconds = (System.nanoTime() - startNanos) / 1e9;
+        long deliveredDuringRun = delivered(mock, api);
+        long submittedDuringRun = submitted.total();
+
+        // Everyone disconnects, then ingestion gets a chance to catch up
+        for (PlayerSimulator simulator : simulators) {
+            simulator.quitAll();
+        }
+        long drainStart = System.nanoTime();
+        long drainDeadline = drainStart + TimeUnit.SECONDS.toNanos(intOption("drain-timeout"));
+        while (delivered(mock, api) < submitted.total() && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        double drainSeconds = (System.nanoTime() - drainStart) / 1e9;
+        timers.shutdownNow();
+        reporter.report();
+
+        System.gc();
+        long retainedHeapBytes = memory.getHeapMemoryUsage().getUsed();
+        int spooled = api.getSpooledBatchCount();
+        long deliveredTotal = delivered(mock, api);
+        long mergedSwitches = api.getMergedSwitchCount();
+        api.stop();
+        mock.stop();
+
+        Map<String, String> summary = new LinkedHashMap<>();
+        summary.put("Duration", String.format(Locale.ROOT, "%.1f s run + %.1f s drain", runSeconds, drainSeconds));
+        summary.put("Submitted", submittedDuringRun + " events (" + perSecond(submittedDuringRun, runSeconds) + "/s)");
+        summary.put("Delivered", deliveredDuringRun + " events during the run (" + perSecond(deliveredDuringRun, runSeconds)
+            + "/s sustained), " + deliveredTotal + " in total");
+        summary.put("Heartbeats", mock.heartbeats.get() + " heartbeats, " + mock.presenceSessions.get() + " sessions in presence snapshots");
+        summary.put("Delivery Latency", latency(mock));
+        summary.put("Requests", mock.getRequests() + " batches, " + mock.getThrottled() + " throttled (429), "
+            + mock.getFailed() + " failed (503), " + (mock.getBytesReceived() / 1024) + " KiB received");
+        summary.put("Payments", submitted.payments.sum() + " submitted, " + submitted.paymentsAcknowledged.sum()
+            + " acknowledged, " + submitted.paymentsFailed.sum() + " failed");
+        summary.put("Heap", mb(peakHeapBytes()) + " MiB peak, " + mb(retainedHeapBytes) + " MiB retained after GC");
+        summary.put("Coalesced", mergedSwitches + " switches merged into a later one");
+        summary.put("Queue Losses", api.getDroppedEventCount() + " dropped, " + api.getRejectedEventCount() + " rejected");
+        summary.put("Left In Spool", spooled + " batches");
+
+        long lost = 0;
+        lost += lost(summary, "Session Starts", submitted.sessionStarts.sum(), mock.sessionStarts.get());
+        lost += lost(summary, "Session Ends", submitted.sessionEnds.sum(), mock.sessionEnds.get());
+        lost += lost(summary, "Server Switches", submitted.serverSwitches.sum(), mock.serverSwitches.get() + mergedSwitches);
+        lost += lost(summary, "Payments Delivered", submitted.payments.sum(), mock.payments.get());
+
+        System.out.println("[Load] Summary:");
+        for (Map.Entry<String, String> line : summary.entrySet()) {
+            System.out.println("[Load]   " + line.getKey() + ": " + line.getValue());
+        }
+        System.out.println(lost == 0 ? "[Load] No events lost" : "[Load] " + lost + " events lost");
+
+        try (Stream<Path> files = Files.walk(dataFolder)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        return lost == 0;
+    }
+
+    private MCTrackConfig writeConfig(File dataFolder, String apiUrl) throws IOException {
+        StringBuilder yaml = new StringBuilder()
+            .append("api-url: \"").append(apiUrl).append("\"\n")
+            .append("api-key: \"load-test\"\n")
+            .append("network-id: \"load-test\"\n")
+            .append("server-name: \"proxy\"\n")
+            .append("heartbeat-interval: ").append(intOption("heartbeat-interval")).append('\n')
+            .append("debug: ").append(Boolean.parseBoolean(options.get("debug"))).append('\n');
+        for (String setting : settings) {
+            int equals = setting.indexOf('=');
+            if (equals <= 0) {
+                usage("Expected --set=<key>=<value>, got --set=" + setting);
+            }
+            String key = setting.substring(0, equals);
+            yaml.append(key).append(": ").append(setting.substring(equals + 1)).append('\n');
+        }
+
+        File file = new File(dataFolder, "config.yml");
+        Files.writeString(file.toPath(), yaml);
+        return MCTrackConfig.load(file);
+    }
+
+    /**
+     * Tracked events that reached the mock, plus switches that coalescing merged into one that did.
+     */
+    private static long delivered(MockIngestServer mock, MCTrackAPI api) {
+        return mock.getTrackedDelivered() + api.getMergedSwitchCount();
+    }
+
+    /**
+     * Highest heap use seen by the reporter; sampled, so short spikes between reports are missed.
+     */
+    private long peakHeapBytes() {
+        return Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+    }
+
+    private static long lost(Map<String, String> summary, String name, long submitted, long delivered) {
+        long lost = Math.max(0, submitted - delivered);
+        String line = delivered + "/" + submitted + (lost > 0 ? ", " + lost + " lost" : "");
+        if (delivered > submitted) {
+            line += ", " + (delivered - submitted) + " duplicated";
+        }
+        summary.put(name, line);
+        return lost;
+    }
+
+    private static String latency(MockIngestServer mock) {
+        long count = mock.deliveryLatencyMs.getCount();
+        if (count == 0) return "n/a";
+        return String.format(Locale.ROOT, "mean %.0f ms, last minute p50 %d ms, p99 %d ms, p99.9 %d ms",
+            mock.deliveryLatencyMs.getSum() / (double) count,
+            mock.deliveryLatencyMs.quantile(0.5),
+            mock.deliveryLatencyMs.quantile(0.99),
+            mock.deliveryLatencyMs.quantile(0.999));
+    }
+
+    private static String perSecond(long events, double seconds) {
+        return String.format(Locale.ROOT, "%.0f", seconds > 0 ? events / seconds : 0);
+    }
+
+    private static long mb(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private int intOption(String name) {
+        try {
+            return Integer.parseInt(options.get(name).trim());
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a whole number");
+            return 0;
+        }
+    }
+
+    private double doubleOption(String name) {
+        try {
+            return Double.parseDouble(options.get(name).trim());
+        } catch (NumberFormatException e) {
+            usage("--" + name + " must be a number");
+            return 0;
+        }
+    }
+
+    /**
+     * Periodic status line; rates are since the previous line.
+     */
+    private final class Reporter {
+        private final MCTrackAPI api;
+        private final SessionStore sessions;
+        private final MockIngestServer mock;
+        private final long startNanos;
+        private long lastNanos;
+        private long lastSubmitted;
+        private long lastDelivered;
+
+        Reporter(MCTrackAPI api, SessionStore sessions, MockIngestServer mock, long startNanos) {
+            this.api = api;
+            this.sessions = sessions;
+            this.mock = mock;
+            this.startNanos = startNanos;
+            this.lastNanos = startNanos;
+        }
+
+        synchronized void report() {
+            long now = System.nanoTime();
+            double seconds = (now - lastNanos) / 1e9;
+            long submittedTotal = submitted.total();
+            long deliveredTotal = delivered(mock, api);
+            long heap = memory.getHeapMemoryUsage().getUsed();
+            peakHeapBytes = Math.max(peakHeapBytes, heap);
+
+            System.out.println(String.format(Locale.ROOT,
+                "[Load] %5.0fs online=%d submitted=%s/s delivered=%s/s latency p50=%dms p99=%dms"
+                    + " queue=%d in-flight=%d spooled=%d dropped=%d heap=%dMiB",
+                (now - startNanos) / 1e9,
+                sessions.getOnlineCount(),
+                perSecond(submittedTotal - lastSubmitted, seconds),
+                perSecond(deliveredTotal - lastDelivered, seconds),
+                mock.deliveryLatencyMs.quantile(0.5),
+                mock.deliveryLatencyMs.quantile(0.99),
+                api.getQueueDepth(),
+                api.getInFlightBatchCount(),
+                api.getSpooledBatchCount(),
+                api.getDroppedEventCount() + api.getRejectedEventCount(),
+                mb(heap)));
+
+            lastNanos = now;
+            lastSubmitted = submittedTotal;
+            lastDelivered = deliveredTotal;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.mctrack.loadtest;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mctrack.common.api.BinaryBatchDecoder;
+import com.mctrack.common.metrics.Histogram;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * In-process stand-in for the ingestion API: answers {@code GET /session/auth} and accepts
+ * {@code POST /session/batch}, counting delivered events per type and how long each took from
+ * its timestamp to arrival.
+ *
+ * <p>Faults are injected before a batch is read, so a rejected batch is never counted: a
+ * fixed latency plus jitter on every batch, then a 429 with {@code Retry-After} or a 503 with
+ * the configured probabilities. The auth response advertises the features the plugin ships
+ * with, so batches arrive binary-encoded and coalesced as they would in production; a
+ * {@code completedSessions} entry counts as both a session start and a session end.</p>
+ */
+public class MockIngestServer {
+
+    /**
+     * Delivery counters for one {@code /session/batch} list.
+     */
+    public static final class Delivered {
+        private final LongAdder count = new LongAdder();
+
+        public long get() {
+            return count.sum();
+        }
+    }
+
+    private static final String AUTH_RESPONSE = "{\"networkId\":\"load-test\",\"contentEncodings\":[\"gzip\"],"
+        + "\"features\":[\"presence\",\"binary-batch\",\"completed-sessions\"],\"maxBatchEvents\":1000}";
+    private static final String BINARY_CONTENT_TYPE = "application/vnd.mctrack.batch";
+    private static final byte[] OK = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+
+    public final Delivered sessionStarts = new Delivered();
+    public final Delivered sessionEnds = new Delivered();
+    public final Delivered serverSwitches = new Delivered();
+    public final Delivered payments = new Delivered();
+    public final Delivered heartbeats = new Delivered();
+    public final Delivered presenceSessions = new Delivered();
+    /** Milliseconds from an event's timestamp until its batch arrived, for starts, ends, switches and payments. */
+    public final Histogram deliveryLatencyMs = new Histogram();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private volatile int latencyMs;
+    private volatile int jitterMs;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile int retryAfterSeconds = 1;
+
+    private MockIngestServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * @param threads request handler threads; injected latency holds one for its duration
+     */
+    public static MockIngestServer start(int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Mock Ingest");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        MockIngestServer mock = new MockIngestServer(server, executor);
+        server.createContext("/session/auth", mock::auth);
+        server.createContext("/session/batch", mock::batch);
+        server.start();
+        return mock;
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void setLatency(int latencyMs, int jitterMs) {
+        this.latencyMs = Math.max(0, latencyMs);
+        this.jitterMs = Math.max(0, jitterMs);
+    }
+
+    /**
+     * @param errorRate fraction of batches answered with 503
+     * @param throttleRate fraction of batches answered with 429
+     */
+    public void setFaults(double errorRate, double throttleRate, int retryAfterSeconds) {
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.retryAfterSeconds = Math.max(0, retryAfterSeconds);
+    }
+
+    public long getRequests() { return requests.sum(); }
+    public long getThrottled() { return throttled.sum(); }
+    public long getFailed() { return failed.sum(); }
+    public long getBytesReceived() { return bytesReceived.sum(); }
+
+    public long getTrackedDelivered() {
+        return sessionStarts.get() + sessionEnds.get() + serverSwitches.get() + payments.get();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void auth(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange, 200, AUTH_RESPONSE.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int delay = latencyMs + (jitterMs > 0 ? random.nextInt(jitterMs + 1) : 0);
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            double roll = random.nextDouble();
+            if (roll < throttleRate) {
+                throttled.increment();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                respond(exchange, 429, "{\"error\":\"rate limited\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (roll < throttleRate + errorRate) {
+                failed.increment();
+                respond(exchange, 503, "{\"error\":\"unavailable\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            String encoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            if (encoding != null && !"gzip".equalsIgnoreCase(encoding)) {
+                respond(exchange, 415, "{\"error\":\"unsupported encoding\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            boolean binary = contentType != null && contentType.startsWith(BINARY_CONTENT_TYPE);
+
+            JsonObject payload;
+            CountingInputStream counted = new CountingInputStream(exchange.getRequestBody());
+            InputStream in = encoding != null ? new GZIPInputStream(counted) : counted;
+            try (InputStream body = in) {
+                if (binary) {
+                    byte[] bytes = body.readAllBytes();
+                    payload = BinaryBatchDecoder.decode(bytes, 0, bytes.length);
+                } else {
+                    payload = gson.fromJson(new InputStreamReader(body, StandardCharsets.UTF_8), JsonObject.class);
+                }
+            } catch (IOException | RuntimeException e) {
+                respond(exchange, 400, "{\"error\":\"malformed batch\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            bytesReceived.add(counted.count);
+
+            long now = System.currentTimeMillis();
+            count(payload, "sessionStarts", sessionStarts, now);
+            count(payload, "sessionEnds", sessionEnds, now);
+            count(payload, "serverSwitches", serverSwitches, now);
+            count(payload, "payments", payments, now);
+            count(payload, "heartbeats", heartbeats, -1);
+            JsonArray completed = array(payload, "completedSessions");
+            if (completed != null) {
+                for (JsonElement session : completed) {
+                    JsonObject fields = session.getAsJsonObject();
+                    sessionStarts.count.increment();
+                    sessionEnds.count.increment();
+                    recordLatency(fields.get("timestamp"), now);
+                    recordLatency(fields.get("endTimestamp"), now);
+                }
+            }
+            JsonArray presence = array(payload, "presence");
+            if (presence != null) {
+                for (JsonElement snapshot : presence) {
+                    JsonObject servers = snapshot.getAsJsonObject().getAsJsonObject("servers");
+                    if (servers == null) continue;
+                    for (String server : servers.keySet()) {
+                        presenceSessions.count.add(servers.getAsJsonArray(server).size());
+                    }
+                }
+            }
+            respond(exchange, 200, OK);
+        }
+    }
+
+    /**
+     * @param now arrival time to measure delivery latency against, or -1 not to
+     */
+    private void count(JsonObject payload, String list, Delivered delivered, long now) {
+        JsonArray events = array(payload, list);
+        if (events == null) return;
+        delivered.count.add(events.size());
+        if (now < 0) return;
+        for (JsonElement event : events) {
+            recordLatency(event.getAsJsonObject().get("timestamp"), now);
+        }
+    }
+
+    private void recordLatency(JsonElement timestamp, long now) {
+        if (timestamp != null) {
+            deliveryLatencyMs.record(now - timestamp.getAsLong());
+        }
+    }
+
+    private static JsonArray array(JsonObject payload, String name) {
+        JsonElement element = payload != null ? payload.get(name) : null;
+        return element != null && element.isJsonArray() ? element.getAsJsonArray() : null;
+    }
+
+    private static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final class CountingInputStream extends InputStream {
+        private final InputStream in;
+        long count;
+
+        CountingInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = in.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.mctrack.loadtest;
+
+import com.mctrack.common.api.MCTrackAPI;
+import com.mctrack.common.api.PaymentDelivery;
+import com.mctrack.common.model.*;
+import com.mctrack.common.util.PlayerSession;
+import com.mctrack.common.util.SessionStore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One producer thread acting as a proxy's event threads for its own share of players: joins
+ * until its share is online, then quits, rejoins, server switches and purchases at the given
+ * rates. Tracking calls are made exactly as the proxy listeners make them.
+ */
+final class PlayerSimulator implements Runnable {
+
+    /**
+     * What the simulators submitted, shared by all of them.
+     */
+    static final class Submitted {
+        final LongAdder sessionStarts = new LongAdder();
+        final LongAdder sessionEnds = new LongAdder();
+        final LongAdder serverSwitches = new LongAdder();
+        final LongAdder payments = new LongAdder();
+        final LongAdder paymentsAcknowledged = new LongAdder();
+        final LongAdder paymentsFailed = new LongAdder();
+
+        long total() {
+            return sessionStarts.sum() + sessionEnds.sum() + serverSwitches.sum() + payments.sum();
+        }
+    }
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final List<PaymentProduct> PRODUCTS = List.of(new PaymentProduct("VIP Rank", 1, 9.99));
+
+    private final MCTrackAPI api;
+    private final SessionStore sessions;
+    private final Submitted submitted;
+    private final String[] servers;
+    private final Random random;
+
+    private final UUID[] players;
+    // Online players occupy online[0, onlineCount); slot[i] is player i's index in it, or -1
+    private final int[] online;
+    private final int[] slot;
+    private int onlineCount;
+    private final int target;
+
+    private final double joinsPerTick;
+    private final double quitsPerTick;
+    private final double switchesPerTick;
+    private final double paymentsPerTick;
+    private double joinCredit;
+    private double quitCredit;
+    private double switchCredit;
+    private double paymentCredit;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param target players this simulator keeps online
+     * @param joinRate joins per second while below target
+     * @param quitRate quits per second once at target; the freed slots are refilled by joins
+     */
+    PlayerSimulator(MCTrackAPI api, SessionStore sessions, Submitted submitted, String[] servers, long seed,
+                    int target, double joinRate, double quitRate, double switchRate, double paymentRate) {
+        this.api = api;
+        this.sessions = sessions;
+        this.submitted = submitted;
+        this.servers = servers;
+        this.random = new Random(seed);
+        this.target = target;
+        // Twice the target, so a rejoin is usually a different player
+        this.players = new UUID[Math.max(1, target * 2)];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        this.online = new int[players.length];
+        this.slot = new int[players.length];
+        Arrays.fill(slot, -1);
+
+        double ticksPerSecond = TimeUnit.SECONDS.toNanos(1) / (double) TICK_NANOS;
+        this.joinsPerTick = joinRate / ticksPerSecond;
+        this.quitsPerTick = quitRate / ticksPerSecond;
+        this.switchesPerTick = switchRate / ticksPerSecond;
+        this.paymentsPerTick = paymentRate / ticksPerSecond;
+    }
+
+    void stop() {
+        running = false;
+    }
+
+    /**
+     * Ends every session this simulator still has open, like a proxy shutting down.
+     */
+    void quitAll() {
+        while (onlineCount > 0) {
+            quit(online[0]);
+        }
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        while (running) {
+            tick();
+            next += TICK_NANOS;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else if (-wait > TimeUnit.SECONDS.toNanos(1)) {
+                // Fell far behind (pauses, overload): drop the backlog instead of bursting
+                next = System.nanoTime();
+            }
+        }
+    }
+
+    private void tick() {
+        if (onlineCount >= target) {
+            quitCredit += quitsPerTick;
+            while (quitCredit >= 1 && onlineCount > 0) {
+                quitCredit--;
+                quit(online[random.nextInt(onlineCount)]);
+            }
+        }
+
+        joinCredit += joinsPerTick;
+        while (joinCredit >= 1 && onlineCount < target) {
+            joinCredit--;
+            join(randomOffline());
+        }
+        if (onlineCount >= target) {
+            joinCredit = Math.min(joinCredit, 1);
+        }
+
+        if (onlineCount == 0) return;
+
+        switchCredit += switchesPerTick;
+        while (switchCredit >= 1) {
+            switchCredit--;
+            switchServer(online[random.nextInt(onlineCount)]);
+        }
+
+        paymentCredit += paymentsPerTick;
+        while (paymentCredit >= 1) {
+            paymentCredit--;
+            pay(online[random.nextInt(onlineCount)]);
+        }
+    }
+
+    private int randomOffline() {
+        while (true) {
+            int player = random.nextInt(players.length);
+            if (slot[player] < 0) return player;
+        }
+    }
+
+    private void join(int player) {
+        UUID uuid = players[player];
+        String server = servers[random.nextInt(servers.length)];
+        PlayerSession session = sessions.createSession(uuid, name(player));
+        sessions.updateServer(uuid, server);
+
+        api.trackSessionStart(new SessionStartEvent(
+            session.getSessionUuid(),
+            uuid.toString(),
+            session.getPlayerName(),
+            Platform.JAVA,
+            null,
+            null,
+            "play.example.net",
+            server,
+            null,
+            System.currentTimeMillis()
+        ));
+        submitted.sessionStarts.increment();
+
+        slot[player] = onlineCount;
+        online[onlineCount++] = player;
+    }
+
+    private void quit(int player) {
+        UUID uuid = players[player];
+        PlayerSession session = sessions.removeSession(uuid);
+        if (session != null) {
+            api.trackSessionEnd(new SessionEndEvent(session.getSessionUuid(), uuid.toString(), System.currentTimeMillis()));
+            submitted.sessionEnds.increment();
+        }
+
+        int index = slot[player];
+        int last = online[--onlineCount];
+        online[index] = last;
+        slot[last] = index;
+        slot[player] = -1;
+    }
+
+    private void switchServer(int player) {
+        UUID uuid = players[player];
+        PlayerSession session = sessions.getSession(uuid);
+        if (session == null) return;
+
+        String from = session.getCurrentServer();
+        String to = servers[random.nextInt(servers.length)];
+        if (to.equals(from)) return;
+
+        sessions.updateServer(uuid, to);
+        api.trackServerSwitch(new ServerSwitchEvent(session.getSessionUuid(), uuid.toString(), from, to,
+            System.currentTimeMillis()));
+        submitted.serverSwitches.increment();
+    }
+
+    private void pay(int player) {
+        UUID uuid = players[player];
+        PaymentEvent payment = new PaymentEvent(
+            new UUID(random.nextLong(), random.nextLong()).toString(),
+            uuid.toString(),
+            name(player),
+            9.99,
+            "USD",
+            "tebex",
+            "load-" + Long.toHexString(random.nextLong()),
+            PRODUCTS
+        );
+        submitted.payments.increment();
+        api.trackPaymentAsync(payment).whenComplete((delivery, error) -> {
+            if (error != null) {
+                submitted.paymentsFailed.increment();
+            } else if (delivery == PaymentDelivery.ACKNOWLEDGED) {
+                submitted.paymentsAcknowledged.increment();
+            }
+        });
+    }
+
+    private String name(int player) {
+        return "Player" + Integer.toHexString(players[player].hashCode() & 0xfffffff);
+    }
+}
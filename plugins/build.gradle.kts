@@ -1,6 +1,7 @@
 plugins {
     java
     id("com.github.johnrengelman.shadow") version "8.1.1" apply false
+    id("me.champeau.jmh") version "0.7.2" apply false
 }
 
 allprojects {
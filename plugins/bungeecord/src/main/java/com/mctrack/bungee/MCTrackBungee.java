@@ -6,7 +6,7 @@ import com.mctrack.common.api.MCTrackAPI;
 import com.mctrack.common.config.MCTrackConfig;
 import com.mctrack.common.model.*;
 import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
+import com.mctrack.common.util.SessionStore;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.plugin.Plugin;
 
@@ -15,6 +15,7 @@ import java.util.concurrent.TimeUnit;
 
 public class MCTrackBungee extends Plugin {
 
+    private final SessionStore sessionStore = new SessionStore();
     private MCTrackConfig config;
     private MCTrackAPI api;
 
@@ -24,7 +25,7 @@ public class MCTrackBungee extends Plugin {
         loadConfiguration();
 
         // Initialize API
-        api = new MCTrackAPI(config, message -> getLogger().info(message));
+        api = new MCTrackAPI(config, message -> getLogger().info(message), getDataFolder());
         api.start();
 
         // Register listeners
@@ -53,7 +54,7 @@ public class MCTrackBungee extends Plugin {
         }
 
         // Clear sessions
-        SessionManager.clear();
+        sessionStore.clear();
 
         getLogger().info("MCTrack disabled!");
     }
@@ -67,32 +68,26 @@ public class MCTrackBungee extends Plugin {
     public void reloadConfiguration() {
         loadConfiguration();
         api.stop();
-        api = new MCTrackAPI(config, message -> getLogger().info(message));
+        api = new MCTrackAPI(config, message -> getLogger().info(message), getDataFolder());
         api.start();
     }
 
     private void startHeartbeatTask() {
         getProxy().getScheduler().schedule(this, () -> {
-            for (PlayerSession session : SessionManager.getAllSessions()) {
-                api.trackHeartbeat(new SessionHeartbeatEvent(
-                    session.getSessionUuid(),
-                    session.getPlayerUuid().toString(),
-                    session.getCurrentServer(),
-                    null  // No longer tracking vanilla Minecraft gamemode
-                ));
-            }
+            api.trackHeartbeats(sessionStore);
 
             if (config.isDebug()) {
-                getLogger().info("[MCTrack] Sent heartbeat for " + SessionManager.getOnlineCount() + " players");
+                getLogger().info("[MCTrack] Sent heartbeat for " + sessionStore.getOnlineCount() + " players "
+                    + sessionStore.getServerCounts());
             }
         }, config.getHeartbeatInterval(), config.getHeartbeatInterval(), TimeUnit.SECONDS);
     }
 
     private void trackOnlinePlayers() {
         for (ProxiedPlayer player : getProxy().getPlayers()) {
-            PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getName());
+            PlayerSession session = sessionStore.createSession(player.getUniqueId(), player.getName());
             if (player.getServer() != null) {
-                session.setCurrentServer(player.getServer().getInfo().getName());
+                sessionStore.updateServer(player.getUniqueId(), player.getServer().getInfo().getName());
             }
 
             api.trackSessionStart(new SessionStartEvent(
@@ -110,7 +105,7 @@ public class MCTrackBungee extends Plugin {
     }
 
     private void endAllSessions() {
-        for (PlayerSession session : SessionManager.getAllSessions()) {
+        for (PlayerSession session : sessionStore.getAllSessions()) {
             api.trackSessionEnd(new SessionEndEvent(
                 session.getSessionUuid(),
                 session.getPlayerUuid().toString()
@@ -125,4 +120,8 @@ public class MCTrackBungee extends Plugin {
     public MCTrackAPI getApi() {
         return api;
     }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
 }
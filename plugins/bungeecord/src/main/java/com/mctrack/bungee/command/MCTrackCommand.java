@@ -1,7 +1,6 @@
 package com.mctrack.bungee.command;
 
 import com.mctrack.bungee.MCTrackBungee;
-import com.mctrack.common.util.SessionManager;
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.CommandSender;
 import net.md_5.bungee.api.chat.TextComponent;
@@ -11,6 +10,7 @@ import net.md_5.bungee.api.plugin.TabExecutor;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 public class MCTrackCommand extends Command implements TabExecutor {
 
@@ -42,9 +42,17 @@ public class MCTrackCommand extends Command implements TabExecutor {
                 sender.sendMessage(new TextComponent(ChatColor.GRAY + "  Server Name: " +
                     ChatColor.WHITE + plugin.getMCTrackConfig().getServerName()));
                 sender.sendMessage(new TextComponent(ChatColor.GRAY + "  Online Players: " +
-                    ChatColor.WHITE + SessionManager.getOnlineCount()));
+                    ChatColor.WHITE + plugin.getSessionStore().getOnlineCount()));
+                for (Map.Entry<String, String> entry : plugin.getSessionStore().getStatus().entrySet()) {
+                    sender.sendMessage(new TextComponent(ChatColor.GRAY + "  " + entry.getKey() + ": " +
+                        ChatColor.WHITE + entry.getValue()));
+                }
                 sender.sendMessage(new TextComponent(ChatColor.GRAY + "  Debug Mode: " +
                     (plugin.getMCTrackConfig().isDebug() ? ChatColor.GREEN + "Enabled" : ChatColor.GRAY + "Disabled")));
+                for (Map.Entry<String, String> entry : plugin.getApi().getStatus().entrySet()) {
+                    sender.sendMessage(new TextComponent(ChatColor.GRAY + "  " + entry.getKey() + ": " +
+                        ChatColor.WHITE + entry.getValue()));
+                }
                 break;
             default:
                 sender.sendMessage(new TextComponent(ChatColor.GOLD + "MCTrack Commands:"));
@@ -2,8 +2,8 @@ package com.mctrack.bungee.listener;
 
 import com.mctrack.bungee.MCTrackBungee;
 import com.mctrack.common.model.*;
+import com.mctrack.common.util.JoinDomains;
 import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
 import net.md_5.bungee.api.connection.ProxiedPlayer;
 import net.md_5.bungee.api.event.PlayerDisconnectEvent;
 import net.md_5.bungee.api.event.PostLoginEvent;
@@ -25,7 +25,7 @@ public class PlayerListener implements Listener {
         ProxiedPlayer player = event.getPlayer();
 
         // Create session
-        PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getName());
+        PlayerSession session = plugin.getSessionStore().createSession(player.getUniqueId(), player.getName());
 
         // Get IP address if configured
         String ipAddress = null;
@@ -36,7 +36,7 @@ public class PlayerListener implements Listener {
         // Get virtual host (join domain) if configured
         String joinDomain = null;
         if (plugin.getMCTrackConfig().isTrackJoinDomain() && player.getPendingConnection().getVirtualHost() != null) {
-            joinDomain = player.getPendingConnection().getVirtualHost().getHostString();
+            joinDomain = JoinDomains.normalize(player.getPendingConnection().getVirtualHost().getHostString());
         }
 
         // Track session start
@@ -62,7 +62,7 @@ public class PlayerListener implements Listener {
         ProxiedPlayer player = event.getPlayer();
 
         // Get and remove session
-        PlayerSession session = SessionManager.removeSession(player.getUniqueId());
+        PlayerSession session = plugin.getSessionStore().removeSession(player.getUniqueId());
 
         if (session != null) {
             plugin.getApi().trackSessionEnd(new SessionEndEvent(
@@ -79,14 +79,14 @@ public class PlayerListener implements Listener {
     @EventHandler(priority = EventPriority.HIGHEST)
     public void onServerConnected(ServerConnectedEvent event) {
         ProxiedPlayer player = event.getPlayer();
-        PlayerSession session = SessionManager.getSession(player.getUniqueId());
+        PlayerSession session = plugin.getSessionStore().getSession(player.getUniqueId());
         if (session == null) return;
 
         String toServer = event.getServer().getInfo().getName();
         String fromServer = session.getCurrentServer();
 
         // Update session
-        SessionManager.updateServer(player.getUniqueId(), toServer);
+        plugin.getSessionStore().updateServer(player.getUniqueId(), toServer);
 
         // Track server switch (only if there was a previous server)
         if (fromServer != null) {
@@ -11,4 +11,15 @@ dependencies {
 
     // Configuration
     implementation("org.yaml:snakeyaml:2.2")
+
+    // Optional zstd request compression, used only if present at runtime
+    compileOnly("com.github.luben:zstd-jni:1.5.5-11")
+
+    // Tests
+    testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+}
+
+tasks.test {
+    useJUnitPlatform()
 }
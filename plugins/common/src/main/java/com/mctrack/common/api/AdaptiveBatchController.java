@@ -0,0 +1,184 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.config.MCTrackConfig;
+
+/**
+ * Tunes the batch size and flush interval from queue depth, request latency and error rate.
+ *
+ * <p>Evaluated once per flush tick:</p>
+ * <ul>
+ *   <li><b>backoff</b> - latency above target or errors: fewer, larger requests</li>
+ *   <li><b>backlog</b> - more queued than one batch: larger batches, shorter interval</li>
+ *   <li><b>steady</b> - keeping up: interval shrinks towards the minimum for low latency
+ *       and the batch size follows the observed event rate</li>
+ * </ul>
+ *
+ * <p>With adaptive batching disabled the configured batch size and interval are used as-is.
+ * Either way batches never exceed the limit ingestion advertises.</p>
+ */
+final class AdaptiveBatchController {
+    private static final double EWMA_ALPHA = 0.2;
+    private static final double BACKOFF_ERROR_RATE = 0.1;
+    // Limit of ingestion versions that do not advertise maxBatchEvents
+    static final int LEGACY_MAX_BATCH_EVENTS = 100;
+    // Successful sends after which a cap lowered by a refused batch is raised again
+    static final int LIMIT_RECOVERY_BATCHES = 10;
+
+    private final boolean enabled;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final long latencyTargetMs;
+
+    private volatile int batchSize;
+    // Largest batch ingestion accepts: what it advertised, or less for a while after refusing a batch as too large
+    private volatile int serverLimit = LEGACY_MAX_BATCH_EVENTS;
+    private int advertisedLimit = LEGACY_MAX_BATCH_EVENTS;
+    private int successesSinceLimit;
+    private volatile long intervalMs;
+    private volatile double latencyMs;
+    private volatile double errorRate;
+    private volatile String mode;
+
+    private int samplesSinceTick;
+    private int sentSinceTick;
+
+    AdaptiveBatchController(MCTrackConfig config) {
+        this.enabled = config.isAdaptiveBatching();
+        this.minBatchSize = Math.min(config.getBatchSizeMin(), config.getBatchSizeMax());
+        this.maxBatchSize = config.getBatchSizeMax();
+        this.minIntervalMs = Math.min(config.getBatchIntervalMinMs(), config.getBatchIntervalMaxMs());
+        this.maxIntervalMs = config.getBatchIntervalMaxMs();
+        this.latencyTargetMs = config.getBatchLatencyTargetMs();
+
+        long configuredIntervalMs = config.getBatchInterval() * 1000L;
+        if (enabled) {
+            this.batchSize = clamp(config.getBatchSize(), minBatchSize, maxBatchSize);
+            this.intervalMs = clamp(configuredIntervalMs, minIntervalMs, maxIntervalMs);
+            this.mode = "steady";
+        } else {
+            this.batchSize = Math.max(1, config.getBatchSize());
+            this.intervalMs = Math.max(1, configuredIntervalMs);
+            this.mode = "fixed";
+        }
+    }
+
+    int getBatchSize() {
+        return Math.min(batchSize, serverLimit);
+    }
+
+    /**
+     * Upper bound on the batch size, used to size buffers and local queues.
+     */
+    int getMaxBatchSize() {
+        return Math.min(enabled ? maxBatchSize : batchSize, serverLimit);
+    }
+
+    /**
+     * Sets the largest batch ingestion accepts, as advertised by {@code /session/auth}.
+     * Until this is called batches are capped at {@value #LEGACY_MAX_BATCH_EVENTS} events.
+     */
+    synchronized void setServerLimit(int limit) {
+        advertisedLimit = Math.max(1, limit);
+        serverLimit = advertisedLimit;
+        successesSinceLimit = 0;
+    }
+
+    /**
+     * Caps every batch at {@code limit} events, whatever the configuration or the adaptive
+     * rules ask for. Only ever lowers the cap; after {@value #LIMIT_RECOVERY_BATCHES} successful
+     * sends in a row it doubles again, up to the advertised limit.
+     */
+    synchronized void limitBatchSize(int limit) {
+        serverLimit = Math.max(1, Math.min(serverLimit, limit));
+        successesSinceLimit = 0;
+    }
+
+    long getIntervalMs() {
+        return intervalMs;
+    }
+
+    double getLatencyMs() {
+        return latencyMs;
+    }
+
+    double getErrorRate() {
+        return errorRate;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Name of the rule applied at the last tick (fixed, steady, backlog or backoff).
+     */
+    String getMode() {
+        return mode;
+    }
+
+    /**
+     * Records the outcome of one batch upload.
+     */
+    synchronized void recordBatch(int events, long latencyNanos, boolean success) {
+        latencyMs += EWMA_ALPHA * (latencyNanos / 1_000_000.0 - latencyMs);
+        errorRate += EWMA_ALPHA * ((success ? 0.0 : 1.0) - errorRate);
+        samplesSinceTick++;
+        if (success) {
+            sentSinceTick += events;
+            if (serverLimit < advertisedLimit && ++successesSinceLimit >= LIMIT_RECOVERY_BATCHES) {
+                // The refusal may have been one oversized batch, so probe back towards the advertised limit
+                serverLimit = (int) Math.min(advertisedLimit, serverLimit * 2L);
+                successesSinceLimit = 0;
+            }
+        } else {
+            successesSinceLimit = 0;
+        }
+    }
+
+    /**
+     * Re-evaluates the batch size and interval. Called once per flush tick.
+     *
+     * @param queueDepth events waiting to be sent
+     */
+    synchronized void adjust(int queueDepth) {
+        if (samplesSinceTick == 0) {
+            // Nothing was sent, so let old latency and errors fade instead of backing off forever
+            latencyMs *= 1 - EWMA_ALPHA;
+            errorRate *= 1 - EWMA_ALPHA;
+        }
+        int sent = sentSinceTick;
+        samplesSinceTick = 0;
+        sentSinceTick = 0;
+
+        if (!enabled) return;
+
+        // Sizes above what ingestion accepts are never sent, so the rules work within its limit
+        int upper = Math.min(maxBatchSize, serverLimit);
+        int lower = Math.min(minBatchSize, upper);
+        int current = getBatchSize();
+        if (errorRate > BACKOFF_ERROR_RATE || latencyMs > latencyTargetMs) {
+            intervalMs = clamp(intervalMs * 2, minIntervalMs, maxIntervalMs);
+            batchSize = clamp(current * 2, lower, upper);
+            mode = "backoff";
+        } else if (queueDepth >= current) {
+            intervalMs = clamp(intervalMs / 2, minIntervalMs, maxIntervalMs);
+            batchSize = clamp(current + current / 2, lower, upper);
+            mode = "backlog";
+        } else {
+            intervalMs = clamp(intervalMs * 3 / 4, minIntervalMs, maxIntervalMs);
+            // Move halfway towards what one tick actually carried
+            batchSize = clamp((current + sent) / 2, lower, upper);
+            mode = "steady";
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,80 @@
+package com.mctrack.common.api;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Non-2xx response from the ingestion API.
+ */
+class ApiException extends IOException {
+    private final int statusCode;
+    private final long retryAfterMs;
+    private final String errorCode;
+
+    ApiException(int statusCode, String responseBody, long retryAfterMs) {
+        super("API error: " + statusCode + " - " + responseBody);
+        this.statusCode = statusCode;
+        this.retryAfterMs = retryAfterMs;
+        this.errorCode = parseErrorCode(responseBody);
+    }
+
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Delay requested by the server via Retry-After, or 0 if none was sent.
+     */
+    long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * The {@code error} code from ingestion's JSON error body (e.g. {@code VALIDATION_ERROR}), or null.
+     */
+    String getErrorCode() {
+        return errorCode;
+    }
+
+    boolean isRetryable() {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * The API key was refused. Usually temporary (key rotation, plan changes), so the
+     * request is kept rather than dropped.
+     */
+    boolean isAuthFailure() {
+        return statusCode == 401 || statusCode == 403;
+    }
+
+    /**
+     * The request was refused for its size; smaller requests with the same events will be accepted.
+     */
+    boolean isTooLarge() {
+        return statusCode == 413 || "BATCH_TOO_LARGE".equals(errorCode);
+    }
+
+    /**
+     * Label for a request ingestion will never accept, used as the {@code cause} of rejected batches.
+     */
+    String getRejectionCause() {
+        return errorCode != null ? errorCode.toLowerCase(Locale.ROOT) : "http_" + statusCode;
+    }
+
+    private static String parseErrorCode(String responseBody) {
+        if (responseBody == null || responseBody.isEmpty()) return null;
+        try {
+            JsonElement error = JsonParser.parseString(responseBody).getAsJsonObject().get("error");
+            if (error == null || !error.isJsonPrimitive()) return null;
+            String code = error.getAsString();
+            // Used as a metric label, so only accept ingestion's short upper-case codes
+            return code.matches("[A-Z][A-Z0-9_]{0,63}") ? code : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
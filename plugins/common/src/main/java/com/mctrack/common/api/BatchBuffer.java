@@ -0,0 +1,145 @@
+package com.mctrack.common.api;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer that is reused across flushes via {@link BatchBufferPool}.
+ * {@link #asWriter()} encodes characters straight to UTF-8 in place, so a JsonWriter
+ * can serialize into it without an intermediate String or char buffer.
+ */
+final class BatchBuffer extends OutputStream {
+    private byte[] data;
+    private int size;
+    private final Utf8Writer writer = new Utf8Writer();
+
+    BatchBuffer(int initialCapacity) {
+        this.data = new byte[initialCapacity];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        data[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, data, size, length);
+        size += length;
+    }
+
+    /**
+     * Makes room for at least {@code additional} more bytes after {@link #size()}.
+     */
+    void ensureCapacity(int additional) {
+        int required = size + additional;
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+    }
+
+    /**
+     * Marks bytes written directly into {@link #array()} as used.
+     */
+    void advance(int written) {
+        size += written;
+    }
+
+    void reset() {
+        size = 0;
+        writer.pendingHighSurrogate = 0;
+    }
+
+    byte[] array() {
+        return data;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return data.length;
+    }
+
+    Writer asWriter() {
+        return writer;
+    }
+
+    private final class Utf8Writer extends Writer {
+        private char pendingHighSurrogate;
+
+        @Override
+        public void write(int c) {
+            encode((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            ensureCapacity(length * 3);
+            for (int i = offset, end = offset + length; i < end; i++) {
+                encode(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int offset, int length) {
+            ensureCapacity(length * 3);
+            for (int i = offset, end = offset + length; i < end; i++) {
+                encode(str.charAt(i));
+            }
+        }
+
+        private void encode(char c) {
+            if (c < 0x80 && pendingHighSurrogate == 0) {
+                if (size == data.length) ensureCapacity(1);
+                data[size++] = (byte) c;
+                return;
+            }
+
+            ensureCapacity(4);
+            if (pendingHighSurrogate != 0) {
+                char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint(high, c);
+                    data[size++] = (byte) (0xF0 | (codePoint >> 18));
+                    data[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    data[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    data[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                    return;
+                }
+                // Unpaired surrogate
+                data[size++] = '?';
+                encode(c);
+                return;
+            }
+
+            if (c < 0x80) {
+                data[size++] = (byte) c;
+            } else if (c < 0x800) {
+                data[size++] = (byte) (0xC0 | (c >> 6));
+                data[size++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                pendingHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                data[size++] = '?';
+            } else {
+                data[size++] = (byte) (0xE0 | (c >> 12));
+                data[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                data[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.mctrack.common.api;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Small free-list of {@link BatchBuffer}s so steady-state flushes allocate no new byte arrays.
+ * Buffers that grew unusually large are left to the GC instead of being retained.
+ */
+final class BatchBufferPool {
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int MAX_RETAINED_CAPACITY = 4 * 1024 * 1024;
+
+    private final ArrayBlockingQueue<BatchBuffer> free;
+
+    BatchBufferPool(int maxPooled) {
+        this.free = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+    }
+
+    BatchBuffer acquire() {
+        BatchBuffer buffer = free.poll();
+        if (buffer == null) {
+            return new BatchBuffer(INITIAL_CAPACITY);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    void release(BatchBuffer buffer) {
+        if (buffer != null && buffer.capacity() <= MAX_RETAINED_CAPACITY) {
+            free.offer(buffer);
+        }
+    }
+}
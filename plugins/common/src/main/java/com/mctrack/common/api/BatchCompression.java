@@ -0,0 +1,69 @@
+package com.mctrack.common.api;
+
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Request-body compression for batch uploads.
+ */
+public enum BatchCompression {
+    NONE(null),
+    GZIP("gzip"),
+    ZSTD("zstd");
+
+    private final String contentEncoding;
+
+    BatchCompression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    /**
+     * Value for the Content-Encoding header, or null when the body is sent as-is.
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Compresses {@code data} and appends the result to {@code out}.
+     */
+    void compress(byte[] data, int offset, int length, BatchBuffer out) throws IOException {
+        switch (this) {
+            case GZIP:
+                try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+                    gzip.write(data, offset, length);
+                }
+                break;
+            case ZSTD:
+                ZstdSupport.compress(data, offset, length, out);
+                break;
+            case NONE:
+            default:
+                out.write(data, offset, length);
+                break;
+        }
+    }
+
+    /**
+     * zstd needs zstd-jni on the classpath; it is not bundled with the plugin.
+     */
+    public static boolean isZstdAvailable() {
+        return ZstdSupport.isAvailable();
+    }
+
+    public static BatchCompression fromConfig(String value, BatchCompression defaultValue) {
+        if (value == null) return defaultValue;
+        switch (value.trim().toLowerCase()) {
+            case "none":
+            case "off":
+            case "false":
+                return NONE;
+            case "gzip":
+                return GZIP;
+            case "zstd":
+                return ZSTD;
+            default:
+                return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mctrack.common.api;
+
+import okhttp3.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Wire format for POST /session/batch bodies.
+ */
+interface BatchEncoder {
+    void encode(BatchPayload payload, BatchBuffer out) throws IOException;
+
+    /**
+     * Content type sent with encoded batches.
+     */
+    MediaType getMediaType();
+
+    /**
+     * Record type used when batches in this format are written to the disk spool,
+     * so they are replayed with the right content type after a restart.
+     */
+    byte getSpoolType();
+}
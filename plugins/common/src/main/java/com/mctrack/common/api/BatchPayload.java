@@ -0,0 +1,65 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.*;
+
+import java.util.List;
+
+/**
+ * Body of POST /session/batch. Lists left null are omitted from the JSON.
+ */
+final class BatchPayload {
+    private final String networkId;
+    private final String serverName;
+    private final List<SessionStartEvent> sessionStarts;
+    private final List<SessionEndEvent> sessionEnds;
+    private final List<SessionHeartbeatEvent> heartbeats;
+    private final List<PresenceSnapshot> presence;
+    private final List<ServerSwitchEvent> serverSwitches;
+    private final List<GamemodeChangeEvent> gamemodeChanges;
+    private final List<PaymentEvent> payments;
+    private final List<GamemodeSessionStartEvent> gamemodeSessionStarts;
+    private final List<GamemodeSessionEndEvent> gamemodeSessionEnds;
+    private final List<CompletedSession> completedSessions;
+
+    public BatchPayload(String networkId, String serverName,
+                       List<SessionStartEvent> sessionStarts,
+                       List<SessionEndEvent> sessionEnds,
+                       List<SessionHeartbeatEvent> heartbeats,
+                       List<PresenceSnapshot> presence,
+                       List<ServerSwitchEvent> serverSwitches,
+                       List<GamemodeChangeEvent> gamemodeChanges,
+                       List<PaymentEvent> payments,
+                       List<GamemodeSessionStartEvent> gamemodeSessionStarts,
+                       List<GamemodeSessionEndEvent> gamemodeSessionEnds,
+                       List<CompletedSession> completedSessions) {
+        this.networkId = networkId;
+        this.serverName = serverName;
+        this.sessionStarts = sessionStarts;
+        this.sessionEnds = sessionEnds;
+        this.heartbeats = heartbeats;
+        this.presence = presence;
+        this.serverSwitches = serverSwitches;
+        this.gamemodeChanges = gamemodeChanges;
+        this.payments = payments;
+        this.gamemodeSessionStarts = gamemodeSessionStarts;
+        this.gamemodeSessionEnds = gamemodeSessionEnds;
+        this.completedSessions = completedSessions;
+    }
+
+    static BatchPayload ofPayments(String networkId, String serverName, List<PaymentEvent> payments) {
+        return new BatchPayload(networkId, serverName, null, null, null, null, null, null, payments, null, null, null);
+    }
+
+    String getNetworkId() { return networkId; }
+    String getServerName() { return serverName; }
+    List<SessionStartEvent> getSessionStarts() { return sessionStarts; }
+    List<SessionEndEvent> getSessionEnds() { return sessionEnds; }
+    List<SessionHeartbeatEvent> getHeartbeats() { return heartbeats; }
+    List<PresenceSnapshot> getPresence() { return presence; }
+    List<ServerSwitchEvent> getServerSwitches() { return serverSwitches; }
+    List<GamemodeChangeEvent> getGamemodeChanges() { return gamemodeChanges; }
+    List<PaymentEvent> getPayments() { return payments; }
+    List<GamemodeSessionStartEvent> getGamemodeSessionStarts() { return gamemodeSessionStarts; }
+    List<GamemodeSessionEndEvent> getGamemodeSessionEnds() { return gamemodeSessionEnds; }
+    List<CompletedSession> getCompletedSessions() { return completedSessions; }
+}
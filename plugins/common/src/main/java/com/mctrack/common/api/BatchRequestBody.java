@@ -0,0 +1,39 @@
+package com.mctrack.common.api;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * Request body over already-encoded batch bytes. OkHttp may call {@link #writeTo}
+ * more than once when it retries a connection; each call writes the same bytes
+ * straight into the sink without re-serializing or copying them.
+ */
+final class BatchRequestBody extends RequestBody {
+    private final MediaType contentType;
+    private final byte[] data;
+    private final int length;
+
+    BatchRequestBody(MediaType contentType, byte[] data, int length) {
+        this.contentType = contentType;
+        this.data = data;
+        this.length = length;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(data, 0, length);
+    }
+}
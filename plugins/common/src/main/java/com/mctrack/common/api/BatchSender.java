@@ -0,0 +1,1057 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.model.*;
+import com.mctrack.common.queue.EventPriority;
+import com.mctrack.common.queue.EventQueue;
+import com.mctrack.common.spool.DiskSpool;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import okhttp3.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Moves events from the queue to the ingestion API with several batches in flight at once.
+ *
+ * <p>Events are partitioned by player UUID and each partition has at most one batch
+ * outstanding, so one player's events are always delivered in the order they were queued
+ * while other players' batches proceed in parallel. Priority only decides which partition
+ * is sent or spooled first; it never reorders events within a partition. Each batch is shrunk
+ * by an {@link EventCoalescer} as it is taken from its partition.</p>
+ *
+ * <p>Undeliverable batches go to the disk spool. Only partitions that still have records on
+ * disk append their new batches behind them, and only whole batches while ingestion is up;
+ * every other partition keeps sending straight to the network. Up to one spooled record per
+ * partition is replayed at a time, oldest first, and a record never overtakes an older one
+ * of the same partition. Records left over from a previous run hold back every partition
+ * until they are replayed, since their players are only known once they are read.</p>
+ *
+ * <p>Failed batches keep their partition blocked and are retried with jittered exponential
+ * backoff until {@code retry-max-attempts} is reached, then spooled. A {@link CircuitBreaker}
+ * stops sends while ingestion is down; batches built during that time go straight to the
+ * spool. A refused API key (401/403) trips the breaker the same way. Batches refused as too
+ * large (413) are split and sent again, and only batches ingestion will never accept are
+ * dropped, counted by cause.</p>
+ *
+ * <p>All state is guarded by this object's monitor. HTTP calls run on OkHttp's dispatcher
+ * threads and never hold the lock while waiting on the network.</p>
+ */
+final class BatchSender {
+    private final MCTrackConfig config;
+    private final Consumer<String> logger;
+    private final OkHttpClient client;
+    private final EventQueue<TrackedEvent> queue;
+    private final DiskSpool spool;
+    private final BatchBufferPool bufferPool;
+    private final AdaptiveBatchController controller;
+    private final ScheduledExecutorService scheduler;
+    private final RetryBackoff retryBackoff;
+    private final CircuitBreaker breaker;
+    private final EventCoalescer coalescer;
+    private final PipelineMetrics metrics;
+    private final int maxAttempts;
+    private final Partition[] partitions;
+    private final Runnable pump;
+
+    private int pendingCount;
+    private int inFlightCount;
+    private int retryingCount;
+    private long drainedCount;
+    // Oldest spooled records, read ahead of the spool's ack position; acked in this order
+    private final ArrayDeque<Replay> replayWindow = new ArrayDeque<>();
+    // Partitions of each record appended in this run that is not in the window yet, in spool order
+    private final ArrayDeque<int[]> spooledOwners = new ArrayDeque<>();
+    private int replaysInFlight;
+    // Records from a previous run not yet acked, and how many of them are not in the window yet
+    private int recoveredPending;
+    private int recoveredUnread;
+    private boolean stopping;
+    private boolean closed;
+    private volatile BatchCompression compression = BatchCompression.NONE;
+    private volatile BatchEncoder encoder;
+    private volatile boolean foldSessions;
+
+    /**
+     * Events of one partition waiting to be batched, oldest first.
+     */
+    private static final class Partition {
+        final int index;
+        final ArrayDeque<TrackedEvent> events = new ArrayDeque<>();
+        // Pending events in the CRITICAL lane; such partitions are sent and spooled first
+        int criticalCount;
+        // Records on disk holding this partition's events; its new batches queue behind them
+        int spooledCount;
+        Batch inFlight;
+
+        Partition(int index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * A spooled record being replayed.
+     */
+    private static final class Replay {
+        final byte type;
+        final byte[] data;
+        // Partitions with events in the record
+        final int[] owners;
+        final boolean recovered;
+        // JSON halves still to send after the record was refused as too large
+        ArrayDeque<byte[]> parts;
+        boolean inFlight;
+        boolean done;
+
+        Replay(DiskSpool.Entry entry, int[] owners, boolean recovered) {
+            this.type = entry.getType();
+            this.data = entry.getData();
+            this.owners = owners;
+            this.recovered = recovered;
+        }
+    }
+
+    private static final int[] NO_OWNERS = new int[0];
+
+    private static final class Batch {
+        final Partition partition;
+        final List<TrackedEvent> events;
+        final BatchEncoder encoder;
+        final BatchBuffer encoded;
+        BatchBuffer compressed;
+        FlightEvents.BatchSend sendEvent;
+        long startNanos;
+        int attempts;
+        boolean waitingRetry;
+        boolean abandoned;
+
+        Batch(Partition partition, List<TrackedEvent> events, BatchEncoder encoder, BatchBuffer encoded) {
+            this.partition = partition;
+            this.events = events;
+            this.encoder = encoder;
+            this.encoded = encoded;
+        }
+    }
+
+    /**
+     * @param scheduler runs retry timers
+     * @param pump called (from an HTTP thread) when a completed batch frees a partition
+     */
+    BatchSender(MCTrackConfig config, Consumer<String> logger, OkHttpClient client,
+                EventQueue<TrackedEvent> queue, DiskSpool spool, BatchEncoder encoder,
+                AdaptiveBatchController controller, ScheduledExecutorService scheduler,
+                PipelineMetrics metrics, Runnable pump) {
+        this.config = config;
+        this.logger = logger;
+        this.client = client;
+        this.queue = queue;
+        this.spool = spool;
+        this.encoder = encoder;
+        this.controller = controller;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        this.pump = pump;
+        this.retryBackoff = new RetryBackoff(config.getRetryBaseDelayMs(), config.getRetryMaxDelayMs());
+        this.breaker = new CircuitBreaker(config.getCircuitBreakerThreshold(), retryBackoff);
+        this.maxAttempts = Math.max(1, config.getRetryMaxAttempts());
+        this.coalescer = config.isCoalesceEvents() ? new EventCoalescer() : null;
+        int maxInFlight = Math.max(1, config.getMaxInFlight());
+        this.partitions = new Partition[maxInFlight];
+        for (int i = 0; i < maxInFlight; i++) {
+            partitions[i] = new Partition(i);
+        }
+        this.bufferPool = new BatchBufferPool(maxInFlight * 2 + 2);
+        this.recoveredPending = spool != null ? spool.getPendingCount() : 0;
+        this.recoveredUnread = recoveredPending;
+    }
+
+    void setCompression(BatchCompression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Switches the wire format for batches built from now on. Batches already encoded,
+     * spooled or waiting for a retry keep the format they were encoded in.
+     */
+    void setEncoder(BatchEncoder encoder) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * Whether sessions that start and end in one batch may be sent as a single record.
+     * Only enabled once ingestion has advertised support for it.
+     */
+    void setFoldSessions(boolean foldSessions) {
+        this.foldSessions = foldSessions;
+    }
+
+    BatchEncoder getEncoder() {
+        return encoder;
+    }
+
+    BatchCompression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Moves queued events into partitions and sends every batch that can go out now.
+     *
+     * @param force also send partial batches (on the batch interval tick); otherwise only full ones
+     */
+    synchronized void flush(boolean force) {
+        if (stopping) return;
+
+        // Each partition may hold about two batches locally; the rest waits in the bounded queue
+        drainQueue(partitions.length * controller.getMaxBatchSize() * 2);
+        replaySpooled();
+        dispatch(force);
+    }
+
+    synchronized int getInFlightCount() {
+        return inFlightCount + replaysInFlight;
+    }
+
+    synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    synchronized int getRetryingCount() {
+        return retryingCount;
+    }
+
+    synchronized long getCoalescedEventCount() {
+        return coalescer != null ? coalescer.getCoalescedCount() : 0;
+    }
+
+    synchronized long getMergedSwitchCount() {
+        return coalescer != null ? coalescer.getMergedSwitchCount() : 0;
+    }
+
+    CircuitBreaker.State getBreakerState() {
+        return breaker.getState();
+    }
+
+    synchronized long getBreakerRemainingMs() {
+        return breaker.getRemainingOpenMs();
+    }
+
+    /**
+     * Largest batch that may be sent now, within the limit ingestion accepts.
+     */
+    int getMaxBatchSize() {
+        return controller.getMaxBatchSize();
+    }
+
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Sends everything queued in full-size batches on every partition at once until the
+     * deadline. Failed batches are not retried, and sending stops early once the circuit
+     * breaker opens. No new batches are started afterwards; {@link #close()} spools what is
+     * left.
+     *
+     * @param deadline {@link System#nanoTime()} by which to stop waiting
+     */
+    synchronized void drain(long deadline) {
+        stopping = true;
+        long startNanos = System.nanoTime();
+
+        for (;;) {
+            // Out of time: anything sent now would be spooled by close() as well and delivered twice
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) break;
+
+            drainQueue(Integer.MAX_VALUE);
+            dispatch(true);
+            // Nothing left that can go out now; batches waiting for a retry are spilled rather than waited on
+            if (inFlightCount - retryingCount == 0) break;
+
+            remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) break;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (drainedCount > 0) {
+            logger.accept("[MCTrack] Sent " + drainedCount + " events during shutdown in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms");
+        }
+    }
+
+    /**
+     * Writes whatever is still undelivered to the spool, including batches still in flight.
+     * Nothing is sent or spooled afterwards.
+     */
+    synchronized void close() {
+        stopping = true;
+        spillAll();
+        closed = true;
+    }
+
+    /**
+     * Builds a request for a payload sent outside the partitions (payments). The caller
+     * enqueues it and checks the response with {@link #checkResponse(Response)}.
+     */
+    Call newDirectCall(BatchPayload payload) throws IOException {
+        BatchEncoder encoder = this.encoder;
+        // Not pooled: the body must stay untouched until OkHttp has written it
+        BatchBuffer encoded = new BatchBuffer(1024);
+        encode(encoder, payload, payload.getPayments() != null ? payload.getPayments().size() : 0, encoded);
+        return newCall(encoded.array(), encoded.size(), encoder.getMediaType(), null);
+    }
+
+    /**
+     * Writes a one-off payload straight to the disk spool, to be replayed like any spooled batch.
+     *
+     * @return false if there is no spool, it is full or the sender is closed
+     */
+    synchronized boolean spoolPayload(BatchPayload payload) {
+        if (spool == null || closed) return false;
+
+        BatchEncoder encoder = this.encoder;
+        BatchBuffer encoded = bufferPool.acquire();
+        try {
+            encode(encoder, payload, payload.getPayments() != null ? payload.getPayments().size() : 0, encoded);
+            // Payments are not sent through the partitions, so they hold none of them back
+            return appendToSpool(encoder, encoded, null);
+        } catch (IOException e) {
+            logger.accept("[MCTrack] Failed to encode payload for the spool: " + e.getMessage());
+            return false;
+        } finally {
+            bufferPool.release(encoded);
+        }
+    }
+
+    private void drainQueue(int limit) {
+        while (pendingCount < limit) {
+            TrackedEvent event = queue.poll();
+            if (event == null) break;
+            Partition partition = partitionOf(event);
+            partition.events.add(event);
+            if (isCritical(event)) {
+                partition.criticalCount++;
+            }
+            pendingCount++;
+        }
+    }
+
+    private Partition partitionOf(TrackedEvent event) {
+        String playerUuid = event.getPlayerUuid();
+        int hash = playerUuid != null ? playerUuid.hashCode() : 0;
+        return partitions[Math.floorMod(hash, partitions.length)];
+    }
+
+    private boolean isCritical(TrackedEvent event) {
+        return queue.priorityOf(event) == EventPriority.CRITICAL;
+    }
+
+    /**
+     * Partitions holding critical events first, in partition order otherwise.
+     */
+    private List<Partition> byPriority() {
+        List<Partition> ordered = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            if (partition.criticalCount > 0) ordered.add(partition);
+        }
+        for (Partition partition : partitions) {
+            if (partition.criticalCount == 0) ordered.add(partition);
+        }
+        return ordered;
+    }
+
+    /**
+     * Whether older events of the partition's players may still be on disk.
+     */
+    private boolean hasSpooled(Partition partition) {
+        return partition.spooledCount > 0 || recoveredPending > 0;
+    }
+
+    private void dispatch(boolean force) {
+        // Critical partitions go first, so they get the breaker's probe and the spool's free space
+        for (Partition partition : byPriority()) {
+            if (partition.inFlight != null || partition.events.isEmpty()) continue;
+            if (!force && partition.events.size() < controller.getBatchSize()) continue;
+
+            if (hasSpooled(partition)) {
+                // Queue behind the records on disk to keep delivery order. While ingestion is up, a
+                // partial batch waits in memory rather than becoming another record to replay
+                spoolPending(partition, breaker.getState() == CircuitBreaker.State.CLOSED);
+            } else if (breaker.allowRequest()) {
+                send(partition);
+            } else if (spool != null) {
+                // Ingestion is down; move the events to disk instead of holding them in memory
+                spoolPending(partition, false);
+            }
+        }
+    }
+
+    private void send(Partition partition) {
+        List<TrackedEvent> events = takeBatch(partition);
+        BatchEncoder encoder = this.encoder;
+        BatchBuffer encoded = bufferPool.acquire();
+        try {
+            encode(encoder, buildPayload(config.getNetworkId(), config.getServerName(), events), events.size(), encoded);
+        } catch (Exception e) {
+            bufferPool.release(encoded);
+            metrics.failure("encode");
+            logger.accept("[MCTrack] Failed to encode " + events.size() + " events, discarding: " + e.getMessage());
+            return;
+        }
+        metrics.batchEvents.record(events.size());
+        metrics.batchBytes.record(encoded.size());
+
+        Batch batch = new Batch(partition, events, encoder, encoded);
+        partition.inFlight = batch;
+        inFlightCount++;
+        transmit(batch);
+    }
+
+    private void transmit(Batch batch) {
+        // Recompressed on every attempt since the negotiated compression may have changed
+        bufferPool.release(batch.compressed);
+        batch.compressed = null;
+        batch.attempts++;
+        batch.startNanos = System.nanoTime();
+
+        BatchBuffer encoded = batch.encoded;
+        batch.sendEvent = FlightEvents.beginSend("batch", batch.events.size(), encoded.size(), batch.attempts);
+        try {
+            Call call = newCall(encoded.array(), encoded.size(), batch.encoder.getMediaType(), batch);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    FlightEvents.endSend(batch.sendEvent, 0, e);
+                    onBatchComplete(batch, e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (response) {
+                        checkResponse(response);
+                        FlightEvents.endSend(batch.sendEvent, response.code(), null);
+                        onBatchComplete(batch, null);
+                    } catch (IOException e) {
+                        FlightEvents.endSend(batch.sendEvent, response.code(), e);
+                        onBatchComplete(batch, e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            IOException error = e instanceof IOException ? (IOException) e : new IOException(e);
+            FlightEvents.endSend(batch.sendEvent, 0, error);
+            onBatchComplete(batch, error);
+        }
+    }
+
+    private synchronized void onBatchComplete(Batch batch, IOException error) {
+        if (batch.abandoned) return;
+
+        long elapsedNanos = System.nanoTime() - batch.startNanos;
+        controller.recordBatch(batch.events.size(), elapsedNanos, error == null);
+        metrics.sendLatencyMicros.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        if (error != null) {
+            metrics.failure(PipelineMetrics.causeOf(error));
+        }
+
+        if (error == null) {
+            breaker.onSuccess();
+            metrics.batchesSent.inc();
+            metrics.eventsSent.add(batch.events.size());
+            metrics.delivered(batch.events);
+            if (config.isDebug()) {
+                logger.accept("[MCTrack] Sent batch of " + batch.events.size() + " events");
+            }
+            complete(batch);
+            if (stopping) {
+                drainedCount += batch.events.size();
+            } else {
+                pump.run();
+            }
+        } else if (isAuthFailure(error)) {
+            // Keep the events like an open breaker would until the key is accepted again
+            breaker.trip();
+            logger.accept("[MCTrack] API refused the API key, holding events until it is accepted: " + error.getMessage());
+            spill(batch, error);
+            complete(batch);
+        } else if (isTooLarge(error) && batch.events.size() > 1) {
+            // Resend the same events, in order, in smaller batches
+            breaker.onSuccess();
+            controller.limitBatchSize(batch.events.size() / 2);
+            logger.accept("[MCTrack] API refused batch of " + batch.events.size() + " events as too large, resending in batches of at most "
+                + controller.getBatchSize());
+            requeueFront(batch.partition, batch.events);
+            FlightEvents.requeue("split", batch.events.size(), batch.attempts, 0, error);
+            complete(batch);
+            if (!stopping) {
+                pump.run();
+            }
+        } else if (isRejected(error)) {
+            // The API is up but will never accept this batch
+            breaker.onSuccess();
+            metrics.rejected(((ApiException) error).getRejectionCause());
+            logger.accept("[MCTrack] API rejected batch of " + batch.events.size() + " events, dropping it: " + error.getMessage());
+            complete(batch);
+            if (!stopping) {
+                pump.run();
+            }
+        } else {
+            breaker.onFailure();
+            if (!stopping && batch.attempts < maxAttempts) {
+                long delayMs = Math.max(retryBackoff.delayMs(batch.attempts), breaker.getRemainingOpenMs());
+                if (error instanceof ApiException) {
+                    delayMs = Math.max(delayMs, ((ApiException) error).getRetryAfterMs());
+                }
+                if (config.isDebug()) {
+                    logger.accept("[MCTrack] Failed to send events (attempt " + batch.attempts + "/" + maxAttempts
+                        + "), retrying in " + delayMs + "ms: " + error.getMessage());
+                }
+                batch.waitingRetry = true;
+                retryingCount++;
+                metrics.retry(PipelineMetrics.causeOf(error));
+                FlightEvents.requeue("retry", batch.events.size(), batch.attempts, delayMs, error);
+                scheduleRetry(batch, delayMs);
+            } else {
+                logger.accept("[MCTrack] Failed to send events after " + batch.attempts + " attempts: " + error.getMessage());
+                spill(batch, error);
+                complete(batch);
+            }
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Moves an unsent batch to the spool, or back to the front of its partition if it cannot be spooled.
+     */
+    private void spill(Batch batch, IOException error) {
+        if (appendToSpool(batch.encoder, batch.encoded, batch.partition)) {
+            FlightEvents.requeue("spool", batch.events.size(), batch.attempts, 0, error);
+        } else {
+            // Put the events back at the front of their partition so order is kept
+            requeueFront(batch.partition, batch.events);
+            FlightEvents.requeue("memory", batch.events.size(), batch.attempts, 0, error);
+        }
+    }
+
+    /**
+     * Frees the batch's partition and buffers.
+     */
+    private void complete(Batch batch) {
+        batch.partition.inFlight = null;
+        inFlightCount--;
+        release(batch);
+    }
+
+    private void scheduleRetry(Batch batch, long delayMs) {
+        try {
+            scheduler.schedule(() -> retry(batch), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; spillAll() writes the batch to the spool
+        }
+    }
+
+    private synchronized void retry(Batch batch) {
+        if (batch.abandoned || stopping) return;
+
+        if (!breaker.allowRequest()) {
+            // Wait for the breaker's probe instead of piling onto a failing API
+            scheduleRetry(batch, Math.max(breaker.getRemainingOpenMs(), retryBackoff.delayMs(1)));
+            return;
+        }
+
+        batch.waitingRetry = false;
+        retryingCount--;
+        transmit(batch);
+    }
+
+    private static boolean isRejected(IOException error) {
+        return error instanceof ApiException && !((ApiException) error).isRetryable();
+    }
+
+    private static boolean isAuthFailure(IOException error) {
+        return error instanceof ApiException && ((ApiException) error).isAuthFailure();
+    }
+
+    private static boolean isTooLarge(IOException error) {
+        return error instanceof ApiException && ((ApiException) error).isTooLarge();
+    }
+
+    /**
+     * Sends every spooled record in the window that may go out now: at most one per
+     * partition, and none ahead of an older unacknowledged record of the same partition.
+     */
+    private void replaySpooled() {
+        if (spool == null || closed) return;
+
+        readReplayWindow();
+        boolean[] blocked = new boolean[partitions.length];
+        for (Replay replay : replayWindow) {
+            if (replay.done) continue;
+            if (!replay.inFlight && replaysInFlight < partitions.length && isReplayable(replay, blocked)) {
+                if (!breaker.allowRequest()) return;
+                sendReplay(replay);
+            }
+            for (int owner : replay.owners) {
+                blocked[owner] = true;
+            }
+        }
+    }
+
+    private boolean isReplayable(Replay replay, boolean[] blocked) {
+        for (int owner : replay.owners) {
+            if (blocked[owner] || partitions[owner].inFlight != null) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tops the window up to one record per partition from the spool.
+     */
+    private void readReplayWindow() {
+        if (replayWindow.size() >= partitions.length) return;
+
+        for (DiskSpool.Entry entry : spool.peek(replayWindow.size(), partitions.length - replayWindow.size())) {
+            if (recoveredUnread > 0) {
+                recoveredUnread--;
+                replayWindow.add(new Replay(entry, ownersOf(entry), true));
+            } else {
+                int[] owners = spooledOwners.poll();
+                replayWindow.add(new Replay(entry, owners != null ? owners : NO_OWNERS, false));
+            }
+        }
+    }
+
+    /**
+     * Partitions of the players in a record written by a previous run.
+     */
+    private int[] ownersOf(DiskSpool.Entry entry) {
+        boolean[] owned = new boolean[partitions.length];
+        try {
+            JsonObject body = BatchSplitter.decode(entry.getType(), entry.getData());
+            for (Map.Entry<String, JsonElement> section : body.entrySet()) {
+                if (!section.getValue().isJsonArray()) continue;
+                for (JsonElement row : section.getValue().getAsJsonArray()) {
+                    JsonElement player = row.isJsonObject() ? row.getAsJsonObject().get("playerUuid") : null;
+                    if (player != null && player.isJsonPrimitive()) {
+                        owned[Math.floorMod(player.getAsString().hashCode(), partitions.length)] = true;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Replayed on its own, ahead of everything queued after it
+            Arrays.fill(owned, true);
+        }
+
+        int count = 0;
+        for (boolean o : owned) {
+            if (o) count++;
+        }
+        int[] owners = new int[count];
+        for (int i = 0, j = 0; i < owned.length; i++) {
+            if (owned[i]) owners[j++] = i;
+        }
+        return owners;
+    }
+
+    private void sendReplay(Replay replay) {
+        byte[] body = replay.parts != null ? replay.parts.peek() : replay.data;
+        MediaType mediaType = replay.parts != null ? JsonBatchEncoder.MEDIA_TYPE : mediaTypeOf(replay.type);
+
+        replay.inFlight = true;
+        replaysInFlight++;
+        FlightEvents.BatchSend sendEvent = FlightEvents.beginSend("replay", 0, body.length, 1);
+        try {
+            newCall(body, body.length, mediaType, null).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    FlightEvents.endSend(sendEvent, 0, e);
+                    onReplayComplete(replay, e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    try (response) {
+                        checkResponse(response);
+                        FlightEvents.endSend(sendEvent, response.code(), null);
+                        onReplayComplete(replay, null);
+                    } catch (IOException e) {
+                        FlightEvents.endSend(sendEvent, response.code(), e);
+                        onReplayComplete(replay, e);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            FlightEvents.endSend(sendEvent, 0, e instanceof IOException ? (IOException) e : new IOException(e));
+            replay.inFlight = false;
+            replaysInFlight--;
+            breaker.onFailure();
+            logger.accept("[MCTrack] Failed to replay spooled batch: " + e.getMessage());
+        }
+    }
+
+    private synchronized void onReplayComplete(Replay replay, IOException error) {
+        replay.inFlight = false;
+        replaysInFlight--;
+        notifyAll();
+        if (closed) return;
+        if (error != null) {
+            metrics.failure(PipelineMetrics.causeOf(error));
+        }
+
+        if (isAuthFailure(error)) {
+            // Stays in the window until the key is accepted again
+            breaker.trip();
+            logger.accept("[MCTrack] API refused the API key, pausing spool replay: " + error.getMessage());
+            return;
+        }
+        if (isTooLarge(error) && splitReplay(replay)) {
+            breaker.onSuccess();
+            if (!stopping) {
+                pump.run();
+            }
+            return;
+        }
+
+        if (isRejected(error)) {
+            // Ingestion will never accept this batch, don't let it block the ones behind it
+            breaker.onSuccess();
+            metrics.rejected(((ApiException) error).getRejectionCause());
+            logger.accept("[MCTrack] Discarding spooled batch rejected by API: " + error.getMessage());
+        } else if (error != null) {
+            // Try again on the next tick, or once the breaker lets a probe through
+            breaker.onFailure();
+            return;
+        } else {
+            breaker.onSuccess();
+            metrics.batchesSent.inc();
+        }
+
+        if (replay.parts != null) {
+            replay.parts.poll();
+            if (!replay.parts.isEmpty()) {
+                if (!stopping) {
+                    pump.run();
+                }
+                return;
+            }
+        }
+        // Parts already sent go out again if the plugin stops before the last one; delivery is at-least-once
+        replay.done = true;
+        ackReplayed();
+        if (!stopping) {
+            pump.run();
+        }
+    }
+
+    /**
+     * Acknowledges the finished records at the head of the window, releasing their partitions.
+     */
+    private void ackReplayed() {
+        int acked = 0;
+        while (!replayWindow.isEmpty() && replayWindow.peek().done) {
+            Replay replay = replayWindow.poll();
+            spool.ack();
+            acked++;
+            if (replay.recovered) {
+                recoveredPending--;
+            } else {
+                for (int owner : replay.owners) {
+                    partitions[owner].spooledCount--;
+                }
+            }
+        }
+        if (acked > 0 && config.isDebug()) {
+            logger.accept("[MCTrack] Replayed " + acked + " spooled batches, " + spool.getPendingCount() + " remaining");
+        }
+    }
+
+    /**
+     * Replaces the record (or part) just refused as too large with two halves, sent in its place.
+     *
+     * @return false if it cannot be split any further, or cannot be decoded
+     */
+    private boolean splitReplay(Replay replay) {
+        List<byte[]> parts;
+        try {
+            parts = replay.parts != null
+                ? BatchSplitter.split(JsonBatchEncoder.SPOOL_TYPE, replay.parts.peek())
+                : BatchSplitter.split(replay.type, replay.data);
+        } catch (IOException e) {
+            logger.accept("[MCTrack] Failed to split spooled batch: " + e.getMessage());
+            return false;
+        }
+        if (parts.isEmpty()) return false;
+
+        if (replay.parts == null) {
+            replay.parts = new ArrayDeque<>();
+        } else {
+            replay.parts.poll();
+        }
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            replay.parts.addFirst(parts.get(i));
+        }
+        logger.accept("[MCTrack] API refused spooled batch as too large, splitting it in two");
+        return true;
+    }
+
+    /**
+     * @param wholeBatches only spool full-size batches and leave the remainder in the partition
+     */
+    private void spoolPending(Partition partition, boolean wholeBatches) {
+        BatchEncoder encoder = this.encoder;
+        BatchBuffer encoded = bufferPool.acquire();
+        try {
+            while (!partition.events.isEmpty()
+                && (!wholeBatches || partition.events.size() >= controller.getBatchSize())) {
+                List<TrackedEvent> events = takeBatch(partition);
+                encoded.reset();
+                encode(encoder, buildPayload(config.getNetworkId(), config.getServerName(), events), events.size(), encoded);
+                if (!appendToSpool(encoder, encoded, partition)) {
+                    // Spool is full; keep the events in memory until it drains
+                    requeueFront(partition, events);
+                    FlightEvents.requeue("memory", events.size(), 0, 0, null);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            logger.accept("[MCTrack] Failed to spool events: " + e.getMessage());
+        } finally {
+            bufferPool.release(encoded);
+        }
+    }
+
+    /**
+     * Writes in-flight batches and everything still queued to the spool, oldest first per partition.
+     */
+    private void spillAll() {
+        if (spool == null) {
+            int lost = pendingCount + queue.size();
+            for (Partition partition : partitions) {
+                if (partition.inFlight != null) {
+                    lost += partition.inFlight.events.size();
+                }
+            }
+            if (lost > 0) {
+                logger.accept("[MCTrack] " + lost + " events were not delivered before shutdown (spool disabled)");
+            }
+            return;
+        }
+
+        int spilled = 0;
+        for (Partition partition : partitions) {
+            Batch batch = partition.inFlight;
+            if (batch != null) {
+                // May still succeed; at-least-once delivery is preferred over losing it
+                batch.abandoned = true;
+                partition.inFlight = null;
+                inFlightCount--;
+                if (batch.waitingRetry) {
+                    retryingCount--;
+                }
+                if (appendToSpool(batch.encoder, batch.encoded, partition)) {
+                    spilled += batch.events.size();
+                }
+            }
+        }
+
+        drainQueue(Integer.MAX_VALUE);
+        for (Partition partition : byPriority()) {
+            int before = partition.events.size();
+            spoolPending(partition, false);
+            spilled += before - partition.events.size();
+        }
+
+        if (spilled > 0) {
+            logger.accept("[MCTrack] Spooled " + spilled + " pending events to disk");
+        }
+    }
+
+    /**
+     * @param owner partition the events were taken from, held back until the record is replayed;
+     *              null for payloads sent outside the partitions
+     */
+    private boolean appendToSpool(BatchEncoder encoder, BatchBuffer encoded, Partition owner) {
+        if (spool == null || closed) return false;
+
+        try {
+            if (spool.append(encoder.getSpoolType(), encoded.array(), 0, encoded.size())) {
+                if (owner != null) {
+                    owner.spooledCount++;
+                    spooledOwners.add(new int[] {owner.index});
+                } else {
+                    spooledOwners.add(NO_OWNERS);
+                }
+                return true;
+            }
+            logger.accept("[MCTrack] Disk spool is full, keeping events in memory");
+        } catch (IOException e) {
+            logger.accept("[MCTrack] Failed to spool events: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Takes the next batch from a partition, oldest events first.
+     */
+    private List<TrackedEvent> takeBatch(Partition partition) {
+        FlightEvents.BatchAssembly event = new FlightEvents.BatchAssembly();
+        event.begin();
+        // Fewer, larger requests while draining on shutdown
+        int limit = stopping ? controller.getMaxBatchSize() : controller.getBatchSize();
+        int size = Math.min(limit, partition.events.size());
+        List<TrackedEvent> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            TrackedEvent next = partition.events.poll();
+            if (isCritical(next)) {
+                partition.criticalCount--;
+            }
+            events.add(next);
+        }
+        pendingCount -= size;
+        List<TrackedEvent> batch = coalescer != null ? coalescer.coalesce(events, foldSessions) : events;
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.takenEvents = size;
+            event.batchEvents = batch.size();
+            event.commit();
+        }
+        return batch;
+    }
+
+    /**
+     * Encodes a payload into {@code out}, timed as a {@link FlightEvents.BatchEncode} event.
+     */
+    private static void encode(BatchEncoder encoder, BatchPayload payload, int eventCount, BatchBuffer out) throws IOException {
+        FlightEvents.BatchEncode event = new FlightEvents.BatchEncode();
+        event.begin();
+        encoder.encode(payload, out);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.format = FlightEvents.formatOf(encoder);
+            event.events = eventCount;
+            event.bytes = out.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns events to the front of their partition, ahead of anything queued after them.
+     */
+    private void requeueFront(Partition partition, List<TrackedEvent> events) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            TrackedEvent event = events.get(i);
+            partition.events.addFirst(event);
+            if (isCritical(event)) {
+                partition.criticalCount++;
+            }
+        }
+        pendingCount += events.size();
+    }
+
+    private void release(Batch batch) {
+        bufferPool.release(batch.encoded);
+        bufferPool.release(batch.compressed);
+    }
+
+    /**
+     * Content type of a spooled record. Records written before the binary format existed are JSON.
+     */
+    private static MediaType mediaTypeOf(byte spoolType) {
+        return spoolType == BinaryBatchEncoder.SPOOL_TYPE
+            ? BinaryBatchEncoder.MEDIA_TYPE
+            : JsonBatchEncoder.MEDIA_TYPE;
+    }
+
+    private Call newCall(byte[] body, int length, MediaType mediaType, Batch batch) throws IOException {
+        Request.Builder builder = new Request.Builder()
+            .url(config.getApiUrl() + "/session/batch")
+            .header("X-API-Key", config.getApiKey());
+
+        BatchCompression compression = this.compression;
+        if (compression != BatchCompression.NONE && length >= config.getCompressionThresholdBytes()) {
+            // Only batches hand their buffer back to the pool once the call completes
+            BatchBuffer compressed = batch != null ? bufferPool.acquire() : new BatchBuffer(length);
+            if (batch != null) {
+                batch.compressed = compressed;
+            }
+            compression.compress(body, 0, length, compressed);
+            builder.header("Content-Encoding", compression.getContentEncoding());
+            builder.post(new BatchRequestBody(mediaType, compressed.array(), compressed.size()));
+            metrics.uploadBytes.add(compressed.size());
+        } else {
+            builder.post(new BatchRequestBody(mediaType, body, length));
+            metrics.uploadBytes.add(length);
+        }
+        return client.newCall(builder.build());
+    }
+
+    static void checkResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            throw new ApiException(response.code(), responseBody, parseRetryAfter(response.header("Retry-After")));
+        }
+    }
+
+    /**
+     * Parses a Retry-After header given in seconds. HTTP dates are ignored.
+     */
+    private static long parseRetryAfter(String value) {
+        if (value == null) return 0;
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static BatchPayload buildPayload(String networkId, String serverName, List<TrackedEvent> events) {
+        return new BatchPayload(
+            networkId,
+            serverName,
+            filterByType(events, SessionStartEvent.class),
+            filterByType(events, SessionEndEvent.class),
+            filterByType(events, SessionHeartbeatEvent.class),
+            filterByType(events, PresenceSnapshot.class),
+            filterByType(events, ServerSwitchEvent.class),
+            filterByType(events, GamemodeChangeEvent.class),
+            filterByType(events, PaymentEvent.class),
+            filterByType(events, GamemodeSessionStartEvent.class),
+            filterByType(events, GamemodeSessionEndEvent.class),
+            filterByType(events, CompletedSession.class)
+        );
+    }
+
+    /**
+     * Returns the events of the given type, or null if there are none (omitted from the payload).
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> filterByType(List<TrackedEvent> events, Class<T> type) {
+        List<T> result = null;
+        for (TrackedEvent event : events) {
+            if (type.isInstance(event)) {
+                if (result == null) {
+                    result = new ArrayList<>();
+                }
+                result.add((T) event);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package com.mctrack.common.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an encoded batch that ingestion refused as too large into two smaller JSON
+ * batches. Rows are split by player, so each player's events stay in one request and
+ * keep their order; presence snapshots have no player and are split by row.
+ */
+final class BatchSplitter {
+    private BatchSplitter() {
+    }
+
+    /**
+     * @param spoolType {@link JsonBatchEncoder#SPOOL_TYPE} or {@link BinaryBatchEncoder#SPOOL_TYPE}
+     * @return two JSON bodies, or an empty list if the batch cannot be split further
+     * @throws IOException if the bytes cannot be decoded
+     */
+    static List<byte[]> split(byte spoolType, byte[] data) throws IOException {
+        JsonObject body = decode(spoolType, data);
+
+        // Rows per player, in the order players first appear
+        Map<String, Integer> rowsByPlayer = new LinkedHashMap<>();
+        int total = 0;
+        for (Map.Entry<String, JsonElement> section : body.entrySet()) {
+            if (!section.getValue().isJsonArray()) continue;
+            int index = 0;
+            for (JsonElement row : section.getValue().getAsJsonArray()) {
+                rowsByPlayer.merge(keyOf(row, index++), 1, Integer::sum);
+                total++;
+            }
+        }
+        if (rowsByPlayer.size() < 2) {
+            return List.of();
+        }
+
+        // The first players up to half the rows go to the first request
+        Map<String, Boolean> first = new LinkedHashMap<>();
+        int taken = 0;
+        for (Map.Entry<String, Integer> player : rowsByPlayer.entrySet()) {
+            boolean inFirst = taken == 0 || taken + player.getValue() <= total / 2;
+            first.put(player.getKey(), inFirst);
+            if (inFirst) taken += player.getValue();
+        }
+
+        JsonObject[] halves = {new JsonObject(), new JsonObject()};
+        for (Map.Entry<String, JsonElement> section : body.entrySet()) {
+            if (!section.getValue().isJsonArray()) {
+                halves[0].add(section.getKey(), section.getValue());
+                halves[1].add(section.getKey(), section.getValue());
+                continue;
+            }
+            JsonArray[] rows = {new JsonArray(), new JsonArray()};
+            int index = 0;
+            for (JsonElement row : section.getValue().getAsJsonArray()) {
+                rows[first.get(keyOf(row, index++)) ? 0 : 1].add(row);
+            }
+            for (int i = 0; i < 2; i++) {
+                if (!rows[i].isEmpty()) halves[i].add(section.getKey(), rows[i]);
+            }
+        }
+
+        List<byte[]> parts = new ArrayList<>(2);
+        for (JsonObject half : halves) {
+            parts.add(half.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return parts;
+    }
+
+    /**
+     * Reads an encoded batch of either format back into its JSON body.
+     *
+     * @throws IOException if the bytes cannot be decoded
+     */
+    static JsonObject decode(byte spoolType, byte[] data) throws IOException {
+        if (spoolType == BinaryBatchEncoder.SPOOL_TYPE) {
+            return BinaryBatchDecoder.decode(data, 0, data.length);
+        }
+        try {
+            return JsonParser.parseString(new String(data, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed JSON batch", e);
+        }
+    }
+
+    private static String keyOf(JsonElement row, int index) {
+        if (row.isJsonObject()) {
+            JsonElement player = row.getAsJsonObject().get("playerUuid");
+            if (player instanceof JsonPrimitive) {
+                return "p:" + player.getAsString();
+            }
+        }
+        return "r:" + index;
+    }
+}
@@ -0,0 +1,305 @@
+package com.mctrack.common.api;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.mctrack.common.api.BinaryBatchEncoder.*;
+
+/**
+ * Reads a batch written by {@link BinaryBatchEncoder} back into the JSON body shape, leaving
+ * out null fields like Gson does. Mirrors {@code apps/ingestion/src/lib/batch-codec.ts}.
+ *
+ * <p>Used to split spooled binary batches that ingestion refuses as too large, and by the
+ * load harness's mock ingestion server to read binary batches.</p>
+ */
+public final class BinaryBatchDecoder {
+    // Same bound as ingestion, checked before allocating rows
+    private static final int MAX_ROWS = 100_000;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] data;
+    private final int end;
+    private final List<String> dictionary = new ArrayList<>();
+    private int offset;
+    private long baseTime;
+
+    private BinaryBatchDecoder(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.end = offset + length;
+    }
+
+    /**
+     * @throws IOException if the bytes are not a complete binary batch
+     */
+    public static JsonObject decode(byte[] data, int offset, int length) throws IOException {
+        return new BinaryBatchDecoder(data, offset, length).decode();
+    }
+
+    private JsonObject decode() throws IOException {
+        if (end - offset < 5 || u8() != 'M' || u8() != 'C' || u8() != 'T' || u8() != 'B') {
+            throw new IOException("Not a binary batch");
+        }
+        int version = u8();
+        if (version != 1) {
+            throw new IOException("Unsupported batch version: " + version);
+        }
+
+        baseTime = varint();
+        int dictionarySize = count();
+        for (int i = 0; i < dictionarySize; i++) {
+            String value = str();
+            dictionary.add(value != null ? value : "");
+        }
+
+        JsonObject body = new JsonObject();
+        set(body, "networkId", ref());
+        set(body, "serverName", ref());
+
+        long sectionCount = varint();
+        for (long s = 0; s < sectionCount; s++) {
+            int type = u8();
+            JsonObject[] rows = emptyRows(count());
+
+            switch (type) {
+                case SESSION_STARTS:
+                case COMPLETED_SESSIONS:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    strings(rows, "playerName");
+                    refs(rows, "platform");
+                    refs(rows, "bedrockDevice");
+                    strings(rows, "ipAddress");
+                    refs(rows, "joinDomain");
+                    refs(rows, "serverName");
+                    refs(rows, "gamemode");
+                    times(rows, "timestamp");
+                    if (type == COMPLETED_SESSIONS) {
+                        times(rows, "endTimestamp");
+                        body.add("completedSessions", array(rows));
+                    } else {
+                        body.add("sessionStarts", array(rows));
+                    }
+                    break;
+                case SESSION_ENDS:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    times(rows, "timestamp");
+                    body.add("sessionEnds", array(rows));
+                    break;
+                case HEARTBEATS:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    refs(rows, "serverName");
+                    refs(rows, "gamemode");
+                    times(rows, "timestamp");
+                    body.add("heartbeats", array(rows));
+                    break;
+                case PRESENCE:
+                    times(rows, "timestamp");
+                    for (JsonObject row : rows) {
+                        JsonObject servers = new JsonObject();
+                        int groups = count();
+                        for (int g = 0; g < groups; g++) {
+                            String serverName = ref();
+                            servers.add(serverName != null ? serverName : "", uuidList(count()));
+                        }
+                        row.add("servers", servers);
+                    }
+                    body.add("presence", array(rows));
+                    break;
+                case SERVER_SWITCHES:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    refs(rows, "fromServer");
+                    refs(rows, "toServer");
+                    times(rows, "timestamp");
+                    body.add("serverSwitches", array(rows));
+                    break;
+                case GAMEMODE_CHANGES:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    refs(rows, "fromGamemode");
+                    refs(rows, "toGamemode");
+                    times(rows, "timestamp");
+                    body.add("gamemodeChanges", array(rows));
+                    break;
+                case PAYMENTS:
+                    uuids(rows, "paymentUuid");
+                    uuids(rows, "playerUuid");
+                    strings(rows, "playerName");
+                    for (JsonObject row : rows) row.addProperty("amount", f64());
+                    refs(rows, "currency");
+                    refs(rows, "provider");
+                    strings(rows, "transactionId");
+                    times(rows, "timestamp");
+                    for (JsonObject row : rows) {
+                        JsonObject[] products = emptyRows(count());
+                        for (JsonObject product : products) {
+                            set(product, "name", str());
+                            product.addProperty("quantity", unzigzag(varint()));
+                            if (u8() == 1) product.addProperty("price", f64());
+                        }
+                        row.add("products", array(products));
+                    }
+                    body.add("payments", array(rows));
+                    break;
+                case GAMEMODE_SESSION_STARTS:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    strings(rows, "playerName");
+                    refs(rows, "gamemodeId");
+                    refs(rows, "serverName");
+                    strings(rows, "ipAddress");
+                    refs(rows, "platform");
+                    refs(rows, "bedrockDevice");
+                    body.add("gamemodeSessionStarts", array(rows));
+                    break;
+                case GAMEMODE_SESSION_ENDS:
+                    uuids(rows, "sessionUuid");
+                    uuids(rows, "playerUuid");
+                    body.add("gamemodeSessionEnds", array(rows));
+                    break;
+                default:
+                    // Sections are not length-prefixed, so an unknown one cannot be skipped
+                    throw new IOException("Unknown section type: " + type);
+            }
+        }
+
+        if (offset != end) {
+            throw new IOException("Trailing bytes after batch");
+        }
+        return body;
+    }
+
+    private int u8() throws IOException {
+        ensure(1);
+        return data[offset++] & 0xFF;
+    }
+
+    private void ensure(long bytes) throws IOException {
+        if (bytes > end - offset) {
+            throw new IOException("Unexpected end of batch");
+        }
+    }
+
+    private long varint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = u8();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private int count() throws IOException {
+        long value = varint();
+        if (value < 0 || value > MAX_ROWS) {
+            throw new IOException("Too many rows: " + value);
+        }
+        return (int) value;
+    }
+
+    private double f64() throws IOException {
+        ensure(8);
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) (data[offset++] & 0xFF) << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private String str() throws IOException {
+        long header = varint();
+        if (header == 0) return null;
+        ensure(header - 1);
+        int length = (int) (header - 1);
+        String value = new String(data, offset, length, StandardCharsets.UTF_8);
+        offset += length;
+        return value;
+    }
+
+    private String ref() throws IOException {
+        long index = varint();
+        if (index == 0) return null;
+        if (index > dictionary.size()) {
+            throw new IOException("Bad dictionary reference: " + index);
+        }
+        return dictionary.get((int) (index - 1));
+    }
+
+    private String uuid() throws IOException {
+        ensure(16);
+        char[] chars = new char[36];
+        int position = 0;
+        for (int i = 0; i < 16; i++) {
+            if (i == 4 || i == 6 || i == 8 || i == 10) {
+                chars[position++] = '-';
+            }
+            int b = data[offset++] & 0xFF;
+            chars[position++] = HEX[b >>> 4];
+            chars[position++] = HEX[b & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    private long time() throws IOException {
+        return baseTime + unzigzag(varint());
+    }
+
+    // Column readers: each fills one field across every row of the section
+
+    private void uuids(JsonObject[] rows, String field) throws IOException {
+        boolean canonical = u8() == 1;
+        for (JsonObject row : rows) {
+            set(row, field, canonical ? uuid() : str());
+        }
+    }
+
+    private JsonArray uuidList(int count) throws IOException {
+        boolean canonical = u8() == 1;
+        JsonArray values = new JsonArray(count);
+        for (int i = 0; i < count; i++) {
+            values.add(canonical ? uuid() : str());
+        }
+        return values;
+    }
+
+    private void strings(JsonObject[] rows, String field) throws IOException {
+        for (JsonObject row : rows) set(row, field, str());
+    }
+
+    private void refs(JsonObject[] rows, String field) throws IOException {
+        for (JsonObject row : rows) set(row, field, ref());
+    }
+
+    private void times(JsonObject[] rows, String field) throws IOException {
+        for (JsonObject row : rows) row.addProperty(field, time());
+    }
+
+    private static void set(JsonObject row, String field, String value) {
+        if (value != null) row.addProperty(field, value);
+    }
+
+    private static JsonObject[] emptyRows(int count) {
+        JsonObject[] rows = new JsonObject[count];
+        for (int i = 0; i < count; i++) rows[i] = new JsonObject();
+        return rows;
+    }
+
+    private static JsonArray array(JsonObject[] rows) {
+        JsonArray array = new JsonArray(rows.length);
+        for (JsonObject row : rows) array.add(row);
+        return array;
+    }
+}
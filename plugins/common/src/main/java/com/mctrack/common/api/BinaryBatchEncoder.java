@@ -0,0 +1,497 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.*;
+import okhttp3.MediaType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compact columnar encoding of {@link BatchPayload}, sent as {@value #CONTENT_TYPE}.
+ *
+ * <pre>
+ * batch   := "MCTB" version:u8 baseTime:varint dict networkId:ref serverName:ref sections:varint section*
+ * dict    := count:varint str*
+ * section := type:u8 rows:varint column*     each column holds the value of every row
+ * ref     := varint; 0 = null, otherwise dictionary index + 1
+ * str     := varint; 0 = null, otherwise UTF-8 byte length + 1, followed by the bytes
+ * uuids   := u8 1 then 16 raw bytes per row if every value is a canonical (lower-case) UUID,
+ *            otherwise u8 0 then a str per row
+ * time    := zigzag varint, milliseconds relative to baseTime
+ * f64     := IEEE 754, little-endian
+ * </pre>
+ *
+ * <p>Low-cardinality strings (servers, gamemodes, platforms, domains, currencies) are
+ * written once to the dictionary and referenced by index. Section layouts are listed on
+ * the write methods below and mirrored by {@code apps/ingestion/src/lib/batch-codec.ts}.</p>
+ */
+final class BinaryBatchEncoder implements BatchEncoder {
+    static final String CONTENT_TYPE = "application/vnd.mctrack.batch";
+    static final byte SPOOL_TYPE = 2;
+    static final MediaType MEDIA_TYPE = MediaType.parse(CONTENT_TYPE);
+    private static final int VERSION = 1;
+    private static final byte[] HEX_VALUES = new byte[128];
+
+    static final int SESSION_STARTS = 1;
+    static final int SESSION_ENDS = 2;
+    static final int HEARTBEATS = 3;
+    static final int PRESENCE = 4;
+    static final int SERVER_SWITCHES = 5;
+    static final int GAMEMODE_CHANGES = 6;
+    static final int PAYMENTS = 7;
+    static final int GAMEMODE_SESSION_STARTS = 8;
+    static final int GAMEMODE_SESSION_ENDS = 9;
+    static final int COMPLETED_SESSIONS = 10;
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i++) HEX_VALUES['0' + i] = (byte) i;
+        // Upper-case UUIDs are sent as strings, since the decoder writes hex digits in lower case
+        for (int i = 0; i < 6; i++) HEX_VALUES['a' + i] = (byte) (10 + i);
+    }
+
+    // Sections are written first so the dictionary is complete before the header goes out
+    private final BatchBufferPool scratchPool = new BatchBufferPool(2);
+
+    @Override
+    public MediaType getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public byte getSpoolType() {
+        return SPOOL_TYPE;
+    }
+
+    @Override
+    public void encode(BatchPayload payload, BatchBuffer out) {
+        BatchBuffer sections = scratchPool.acquire();
+        try {
+            Context ctx = new Context(sections, baseTime(payload));
+            int networkId = ctx.ref(payload.getNetworkId());
+            int serverName = ctx.ref(payload.getServerName());
+
+            int count = 0;
+            if (notEmpty(payload.getSessionStarts())) { writeSessionStarts(ctx, payload.getSessionStarts()); count++; }
+            if (notEmpty(payload.getSessionEnds())) { writeSessionEnds(ctx, payload.getSessionEnds()); count++; }
+            if (notEmpty(payload.getHeartbeats())) { writeHeartbeats(ctx, payload.getHeartbeats()); count++; }
+            if (notEmpty(payload.getPresence())) { writePresence(ctx, payload.getPresence()); count++; }
+            if (notEmpty(payload.getServerSwitches())) { writeServerSwitches(ctx, payload.getServerSwitches()); count++; }
+            if (notEmpty(payload.getGamemodeChanges())) { writeGamemodeChanges(ctx, payload.getGamemodeChanges()); count++; }
+            if (notEmpty(payload.getPayments())) { writePayments(ctx, payload.getPayments()); count++; }
+            if (notEmpty(payload.getGamemodeSessionStarts())) { writeGamemodeSessionStarts(ctx, payload.getGamemodeSessionStarts()); count++; }
+            if (notEmpty(payload.getGamemodeSessionEnds())) { writeGamemodeSessionEnds(ctx, payload.getGamemodeSessionEnds()); count++; }
+            if (notEmpty(payload.getCompletedSessions())) { writeCompletedSessions(ctx, payload.getCompletedSessions()); count++; }
+
+            out.write('M');
+            out.write('C');
+            out.write('T');
+            out.write('B');
+            out.write(VERSION);
+            writeVarint(out, ctx.baseTime);
+            writeVarint(out, ctx.dictionary.size());
+            for (String value : ctx.dictionary) {
+                writeString(out, value);
+            }
+            writeVarint(out, networkId);
+            writeVarint(out, serverName);
+            writeVarint(out, count);
+            out.write(sections.array(), 0, sections.size());
+        } finally {
+            scratchPool.release(sections);
+        }
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids playerName:str platform:ref bedrockDevice:ref ipAddress:str
+     * joinDomain:ref serverName:ref gamemode:ref timestamp:time
+     */
+    private static void writeSessionStarts(Context ctx, List<SessionStartEvent> events) {
+        ctx.beginSection(SESSION_STARTS, events.size());
+        ctx.uuids(events, SessionStartEvent::getSessionUuid);
+        ctx.uuids(events, SessionStartEvent::getPlayerUuid);
+        ctx.strings(events, SessionStartEvent::getPlayerName);
+        ctx.refs(events, event -> event.getPlatform() != null ? event.getPlatform().name() : null);
+        ctx.refs(events, SessionStartEvent::getBedrockDevice);
+        ctx.strings(events, SessionStartEvent::getIpAddress);
+        ctx.refs(events, SessionStartEvent::getJoinDomain);
+        ctx.refs(events, SessionStartEvent::getServerName);
+        ctx.refs(events, SessionStartEvent::getGamemode);
+        ctx.times(events, SessionStartEvent::getTimestamp);
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids timestamp:time
+     */
+    private static void writeSessionEnds(Context ctx, List<SessionEndEvent> events) {
+        ctx.beginSection(SESSION_ENDS, events.size());
+        ctx.uuids(events, SessionEndEvent::getSessionUuid);
+        ctx.uuids(events, SessionEndEvent::getPlayerUuid);
+        ctx.times(events, SessionEndEvent::getTimestamp);
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids serverName:ref gamemode:ref timestamp:time
+     */
+    private static void writeHeartbeats(Context ctx, List<SessionHeartbeatEvent> events) {
+        ctx.beginSection(HEARTBEATS, events.size());
+        ctx.uuids(events, SessionHeartbeatEvent::getSessionUuid);
+        ctx.uuids(events, SessionHeartbeatEvent::getPlayerUuid);
+        ctx.refs(events, SessionHeartbeatEvent::getServerName);
+        ctx.refs(events, SessionHeartbeatEvent::getGamemode);
+        ctx.times(events, SessionHeartbeatEvent::getTimestamp);
+    }
+
+    /**
+     * timestamp:time, then per snapshot: groups:varint (serverName:ref count:varint sessionUuids:uuids)*
+     */
+    private static void writePresence(Context ctx, List<PresenceSnapshot> snapshots) {
+        ctx.beginSection(PRESENCE, snapshots.size());
+        ctx.times(snapshots, PresenceSnapshot::getTimestamp);
+        BatchBuffer out = ctx.out;
+        for (PresenceSnapshot snapshot : snapshots) {
+            writeVarint(out, snapshot.getServers().size());
+            for (Map.Entry<String, List<String>> group : snapshot.getServers().entrySet()) {
+                writeVarint(out, ctx.ref(group.getKey()));
+                writeVarint(out, group.getValue().size());
+                ctx.uuids(group.getValue(), Function.identity());
+            }
+        }
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids fromServer:ref toServer:ref timestamp:time
+     */
+    private static void writeServerSwitches(Context ctx, List<ServerSwitchEvent> events) {
+        ctx.beginSection(SERVER_SWITCHES, events.size());
+        ctx.uuids(events, ServerSwitchEvent::getSessionUuid);
+        ctx.uuids(events, ServerSwitchEvent::getPlayerUuid);
+        ctx.refs(events, ServerSwitchEvent::getFromServer);
+        ctx.refs(events, ServerSwitchEvent::getToServer);
+        ctx.times(events, ServerSwitchEvent::getTimestamp);
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids fromGamemode:ref toGamemode:ref timestamp:time
+     */
+    private static void writeGamemodeChanges(Context ctx, List<GamemodeChangeEvent> events) {
+        ctx.beginSection(GAMEMODE_CHANGES, events.size());
+        ctx.uuids(events, GamemodeChangeEvent::getSessionUuid);
+        ctx.uuids(events, GamemodeChangeEvent::getPlayerUuid);
+        ctx.refs(events, GamemodeChangeEvent::getFromGamemode);
+        ctx.refs(events, GamemodeChangeEvent::getToGamemode);
+        ctx.times(events, GamemodeChangeEvent::getTimestamp);
+    }
+
+    /**
+     * paymentUuid:uuids playerUuid:uuids playerName:str amount:f64 currency:ref provider:ref
+     * transactionId:str timestamp:time, then per payment: count:varint (name:str quantity:zigzag
+     * hasPrice:u8 price:f64?)*
+     */
+    private static void writePayments(Context ctx, List<PaymentEvent> events) {
+        ctx.beginSection(PAYMENTS, events.size());
+        ctx.uuids(events, PaymentEvent::getPaymentUuid);
+        ctx.uuids(events, PaymentEvent::getPlayerUuid);
+        ctx.strings(events, PaymentEvent::getPlayerName);
+        BatchBuffer out = ctx.out;
+        for (PaymentEvent event : events) {
+            writeDouble(out, event.getAmount());
+        }
+        ctx.refs(events, PaymentEvent::getCurrency);
+        ctx.refs(events, PaymentEvent::getProvider);
+        ctx.strings(events, PaymentEvent::getTransactionId);
+        ctx.times(events, PaymentEvent::getTimestamp);
+        for (PaymentEvent event : events) {
+            List<PaymentProduct> products = event.getProducts();
+            writeVarint(out, products.size());
+            for (PaymentProduct product : products) {
+                writeString(out, product.getName());
+                writeVarint(out, zigzag(product.getQuantity()));
+                if (product.getPrice() != null) {
+                    out.write(1);
+                    writeDouble(out, product.getPrice());
+                } else {
+                    out.write(0);
+                }
+            }
+        }
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids playerName:str gamemodeId:ref serverName:ref ipAddress:str
+     * platform:ref bedrockDevice:ref
+     */
+    private static void writeGamemodeSessionStarts(Context ctx, List<GamemodeSessionStartEvent> events) {
+        ctx.beginSection(GAMEMODE_SESSION_STARTS, events.size());
+        ctx.uuids(events, GamemodeSessionStartEvent::getSessionUuid);
+        ctx.uuids(events, GamemodeSessionStartEvent::getPlayerUuid);
+        ctx.strings(events, GamemodeSessionStartEvent::getPlayerName);
+        ctx.refs(events, GamemodeSessionStartEvent::getGamemodeId);
+        ctx.refs(events, GamemodeSessionStartEvent::getServerName);
+        ctx.strings(events, GamemodeSessionStartEvent::getIpAddress);
+        ctx.refs(events, GamemodeSessionStartEvent::getPlatform);
+        ctx.refs(events, GamemodeSessionStartEvent::getBedrockDevice);
+    }
+
+    /**
+     * sessionUuid:uuids playerUuid:uuids
+     */
+    private static void writeGamemodeSessionEnds(Context ctx, List<GamemodeSessionEndEvent> events) {
+        ctx.beginSection(GAMEMODE_SESSION_ENDS, events.size());
+        ctx.uuids(events, GamemodeSessionEndEvent::getSessionUuid);
+        ctx.uuids(events, GamemodeSessionEndEvent::getPlayerUuid);
+    }
+
+    /**
+     * Same columns as session starts, then endTimestamp:time
+     */
+    private static void writeCompletedSessions(Context ctx, List<CompletedSession> events) {
+        ctx.beginSection(COMPLETED_SESSIONS, events.size());
+        ctx.uuids(events, CompletedSession::getSessionUuid);
+        ctx.uuids(events, CompletedSession::getPlayerUuid);
+        ctx.strings(events, CompletedSession::getPlayerName);
+        ctx.refs(events, event -> event.getPlatform() != null ? event.getPlatform().name() : null);
+        ctx.refs(events, CompletedSession::getBedrockDevice);
+        ctx.strings(events, CompletedSession::getIpAddress);
+        ctx.refs(events, CompletedSession::getJoinDomain);
+        ctx.refs(events, CompletedSession::getServerName);
+        ctx.refs(events, CompletedSession::getGamemode);
+        ctx.times(events, CompletedSession::getTimestamp);
+        ctx.times(events, CompletedSession::getEndTimestamp);
+    }
+
+    /**
+     * Earliest timestamp in the batch, so relative times are small and non-negative.
+     */
+    private static long baseTime(BatchPayload payload) {
+        long base = Long.MAX_VALUE;
+        base = minTime(base, payload.getSessionStarts(), SessionStartEvent::getTimestamp);
+        base = minTime(base, payload.getSessionEnds(), SessionEndEvent::getTimestamp);
+        base = minTime(base, payload.getHeartbeats(), SessionHeartbeatEvent::getTimestamp);
+        base = minTime(base, payload.getPresence(), PresenceSnapshot::getTimestamp);
+        base = minTime(base, payload.getServerSwitches(), ServerSwitchEvent::getTimestamp);
+        base = minTime(base, payload.getGamemodeChanges(), GamemodeChangeEvent::getTimestamp);
+        base = minTime(base, payload.getPayments(), PaymentEvent::getTimestamp);
+        base = minTime(base, payload.getCompletedSessions(), CompletedSession::getTimestamp);
+        return base == Long.MAX_VALUE ? 0 : Math.max(0, base);
+    }
+
+    private static <T> long minTime(long base, List<T> events, ToLongFunction<T> timestamp) {
+        if (events != null) {
+            for (T event : events) {
+                base = Math.min(base, timestamp.applyAsLong(event));
+            }
+        }
+        return base;
+    }
+
+    private static boolean notEmpty(List<?> list) {
+        return list != null && !list.isEmpty();
+    }
+
+    private static final class Context {
+        final BatchBuffer out;
+        final long baseTime;
+        final List<String> dictionary = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+        long[] uuidScratch = new long[64];
+
+        Context(BatchBuffer out, long baseTime) {
+            this.out = out;
+            this.baseTime = baseTime;
+        }
+
+        /**
+         * Dictionary reference for the value: 0 for null, otherwise index + 1.
+         */
+        int ref(String value) {
+            if (value == null) return 0;
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.add(value);
+                indexes.put(value, index);
+            }
+            return index + 1;
+        }
+
+        void beginSection(int type, int rows) {
+            out.write(type);
+            writeVarint(out, rows);
+        }
+
+        <T> void refs(List<T> rows, Function<T, String> column) {
+            for (T row : rows) {
+                writeVarint(out, ref(column.apply(row)));
+            }
+        }
+
+        <T> void strings(List<T> rows, Function<T, String> column) {
+            for (T row : rows) {
+                writeString(out, column.apply(row));
+            }
+        }
+
+        <T> void times(List<T> rows, ToLongFunction<T> column) {
+            for (T row : rows) {
+                writeVarint(out, zigzag(column.applyAsLong(row) - baseTime));
+            }
+        }
+
+        <T> void uuids(List<T> rows, Function<T, String> column) {
+            int count = rows.size();
+            if (uuidScratch.length < count * 2) {
+                uuidScratch = new long[count * 2];
+            }
+
+            boolean canonical = true;
+            for (int i = 0; i < count; i++) {
+                if (!parseUuid(column.apply(rows.get(i)), uuidScratch, i * 2)) {
+                    canonical = false;
+                    break;
+                }
+            }
+
+            if (canonical) {
+                out.write(1);
+                out.ensureCapacity(count * 16);
+                byte[] data = out.array();
+                int position = out.size();
+                for (int i = 0; i < count * 2; i++) {
+                    long bits = uuidScratch[i];
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        data[position++] = (byte) (bits >>> shift);
+                    }
+                }
+                out.advance(count * 16);
+            } else {
+                out.write(0);
+                for (T row : rows) {
+                    writeString(out, column.apply(row));
+                }
+            }
+        }
+    }
+
+    static void writeVarint(BatchBuffer out, long value) {
+        out.ensureCapacity(10);
+        byte[] data = out.array();
+        int position = out.size();
+        int start = position;
+        while ((value & ~0x7FL) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        out.advance(position - start);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static void writeDouble(BatchBuffer out, double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        out.ensureCapacity(8);
+        byte[] data = out.array();
+        int position = out.size();
+        for (int i = 0; i < 8; i++) {
+            data[position + i] = (byte) (bits >>> (8 * i));
+        }
+        out.advance(8);
+    }
+
+    /**
+     * Writes a nullable string as {@code length + 1} followed by its UTF-8 bytes.
+     */
+    static void writeString(BatchBuffer out, String value) {
+        if (value == null) {
+            writeVarint(out, 0);
+            return;
+        }
+
+        int length = value.length();
+        int utf8Length = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                utf8Length++;
+            } else if (c < 0x800) {
+                utf8Length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                utf8Length += 4;
+                i++;
+            } else {
+                utf8Length += 3;
+            }
+        }
+
+        writeVarint(out, utf8Length + 1L);
+        out.ensureCapacity(utf8Length);
+        byte[] data = out.array();
+        int position = out.size();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                data[position++] = (byte) c;
+            } else if (c < 0x800) {
+                data[position++] = (byte) (0xC0 | (c >> 6));
+                data[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                data[position++] = (byte) (0xF0 | (codePoint >> 18));
+                data[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                data[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                data[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                // Unpaired surrogates are written as U+FFFD, as String.getBytes would
+                char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+                data[position++] = (byte) (0xE0 | (encoded >> 12));
+                data[position++] = (byte) (0x80 | ((encoded >> 6) & 0x3F));
+                data[position++] = (byte) (0x80 | (encoded & 0x3F));
+            }
+        }
+        out.advance(utf8Length);
+    }
+
+    /**
+     * Parses the 36-character hyphenated form produced by {@link java.util.UUID#toString()}
+     * into {@code bits[index]} (most significant) and {@code bits[index + 1]}.
+     * Returns false, leaving garbage behind, for anything else.
+     */
+    static boolean parseUuid(String value, long[] bits, int index) {
+        if (value == null || value.length() != 36
+            || value.charAt(8) != '-' || value.charAt(13) != '-'
+            || value.charAt(18) != '-' || value.charAt(23) != '-') {
+            return false;
+        }
+
+        long msb = 0;
+        long lsb = 0;
+        int invalid = 0;
+        for (int i = 0; i < 18; i++) {
+            if (i == 8 || i == 13) continue;
+            int digit = hexValue(value.charAt(i));
+            invalid |= digit;
+            msb = (msb << 4) | (digit & 0xF);
+        }
+        for (int i = 19; i < 36; i++) {
+            if (i == 23) continue;
+            int digit = hexValue(value.charAt(i));
+            invalid |= digit;
+            lsb = (lsb << 4) | (digit & 0xF);
+        }
+        bits[index] = msb;
+        bits[index + 1] = lsb;
+        return invalid >= 0;
+    }
+
+    private static int hexValue(char c) {
+        return c < 128 ? HEX_VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mctrack.common.api;
+
+/**
+ * Stops sending while the ingestion API is failing.
+ *
+ * <p>After {@code threshold} consecutive failures the breaker opens and rejects requests
+ * for a backoff period that grows with each consecutive trip. Once it expires a single
+ * half-open probe is let through: success closes the breaker, failure opens it again.</p>
+ *
+ * <p>Not thread-safe; {@link BatchSender} only calls it while holding its own lock.</p>
+ */
+final class CircuitBreaker {
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int threshold;
+    private final RetryBackoff backoff;
+
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int trips;
+    private long openUntilNanos;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int threshold, RetryBackoff backoff) {
+        this.threshold = Math.max(1, threshold);
+        this.backoff = backoff;
+    }
+
+    /**
+     * Returns true if a request may be sent now. In the half-open state only the
+     * first caller gets through; its outcome must be reported via {@link #onSuccess()}
+     * or {@link #onFailure()}.
+     */
+    boolean allowRequest() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openUntilNanos < 0) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default:
+                if (probeInFlight) {
+                    return false;
+                }
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    void onSuccess() {
+        consecutiveFailures = 0;
+        trips = 0;
+        probeInFlight = false;
+        state = State.CLOSED;
+    }
+
+    void onFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || consecutiveFailures >= threshold) {
+            trips++;
+            openUntilNanos = System.nanoTime() + backoff.delayNanos(trips);
+            state = State.OPEN;
+        }
+    }
+
+    /**
+     * Opens the breaker now, regardless of the threshold, e.g. when ingestion refuses the API key.
+     */
+    void trip() {
+        consecutiveFailures = Math.max(consecutiveFailures, threshold);
+        probeInFlight = false;
+        trips++;
+        openUntilNanos = System.nanoTime() + backoff.delayNanos(trips);
+        state = State.OPEN;
+    }
+
+    /**
+     * Milliseconds until the next probe is allowed, or 0 if requests are allowed now.
+     */
+    long getRemainingOpenMs() {
+        if (state != State.OPEN) return 0;
+        return Math.max(0, (openUntilNanos - System.nanoTime()) / 1_000_000L);
+    }
+
+    State getState() {
+        return state;
+    }
+}
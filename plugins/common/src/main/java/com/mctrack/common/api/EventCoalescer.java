@@ -0,0 +1,159 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shrinks a batch before it is encoded without changing what ingestion ends up storing.
+ *
+ * <ul>
+ *   <li>Only the newest heartbeat of each session is kept, and none after the session ended.</li>
+ *   <li>Server switches of one session less than {@link #RAPID_SWITCH_MS} apart are merged
+ *       into a single switch from the first server to the last. A round trip back to the
+ *       starting server is kept as two switches, so the time spent on the other server is
+ *       still recorded.</li>
+ *   <li>A session that starts and ends in the same batch with nothing but heartbeats in
+ *       between becomes one {@link CompletedSession} (only when ingestion supports it).</li>
+ * </ul>
+ *
+ * <p>{@link BatchSender} hands over each player's events in the order they were queued, and
+ * events only move relative to other sessions' events, never within one session, so
+ * per-player ordering is preserved. Not thread-safe; {@link BatchSender} calls it under its lock.</p>
+ */
+final class EventCoalescer {
+    static final long RAPID_SWITCH_MS = 5000;
+
+    private static final class SessionState {
+        int start = -1;
+        int lastHeartbeat = -1;
+        int lastSwitch = -1;
+        boolean changed;
+        boolean ended;
+    }
+
+    private final Map<String, SessionState> sessions = new HashMap<>();
+    private long coalescedCount;
+    private long mergedSwitchCount;
+
+    /**
+     * Returns the coalesced batch; {@code events} itself is not modified.
+     *
+     * @param foldSessions whether start/end pairs may be sent as {@link CompletedSession}
+     */
+    List<TrackedEvent> coalesce(List<TrackedEvent> events, boolean foldSessions) {
+        TrackedEvent[] out = events.toArray(new TrackedEvent[0]);
+        int removed = 0;
+
+        try {
+            for (int i = 0; i < out.length; i++) {
+                TrackedEvent event = out[i];
+
+                if (event instanceof SessionHeartbeatEvent) {
+                    SessionState state = state(((SessionHeartbeatEvent) event).getSessionUuid());
+                    if (state == null) continue;
+                    if (state.ended) {
+                        out[i] = null;
+                        removed++;
+                        continue;
+                    }
+                    if (state.lastHeartbeat >= 0) {
+                        out[state.lastHeartbeat] = null;
+                        removed++;
+                    }
+                    state.lastHeartbeat = i;
+
+                } else if (event instanceof ServerSwitchEvent) {
+                    ServerSwitchEvent current = (ServerSwitchEvent) event;
+                    SessionState state = state(current.getSessionUuid());
+                    if (state == null) continue;
+                    state.changed = true;
+                    if (state.lastSwitch >= 0) {
+                        ServerSwitchEvent previous = (ServerSwitchEvent) out[state.lastSwitch];
+                        if (current.getTimestamp() - previous.getTimestamp() < RAPID_SWITCH_MS
+                            && !Objects.equals(previous.getFromServer(), current.getToServer())) {
+                            out[state.lastSwitch] = null;
+                            removed++;
+                            mergedSwitchCount++;
+                            out[i] = new ServerSwitchEvent(current.getSessionUuid(), current.getPlayerUuid(),
+                                previous.getFromServer(), current.getToServer(), current.getTimestamp());
+                            // Delivery latency is measured from the oldest event merged into it
+                            out[i].setEnqueuedNanos(previous.getEnqueuedNanos());
+                        }
+                    }
+                    state.lastSwitch = i;
+
+                } else if (event instanceof GamemodeChangeEvent) {
+                    SessionState state = state(((GamemodeChangeEvent) event).getSessionUuid());
+                    if (state == null) continue;
+                    state.changed = true;
+                    state.lastSwitch = -1;
+
+                } else if (event instanceof SessionStartEvent) {
+                    SessionState state = state(((SessionStartEvent) event).getSessionUuid());
+                    if (state == null) continue;
+                    state.start = i;
+                    state.changed = false;
+                    state.ended = false;
+                    state.lastSwitch = -1;
+
+                } else if (event instanceof SessionEndEvent) {
+                    SessionState state = state(((SessionEndEvent) event).getSessionUuid());
+                    if (state == null) continue;
+                    state.lastSwitch = -1;
+                    state.ended = true;
+                    if (!foldSessions || state.start < 0 || state.changed) continue;
+
+                    SessionStartEvent start = (SessionStartEvent) out[state.start];
+                    out[state.start] = new CompletedSession(start, (SessionEndEvent) event);
+                    out[state.start].setEnqueuedNanos(start.getEnqueuedNanos());
+                    out[i] = null;
+                    removed++;
+                    if (state.lastHeartbeat > state.start) {
+                        out[state.lastHeartbeat] = null;
+                        removed++;
+                    }
+                    state.start = -1;
+                    state.lastHeartbeat = -1;
+                }
+            }
+        } finally {
+            sessions.clear();
+        }
+
+        if (removed == 0) {
+            return events;
+        }
+        coalescedCount += removed;
+        List<TrackedEvent> result = new ArrayList<>(out.length - removed);
+        for (TrackedEvent event : out) {
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Events removed by coalescing since startup.
+     */
+    long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Server switches merged into a later one since startup; included in {@link #getCoalescedCount()}.
+     */
+    long getMergedSwitchCount() {
+        return mergedSwitchCount;
+    }
+
+    private SessionState state(String sessionUuid) {
+        if (sessionUuid == null) return null;
+        return sessions.computeIfAbsent(sessionUuid, key -> new SessionState());
+    }
+}
@@ -0,0 +1,179 @@
+package com.mctrack.common.api;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+
+/**
+ * Java Flight Recorder events for the pipeline's own work, so a recording of a busy server
+ * shows exactly which CPU time, allocation and latency belong to MCTrack.
+ *
+ * <p>All events are disabled by default; while disabled, the events are never filled in and
+ * the JIT removes their allocation. Enable the "MCTrack" category in a recording's settings,
+ * for example with {@code jfr configure +mctrack.BatchSend#enabled=true ... --output mctrack.jfc}
+ * and {@code -XX:StartFlightRecording:settings=mctrack.jfc}, or from JDK Mission Control.</p>
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("mctrack.BatchAssembly")
+    @Label("Batch Assembly")
+    @Category("MCTrack")
+    @Description("Taking a batch of events from a partition and coalescing it")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BatchAssembly extends Event {
+        @Label("Taken Events")
+        int takenEvents;
+
+        @Label("Batch Events")
+        @Description("Events left after coalescing")
+        int batchEvents;
+    }
+
+    @Name("mctrack.BatchEncode")
+    @Label("Batch Encode")
+    @Category("MCTrack")
+    @Description("Serializing a batch or payment payload")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BatchEncode extends Event {
+        @Label("Format")
+        String format;
+
+        @Label("Events")
+        int events;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("mctrack.BatchSend")
+    @Label("Batch Send")
+    @Category("MCTrack")
+    @Description("One HTTP request to the ingestion API, from enqueueing the call until the response arrived")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BatchSend extends Event {
+        @Label("Kind")
+        @Description("batch, replay (from the disk spool) or payment")
+        String kind;
+
+        @Label("Events")
+        @Description("0 when not known, as for spool replays")
+        int events;
+
+        @Label("Size")
+        @Description("Encoded payload size before compression, 0 when not known")
+        @DataAmount
+        long bytes;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Status")
+        @Description("HTTP status code, 0 if no response was received")
+        int status;
+
+        @Label("Outcome")
+        @Description("ok, or the failure cause as in mctrack_send_failures_total")
+        String outcome;
+    }
+
+    @Name("mctrack.BatchRequeue")
+    @Label("Batch Requeue")
+    @Category("MCTrack")
+    @Description("A batch that could not be delivered was scheduled for a retry, spooled or put back in memory")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class BatchRequeue extends Event {
+        @Label("Destination")
+        @Description("retry, spool or memory")
+        String destination;
+
+        @Label("Events")
+        int events;
+
+        @Label("Attempt")
+        int attempt;
+
+        @Label("Retry Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        long retryDelay;
+
+        @Label("Cause")
+        String cause;
+    }
+
+    @Name("mctrack.HeartbeatSweep")
+    @Label("Heartbeat Sweep")
+    @Category("MCTrack")
+    @Description("Reporting every online session as alive")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class HeartbeatSweep extends Event {
+        @Label("Mode")
+        @Description("snapshot or heartbeats")
+        String mode;
+
+        @Label("Sessions")
+        int sessions;
+    }
+
+    /**
+     * Starts timing an HTTP request.
+     *
+     * @return the event to pass to {@link #endSend}, or null while the event is disabled
+     */
+    static BatchSend beginSend(String kind, int events, long bytes, int attempt) {
+        BatchSend event = new BatchSend();
+        if (!event.isEnabled()) return null;
+        event.kind = kind;
+        event.events = events;
+        event.bytes = bytes;
+        event.attempt = attempt;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param event from {@link #beginSend}, may be null
+     * @param status HTTP status, or 0 if the request failed without a response
+     */
+    static void endSend(BatchSend event, int status, IOException error) {
+        if (event == null) return;
+        event.end();
+        if (event.shouldCommit()) {
+            event.status = status;
+            event.outcome = error == null ? "ok" : PipelineMetrics.causeOf(error);
+            event.commit();
+        }
+    }
+
+    static void requeue(String destination, int events, int attempt, long retryDelayMs, IOException cause) {
+        BatchRequeue event = new BatchRequeue();
+        if (event.isEnabled()) {
+            event.destination = destination;
+            event.events = events;
+            event.attempt = attempt;
+            event.retryDelay = retryDelayMs;
+            event.cause = cause != null ? PipelineMetrics.causeOf(cause) : null;
+            event.commit();
+        }
+    }
+
+    static String formatOf(BatchEncoder encoder) {
+        return encoder.getSpoolType() == BinaryBatchEncoder.SPOOL_TYPE ? "binary" : "json";
+    }
+}
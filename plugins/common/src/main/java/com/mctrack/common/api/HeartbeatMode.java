@@ -0,0 +1,20 @@
+package com.mctrack.common.api;
+
+/**
+ * How online players are reported every heartbeat interval.
+ */
+public enum HeartbeatMode {
+    /** One {@link com.mctrack.common.model.PresenceSnapshot} covering all sessions (if the API supports it). */
+    SNAPSHOT,
+    /** One {@link com.mctrack.common.model.SessionHeartbeatEvent} per player. */
+    PER_PLAYER;
+
+    public static HeartbeatMode fromConfig(String value, HeartbeatMode defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.mctrack.common.api;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import okhttp3.MediaType;
+
+import java.io.IOException;
+
+/**
+ * Serializes batches through a Gson {@link JsonWriter} directly into a pooled buffer.
+ */
+final class JsonBatchEncoder implements BatchEncoder {
+    static final byte SPOOL_TYPE = 1;
+    static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
+
+    private final Gson gson;
+
+    JsonBatchEncoder(Gson gson) {
+        this.gson = gson;
+    }
+
+    @Override
+    public void encode(BatchPayload payload, BatchBuffer out) throws IOException {
+        JsonWriter writer = new JsonWriter(out.asWriter());
+        gson.toJson(payload, BatchPayload.class, writer);
+        writer.flush();
+    }
+
+    @Override
+    public MediaType getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public byte getSpoolType() {
+        return SPOOL_TYPE;
+    }
+}
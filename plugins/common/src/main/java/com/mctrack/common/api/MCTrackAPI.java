@@ -3,14 +3,35 @@ package com.mctrack.common.api;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.metrics.Histogram;
+import com.mctrack.common.metrics.MetricsRegistry;
+import com.mctrack.common.metrics.MetricsServer;
+import com.mctrack.common.metrics.Meter;
 import com.mctrack.common.model.*;
+import com.mctrack.common.queue.EventPriority;
+import com.mctrack.common.queue.EventQueue;
+import com.mctrack.common.spool.DiskSpool;
+import com.mctrack.common.util.PlayerSession;
+import com.mctrack.common.util.SessionStore;
 import okhttp3.*;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 public class MCTrackAPI {
@@ -18,20 +39,102 @@ public class MCTrackAPI {
     private final Consumer<String> logger;
     private final OkHttpClient client;
     private final Gson gson;
-    private final MediaType JSON_MEDIA_TYPE = MediaType.parse("application/json; charset=utf-8");
-    private final ConcurrentLinkedQueue<Object> eventQueue = new ConcurrentLinkedQueue<>();
+    private final EventQueue<TrackedEvent> eventQueue;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private ScheduledFuture<?> batchJob;
+    private final DiskSpool spool;
+    private final AdaptiveBatchController batchController;
+    private final BatchSender sender;
+    private final PaymentBatcher payments;
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private final PipelineMetrics metrics = new PipelineMetrics(metricsRegistry);
+    private volatile MetricsServer metricsServer;
+    private final JsonBatchEncoder jsonEncoder;
+    private final BinaryBatchEncoder binaryEncoder = new BinaryBatchEncoder();
+    private final File keyInfoFile;
+    private final RetryBackoff authBackoff = new RetryBackoff(5000, 300000);
+    // Gamemode session events created before the key's gamemode scope is known
+    private final ArrayDeque<TrackedEvent> parkedGamemodeEvents = new ArrayDeque<>();
+    private volatile ScheduledFuture<?> batchJob;
+    private volatile boolean stopped;
+    // Older ingestion servers ignore presence snapshots, so they are only sent once the API advertises them
+    private volatile boolean presenceSupported;
+    private volatile int authAttempts;
 
     public MCTrackAPI(MCTrackConfig config, Consumer<String> logger) {
+        this(config, logger, null);
+    }
+
+    /**
+     * @param dataFolder plugin data folder; undelivered batches are spooled under it (null disables the spool)
+     */
+    public MCTrackAPI(MCTrackConfig config, Consumer<String> logger, File dataFolder) {
         this.config = config;
         this.logger = logger;
+        // One connection per in-flight batch, plus headroom for auth and payment calls
+        Dispatcher dispatcher = new Dispatcher();
+        int maxInFlight = Math.max(1, config.getMaxInFlight());
+        dispatcher.setMaxRequests(Math.max(64, maxInFlight + 2));
+        dispatcher.setMaxRequestsPerHost(maxInFlight + 2);
         this.client = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
             .connectTimeout(10, TimeUnit.SECONDS)
             .readTimeout(30, TimeUnit.SECONDS)
             .writeTimeout(30, TimeUnit.SECONDS)
             .build();
         this.gson = new GsonBuilder().create();
+        this.eventQueue = new EventQueue<>(
+            config.getQueueCapacity(),
+            config.getQueueOverflowPolicy(),
+            config.getQueueBlockTimeoutMs(),
+            MCTrackAPI::priorityOf
+        );
+        this.spool = openSpool(dataFolder);
+        this.keyInfoFile = dataFolder != null ? new File(dataFolder, "key-info.json") : null;
+        this.batchController = new AdaptiveBatchController(config);
+        this.jsonEncoder = new JsonBatchEncoder(gson);
+        this.sender = new BatchSender(config, logger, client, eventQueue, spool, jsonEncoder,
+            batchController, scheduler, metrics, this::scheduleFlush);
+        this.payments = new PaymentBatcher(config, logger, sender, eventQueue, scheduler, metrics);
+        // zstd is only switched on once the API advertises support for it
+        sender.setCompression(config.getCompression() == BatchCompression.ZSTD
+            ? BatchCompression.GZIP
+            : config.getCompression());
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        metricsRegistry.gauge("mctrack_queue_depth", "Events waiting in the queue", this::getQueueDepth);
+        for (EventPriority priority : EventPriority.values()) {
+            metricsRegistry.gauge("mctrack_queue_lane_depth", "Events waiting in each queue lane",
+                "lane", priority.name().toLowerCase(Locale.ROOT), () -> getQueueDepth(priority));
+        }
+        metricsRegistry.gauge("mctrack_queue_capacity", "Queue capacity", this::getQueueCapacity);
+        metricsRegistry.counter("mctrack_events_dropped_total", "Events dropped or rejected because the queue was full",
+            () -> getDroppedEventCount() + getRejectedEventCount());
+        metricsRegistry.gauge("mctrack_batches_in_flight", "Batches being sent or waiting for a retry", this::getInFlightBatchCount);
+        metricsRegistry.gauge("mctrack_batches_spooled", "Batches waiting in the disk spool", this::getSpooledBatchCount);
+        metricsRegistry.gauge("mctrack_batch_size_target", "Current adaptive batch size", this::getCurrentBatchSize);
+        metricsRegistry.gauge("mctrack_circuit_open", "1 while the circuit breaker blocks sends",
+            () -> sender.getBreakerState() == CircuitBreaker.State.CLOSED ? 0 : 1);
+    }
+
+    private DiskSpool openSpool(File dataFolder) {
+        if (dataFolder == null || !config.isSpoolEnabled()) {
+            return null;
+        }
+
+        try {
+            return DiskSpool.open(
+                new File(dataFolder, "spool").toPath(),
+                config.getSpoolSegmentSizeKb() * 1024,
+                config.getSpoolMaxSizeMb() * 1024L * 1024L,
+                config.isSpoolSync()
+            );
+        } catch (IOException e) {
+            logger.accept("[MCTrack] Failed to open disk spool, undelivered events will only be kept in memory: " + e.getMessage());
+            return null;
+        }
     }
 
     public void start() {
@@ -40,60 +143,292 @@ public class MCTrackAPI {
             return;
         }
 
-        // Fetch API key info (including gamemodeId) on startup
+        // Use the scope from the last successful auth right away and refresh it in the background,
+        // so an unreachable API never delays server startup
+        ApiKeyInfoResponse cached = loadCachedKeyInfo();
+        if (cached != null) {
+            applyApiKeyInfo(cached, true);
+        }
         fetchApiKeyInfo();
 
-        batchJob = scheduler.scheduleAtFixedRate(
-            this::flushEvents,
-            config.getBatchInterval(),
-            config.getBatchInterval(),
-            TimeUnit.SECONDS
-        );
+        scheduleTick();
+        scheduler.scheduleAtFixedRate(metrics.enqueued::tick, Meter.TICK_SECONDS, Meter.TICK_SECONDS, TimeUnit.SECONDS);
+        startMetricsServer();
+
+        if (spool != null && spool.hasPending()) {
+            logger.accept("[MCTrack] Replaying " + spool.getPendingCount() + " spooled batches");
+            scheduler.execute(() -> sender.flush(false));
+        }
 
         logger.accept("[MCTrack] API client started");
     }
 
+    private void startMetricsServer() {
+        if (config.getMetricsPort() <= 0) return;
+
+        try {
+            metricsServer = MetricsServer.start(config.getMetricsBindAddress(), config.getMetricsPort(), metricsRegistry);
+            logger.accept("[MCTrack] Serving metrics on http://" + config.getMetricsBindAddress() + ":"
+                + config.getMetricsPort() + "/metrics");
+        } catch (IOException | RuntimeException e) {
+            logger.accept("[MCTrack] Failed to start metrics endpoint on port " + config.getMetricsPort() + ": " + e.getMessage());
+        }
+    }
+
     /**
      * Fetches API key information from the server, including the associated gamemodeId.
+     * Runs asynchronously and retries with backoff until it succeeds.
      */
     private void fetchApiKeyInfo() {
+        if (stopped) return;
+
         Request request = new Request.Builder()
             .url(config.getApiUrl() + "/session/auth")
             .header("X-API-Key", config.getApiKey())
             .get()
             .build();
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful() && response.body() != null) {
-                String body = response.body().string();
-                ApiKeyInfoResponse info = gson.fromJson(body, ApiKeyInfoResponse.class);
-                if (info != null && info.gamemodeId != null) {
-                    config.setGamemodeId(info.gamemodeId);
-                    logger.accept("[MCTrack] API key is scoped to gamemode: " + info.gamemodeName);
-                } else {
-                    logger.accept("[MCTrack] API key is network-wide (no gamemode)");
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful() || response.body() == null) {
+                        retryApiKeyInfo("HTTP " + response.code());
+                        return;
+                    }
+                    String body = response.body().string();
+                    ApiKeyInfoResponse info = gson.fromJson(body, ApiKeyInfoResponse.class);
+                    if (info == null) {
+                        retryApiKeyInfo("empty response");
+                        return;
+                    }
+                    authAttempts = 0;
+                    applyApiKeyInfo(info, false);
+                    saveCachedKeyInfo(info);
+                } catch (Exception e) {
+                    retryApiKeyInfo(e.getMessage());
                 }
-            } else {
-                logger.accept("[MCTrack] Failed to fetch API key info: " + response.code());
             }
+
+            @Override
+            public void onFailure(Call call, IOException e) {
+                retryApiKeyInfo(e.getMessage());
+            }
+        });
+    }
+
+    private void retryApiKeyInfo(String reason) {
+        if (stopped) return;
+        long delayMs = authBackoff.delayMs(++authAttempts);
+        logger.accept("[MCTrack] Failed to fetch API key info (" + reason + "), retrying in " + (delayMs / 1000) + "s");
+        try {
+            scheduler.schedule(this::fetchApiKeyInfo, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void applyApiKeyInfo(ApiKeyInfoResponse info, boolean cached) {
+        presenceSupported = info.features != null && info.features.contains("presence");
+        // Servers that predate the binary format only understand JSON
+        boolean binarySupported = info.features != null && info.features.contains("binary-batch");
+        sender.setEncoder(config.getWireFormat() == WireFormat.BINARY && binarySupported
+            ? binaryEncoder
+            : jsonEncoder);
+        sender.setCompression(resolveCompression(config.getCompression(), info.contentEncodings));
+        sender.setFoldSessions(info.features != null && info.features.contains("completed-sessions"));
+        batchController.setServerLimit(info.maxBatchEvents != null
+            ? info.maxBatchEvents
+            : AdaptiveBatchController.LEGACY_MAX_BATCH_EVENTS);
+
+        String source = cached ? " (cached)" : "";
+        if (info.gamemodeId != null) {
+            logger.accept("[MCTrack] API key is scoped to gamemode: " + info.gamemodeName + source);
+        } else {
+            logger.accept("[MCTrack] API key is network-wide (no gamemode)" + source);
+        }
+        resolveGamemode(info.gamemodeId);
+    }
+
+    /**
+     * Records the key's gamemode scope and releases gamemode session events that were
+     * created before it was known.
+     */
+    private void resolveGamemode(String gamemodeId) {
+        List<TrackedEvent> released;
+        synchronized (parkedGamemodeEvents) {
+            config.setGamemodeId(gamemodeId);
+            released = new ArrayList<>(parkedGamemodeEvents);
+            parkedGamemodeEvents.clear();
+        }
+        if (released.isEmpty()) return;
+
+        if (!config.hasGamemode()) {
+            if (config.isDebug()) {
+                logger.accept("[MCTrack] Discarded " + released.size() + " gamemode session events (network-wide key)");
+            }
+            return;
+        }
+        for (TrackedEvent event : released) {
+            queueEvent(withGamemode(event));
+        }
+        if (config.isDebug()) {
+            logger.accept("[MCTrack] Released " + released.size() + " gamemode session events held during startup");
+        }
+    }
+
+    /**
+     * Holds a gamemode session event back while the key's scope is unknown.
+     *
+     * @return true if the event was parked, false if it can be queued now
+     */
+    private boolean parkGamemodeEvent(TrackedEvent event) {
+        if (config.isGamemodeResolved()) return false;
+        synchronized (parkedGamemodeEvents) {
+            if (config.isGamemodeResolved()) return false;
+            if (parkedGamemodeEvents.size() >= config.getQueueCapacity()) {
+                parkedGamemodeEvents.pollFirst();
+            }
+            parkedGamemodeEvents.addLast(event);
+            return true;
+        }
+    }
+
+    private TrackedEvent withGamemode(TrackedEvent event) {
+        if (event instanceof GamemodeSessionStartEvent) {
+            GamemodeSessionStartEvent start = (GamemodeSessionStartEvent) event;
+            if (start.getGamemodeId() == null) {
+                return start.withGamemodeId(config.getGamemodeId());
+            }
+        }
+        return event;
+    }
+
+    private ApiKeyInfoResponse loadCachedKeyInfo() {
+        if (keyInfoFile == null || !keyInfoFile.isFile()) return null;
+        try {
+            CachedKeyInfo cached = gson.fromJson(Files.readString(keyInfoFile.toPath()), CachedKeyInfo.class);
+            // A different key (or API) may have a different scope
+            if (cached == null || cached.info == null || !keyFingerprint().equals(cached.keyFingerprint)) {
+                return null;
+            }
+            return cached.info;
         } catch (Exception e) {
-            logger.accept("[MCTrack] Failed to fetch API key info: " + e.getMessage());
+            logger.accept("[MCTrack] Ignoring unreadable " + keyInfoFile.getName() + ": " + e.getMessage());
+            return null;
         }
     }
 
+    private void saveCachedKeyInfo(ApiKeyInfoResponse info) {
+        if (keyInfoFile == null) return;
+        try {
+            CachedKeyInfo cached = new CachedKeyInfo();
+            cached.keyFingerprint = keyFingerprint();
+            cached.fetchedAt = System.currentTimeMillis();
+            cached.info = info;
+            Path target = keyInfoFile.toPath();
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.writeString(temp, gson.toJson(cached));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            logger.accept("[MCTrack] Failed to cache API key info: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies the API URL and key without storing the key itself.
+     */
+    private String keyFingerprint() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] hash = digest.digest((config.getApiUrl() + "\n" + config.getApiKey()).getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (int i = 0; i < 16; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static class CachedKeyInfo {
+        String keyFingerprint;
+        long fetchedAt;
+        ApiKeyInfoResponse info;
+    }
+
     private static class ApiKeyInfoResponse {
         String gamemodeId;
         String gamemodeName;
         String networkId;
+        List<String> contentEncodings;
+        List<String> features;
+        // Absent on ingestion versions that accept at most 100 events per batch
+        Integer maxBatchEvents;
+    }
+
+    /**
+     * Falls back to gzip when zstd is configured but either side cannot handle it.
+     * Servers that predate content negotiation are assumed to support gzip only.
+     */
+    private BatchCompression resolveCompression(BatchCompression configured, List<String> serverEncodings) {
+        if (configured != BatchCompression.ZSTD) {
+            return configured;
+        }
+        if (!BatchCompression.isZstdAvailable()) {
+            logger.accept("[MCTrack] zstd-jni not found, using gzip compression");
+            return BatchCompression.GZIP;
+        }
+        if (serverEncodings == null || !serverEncodings.contains(BatchCompression.ZSTD.getContentEncoding())) {
+            return BatchCompression.GZIP;
+        }
+        return BatchCompression.ZSTD;
+    }
+
+    /**
+     * Schedules the next flush tick. The interval is re-read every time since the batch controller may change it.
+     */
+    private void scheduleTick() {
+        if (stopped) return;
+        try {
+            batchJob = scheduler.schedule(this::tick, batchController.getIntervalMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    private void tick() {
+        try {
+            sender.flush(true);
+            batchController.adjust(eventQueue.size());
+        } catch (Exception e) {
+            logger.accept("[MCTrack] Flush failed: " + e.getMessage());
+        } finally {
+            scheduleTick();
+        }
     }
 
     public void stop() {
-        flushEvents();
+        stopped = true;
+        ScheduledFuture<?> batchJob = this.batchJob;
         if (batchJob != null) {
             batchJob.cancel(false);
         }
+        // One budget for both. Payment requests run while the sender drains; the last part is kept
+        // for cancelled ones to reach the spool, since they must settle before the sender closes it
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getShutdownTimeoutMs());
+        long deadline = System.nanoTime() + timeoutNanos;
+        long cancelAt = deadline - Math.min(TimeUnit.MILLISECONDS.toNanos(PaymentBatcher.CANCEL_GRACE_MS), timeoutNanos / 4);
+        payments.stop();
+        sender.drain(cancelAt);
+        payments.settle(cancelAt, deadline);
+        sender.close();
+        if (spool != null) {
+            spool.close();
+        }
         scheduler.shutdown();
         client.dispatcher().executorService().shutdown();
+        MetricsServer metricsServer = this.metricsServer;
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
         logger.accept("[MCTrack] API client stopped");
     }
 
@@ -118,6 +453,55 @@ public class MCTrackAPI {
         }
     }
 
+    /**
+     * Reports every online session as alive, as one presence snapshot or one heartbeat per player
+     * depending on heartbeat-mode and what the API supports.
+     */
+    public void trackHeartbeats(SessionStore sessions) {
+        if (sessions.getOnlineCount() == 0) return;
+
+        FlightEvents.HeartbeatSweep sweep = new FlightEvents.HeartbeatSweep();
+        sweep.begin();
+        if (config.getHeartbeatMode() != HeartbeatMode.SNAPSHOT || !presenceSupported) {
+            int count = 0;
+            for (PlayerSession session : sessions.getAllSessions()) {
+                trackHeartbeat(new SessionHeartbeatEvent(
+                    session.getSessionUuid(),
+                    session.getPlayerUuid().toString(),
+                    session.getCurrentServer(),
+                    null  // No longer tracking vanilla Minecraft gamemode
+                ));
+                count++;
+            }
+            commitSweep(sweep, "heartbeats", count);
+            return;
+        }
+
+        Map<String, List<String>> servers = new HashMap<>();
+        sessions.forEachServer((server, onServer) -> {
+            List<String> sessionUuids = new ArrayList<>(onServer.size());
+            for (PlayerSession session : onServer) {
+                sessionUuids.add(session.getSessionUuid());
+            }
+            servers.put(server != null ? server : "", sessionUuids);
+        });
+        PresenceSnapshot snapshot = new PresenceSnapshot(servers);
+        queueEvent(snapshot);
+        commitSweep(sweep, "snapshot", snapshot.getSessionCount());
+        if (config.isDebug()) {
+            logger.accept("[MCTrack] Queued presence snapshot for " + snapshot.getSessionCount() + " sessions");
+        }
+    }
+
+    private static void commitSweep(FlightEvents.HeartbeatSweep sweep, String mode, int sessions) {
+        sweep.end();
+        if (sweep.shouldCommit()) {
+            sweep.mode = mode;
+            sweep.sessions = sessions;
+            sweep.commit();
+        }
+    }
+
     public void trackServerSwitch(ServerSwitchEvent event) {
         queueEvent(event);
         if (config.isDebug()) {
@@ -140,156 +524,252 @@ public class MCTrackAPI {
     }
 
     public void trackGamemodeSessionStart(GamemodeSessionStartEvent event) {
-        queueEvent(event);
+        if (parkGamemodeEvent(event)) return;
+        if (!config.hasGamemode()) return;
+        queueEvent(withGamemode(event));
         if (config.isDebug()) {
             logger.accept("[MCTrack] Queued gamemode session start for " + event.getPlayerName());
         }
     }
 
     public void trackGamemodeSessionEnd(GamemodeSessionEndEvent event) {
+        if (parkGamemodeEvent(event)) return;
+        if (!config.hasGamemode()) return;
         queueEvent(event);
         if (config.isDebug()) {
             logger.accept("[MCTrack] Queued gamemode session end for " + event.getPlayerUuid());
         }
     }
 
-    private void queueEvent(Object event) {
-        eventQueue.add(event);
-        if (eventQueue.size() >= config.getBatchSize()) {
-            scheduler.execute(this::flushEvents);
+    private void queueEvent(TrackedEvent event) {
+        event.setEnqueuedNanos(System.nanoTime());
+        if (eventQueue.offer(event)) {
+            metrics.enqueued.inc();
+        } else if (config.isDebug()) {
+            logger.accept("[MCTrack] Event queue full, discarded " + event.getClass().getSimpleName());
+        }
+        if (eventQueue.size() >= batchController.getBatchSize()) {
+            scheduleFlush();
         }
     }
 
-    private synchronized void flushEvents() {
-        if (eventQueue.isEmpty()) return;
+    /**
+     * Queue lane of an event: payments and session boundaries are critical, heartbeats
+     * and presence snapshots are bulk, everything else is in between.
+     */
+    static EventPriority priorityOf(TrackedEvent event) {
+        if (event instanceof PaymentEvent
+            || event instanceof SessionStartEvent
+            || event instanceof SessionEndEvent
+            || event instanceof CompletedSession
+            || event instanceof GamemodeSessionStartEvent
+            || event instanceof GamemodeSessionEndEvent) {
+            return EventPriority.CRITICAL;
+        }
+        if (event instanceof SessionHeartbeatEvent || event instanceof PresenceSnapshot) {
+            return EventPriority.BULK;
+        }
+        return EventPriority.NORMAL;
+    }
 
-        List<Object> events = new ArrayList<>();
-        while (events.size() < config.getBatchSize()) {
-            Object event = eventQueue.poll();
-            if (event == null) break;
-            events.add(event);
+    /**
+     * Runs a flush of full batches on the scheduler thread, coalescing concurrent requests.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushScheduled.set(false);
+                    sender.flush(false);
+                });
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
         }
+    }
 
-        if (events.isEmpty()) return;
+    public int getQueueDepth() {
+        return eventQueue.size();
+    }
 
-        BatchPayload payload = new BatchPayload(
-            config.getNetworkId(),
-            config.getServerName(),
-            filterByType(events, SessionStartEvent.class),
-            filterByType(events, SessionEndEvent.class),
-            filterByType(events, SessionHeartbeatEvent.class),
-            filterByType(events, ServerSwitchEvent.class),
-            filterByType(events, GamemodeChangeEvent.class),
-            filterByType(events, PaymentEvent.class),
-            filterByType(events, GamemodeSessionStartEvent.class),
-            filterByType(events, GamemodeSessionEndEvent.class)
-        );
+    public int getQueueDepth(EventPriority priority) {
+        return eventQueue.size(priority);
+    }
 
-        try {
-            sendBatch(payload);
-            if (config.isDebug()) {
-                logger.accept("[MCTrack] Sent batch of " + events.size() + " events");
-            }
-        } catch (Exception e) {
-            // Re-queue events on failure
-            eventQueue.addAll(events);
-            logger.accept("[MCTrack] Failed to send events: " + e.getMessage());
-        }
+    public int getQueueCapacity() {
+        return eventQueue.capacity();
     }
 
-    @SuppressWarnings("unchecked")
-    private <T> List<T> filterByType(List<Object> events, Class<T> type) {
-        List<T> result = new ArrayList<>();
-        for (Object event : events) {
-            if (type.isInstance(event)) {
-                result.add((T) event);
-            }
-        }
-        return result;
+    public long getDroppedEventCount() {
+        return eventQueue.getDroppedCount();
     }
 
-    private void sendBatch(BatchPayload payload) throws IOException {
-        String json = gson.toJson(payload);
-        RequestBody body = RequestBody.create(json, JSON_MEDIA_TYPE);
+    public long getRejectedEventCount() {
+        return eventQueue.getRejectedCount();
+    }
 
-        Request request = new Request.Builder()
-            .url(config.getApiUrl() + "/session/batch")
-            .header("X-API-Key", config.getApiKey())
-            .header("Content-Type", "application/json")
-            .post(body)
-            .build();
+    /**
+     * Server switches folded into a later switch of the same session by coalescing, so never
+     * sent on their own.
+     */
+    public long getMergedSwitchCount() {
+        return sender.getMergedSwitchCount();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String responseBody = response.body() != null ? response.body().string() : "";
-                throw new IOException("API error: " + response.code() + " - " + responseBody);
-            }
+    public int getInFlightBatchCount() {
+        return sender.getInFlightCount();
+    }
+
+    public int getSpooledBatchCount() {
+        return spool != null ? spool.getPendingCount() : 0;
+    }
+
+    public int getCurrentBatchSize() {
+        return batchController.getBatchSize();
+    }
+
+    public long getCurrentBatchIntervalMs() {
+        return batchController.getIntervalMs();
+    }
+
+    /**
+     * Delivery pipeline state for the status command, as label/value pairs in display order.
+     */
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new LinkedHashMap<>();
+        status.put("API Key Scope", !config.isGamemodeResolved() ? "resolving"
+            : config.hasGamemode() ? "gamemode" : "network-wide");
+        status.put("Queue", getQueueDepth() + "/" + getQueueCapacity());
+        status.put("Queue Lanes", "critical " + getQueueDepth(EventPriority.CRITICAL)
+            + ", normal " + getQueueDepth(EventPriority.NORMAL)
+            + ", bulk " + getQueueDepth(EventPriority.BULK));
+        status.put("In Flight", String.valueOf(getInFlightBatchCount()));
+        status.put("Spooled Batches", String.valueOf(getSpooledBatchCount()));
+        status.put("Retrying Batches", String.valueOf(sender.getRetryingCount()));
+        status.put("Rejected Batches", formatCounts(metrics.getRejections()));
+        status.put("Payments", payments.getAcknowledgedCount() + " acknowledged, "
+            + payments.getStoredCount() + " stored for retry");
+        status.put("Coalesced Events", String.valueOf(sender.getCoalescedEventCount()));
+        status.put("Dropped Events", String.valueOf(getDroppedEventCount() + getRejectedEventCount()));
+        status.put("Circuit Breaker", formatBreakerState());
+        status.put("Wire Format", (sender.getEncoder() == binaryEncoder ? "binary" : "json")
+            + ", " + sender.getCompression().name().toLowerCase(Locale.ROOT));
+        status.put("Batching", batchController.isEnabled()
+            ? "adaptive (" + batchController.getMode() + ")"
+            : "fixed");
+        status.put("Batch Size", String.valueOf(batchController.getBatchSize()));
+        status.put("Flush Interval", batchController.getIntervalMs() + " ms");
+        status.put("Avg Latency", Math.round(batchController.getLatencyMs()) + " ms");
+        status.put("Error Rate", String.format(Locale.ROOT, "%.1f%%", batchController.getErrorRate() * 100));
+        status.put("Enqueue Rate", String.format(Locale.ROOT, "%.1f/s", metrics.enqueued.getOneMinuteRate()));
+        status.put("Send Latency", "p50 " + formatMicros(metrics.sendLatencyMicros.quantile(0.5))
+            + ", p99 " + formatMicros(metrics.sendLatencyMicros.quantile(0.99))
+            + ", p999 " + formatMicros(metrics.sendLatencyMicros.quantile(0.999)));
+        status.put("Batch Events", "p50 " + metrics.batchEvents.quantile(0.5)
+            + ", p99 " + metrics.batchEvents.quantile(0.99));
+        status.put("Batch Bytes", "p50 " + formatBytes(metrics.batchBytes.quantile(0.5))
+            + ", p99 " + formatBytes(metrics.batchBytes.quantile(0.99))
+            + ", " + formatBytes(metrics.uploadBytes.get()) + " uploaded");
+        status.put("Send Failures", formatCounts(metrics.getFailures()));
+        status.put("Delivery Latency", formatDeliveryLatency());
+        MetricsServer metricsServer = this.metricsServer;
+        status.put("Metrics Endpoint", metricsServer != null
+            ? "http://" + config.getMetricsBindAddress() + ":" + metricsServer.getAddress().getPort() + "/metrics"
+            : "disabled");
+        return status;
+    }
+
+    /**
+     * Registry of the delivery pipeline's metrics, for embedding plugins that export their own.
+     */
+    public MetricsRegistry getMetrics() {
+        return metricsRegistry;
+    }
+
+    private static String formatMicros(long micros) {
+        return micros < 10_000
+            ? String.format(Locale.ROOT, "%.1f ms", micros / 1000.0)
+            : (micros / 1000) + " ms";
+    }
+
+    /**
+     * p50/p99 from queueing to acknowledgement for each event type sent recently.
+     */
+    private String formatDeliveryLatency() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : metrics.getDeliveryLatency().entrySet()) {
+            Histogram latency = entry.getValue();
+            if (latency.quantile(0.5) == 0 && latency.quantile(0.99) == 0) continue;
+            if (builder.length() > 0) builder.append("; ");
+            builder.append(entry.getKey())
+                .append(" p50 ").append(formatMicros(latency.quantile(0.5)))
+                .append(", p99 ").append(formatMicros(latency.quantile(0.99)));
         }
+        return builder.length() > 0 ? builder.toString() : "none";
     }
 
-    public boolean trackPaymentSync(PaymentEvent event) {
-        BatchPayload payload = new BatchPayload(
-            config.getNetworkId(),
-            config.getServerName(),
-            Collections.emptyList(),
-            Collections.emptyList(),
-            Collections.emptyList(),
-            Collections.emptyList(),
-            Collections.emptyList(),
-            Collections.singletonList(event),
-            Collections.emptyList(),
-            Collections.emptyList()
-        );
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
 
-        String json = gson.toJson(payload);
-        RequestBody body = RequestBody.create(json, JSON_MEDIA_TYPE);
+    private static String formatCounts(Map<String, Long> counts) {
+        if (counts.isEmpty()) return "none";
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        return builder.toString();
+    }
 
-        Request request = new Request.Builder()
-            .url(config.getApiUrl() + "/session/batch")
-            .header("X-API-Key", config.getApiKey())
-            .header("Content-Type", "application/json")
-            .post(body)
-            .build();
+    private String formatBreakerState() {
+        switch (sender.getBreakerState()) {
+            case OPEN:
+                return "open (probing in " + Math.max(1, sender.getBreakerRemainingMs() / 1000) + "s)";
+            case HALF_OPEN:
+                return "half-open";
+            default:
+                return "closed";
+        }
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            return response.isSuccessful();
-        } catch (Exception e) {
-            logger.accept("[MCTrack] Failed to track payment: " + e.getMessage());
-            return false;
+    /**
+     * Tracks a payment without blocking the caller. Payments submitted close together are sent
+     * in one request, ahead of the regular batches.
+     *
+     * <p>The future completes once ingestion acknowledges the payment, once it has been
+     * stored for a later retry if ingestion is unreachable, or as {@link PaymentDelivery#PENDING}
+     * if ingestion is slower than {@code payment-timeout-ms}. It fails only if ingestion rejects
+     * the payment or it could not be stored at all. It completes on a background thread.</p>
+     */
+    public CompletableFuture<PaymentDelivery> trackPaymentAsync(PaymentEvent event) {
+        if (config.isDebug()) {
+            logger.accept("[MCTrack] Sending payment for " + event.getPlayerName());
         }
+        event.setEnqueuedNanos(System.nanoTime());
+        return payments.submit(event);
     }
 
-    private static class BatchPayload {
-        private final String networkId;
-        private final String serverName;
-        private final List<SessionStartEvent> sessionStarts;
-        private final List<SessionEndEvent> sessionEnds;
-        private final List<SessionHeartbeatEvent> heartbeats;
-        private final List<ServerSwitchEvent> serverSwitches;
-        private final List<GamemodeChangeEvent> gamemodeChanges;
-        private final List<PaymentEvent> payments;
-        private final List<GamemodeSessionStartEvent> gamemodeSessionStarts;
-        private final List<GamemodeSessionEndEvent> gamemodeSessionEnds;
-
-        public BatchPayload(String networkId, String serverName,
-                           List<SessionStartEvent> sessionStarts,
-                           List<SessionEndEvent> sessionEnds,
-                           List<SessionHeartbeatEvent> heartbeats,
-                           List<ServerSwitchEvent> serverSwitches,
-                           List<GamemodeChangeEvent> gamemodeChanges,
-                           List<PaymentEvent> payments,
-                           List<GamemodeSessionStartEvent> gamemodeSessionStarts,
-                           List<GamemodeSessionEndEvent> gamemodeSessionEnds) {
-            this.networkId = networkId;
-            this.serverName = serverName;
-            this.sessionStarts = sessionStarts;
-            this.sessionEnds = sessionEnds;
-            this.heartbeats = heartbeats;
-            this.serverSwitches = serverSwitches;
-            this.gamemodeChanges = gamemodeChanges;
-            this.payments = payments;
-            this.gamemodeSessionStarts = gamemodeSessionStarts;
-            this.gamemodeSessionEnds = gamemodeSessionEnds;
+    /**
+     * Blocking variant of {@link #trackPaymentAsync}.
+     *
+     * @return true if the payment was acknowledged, stored for a later retry or is still being sent
+     * @deprecated blocks the calling thread; use {@link #trackPaymentAsync}
+     */
+    @Deprecated
+    public boolean trackPaymentSync(PaymentEvent event) {
+        try {
+            // The future settles within the payment timeout plus the time to store the payment
+            trackPaymentAsync(event).get(config.getPaymentTimeoutMs() * 2L, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            logger.accept("[MCTrack] Failed to track payment: " + e.getMessage());
+            return false;
         }
     }
 }
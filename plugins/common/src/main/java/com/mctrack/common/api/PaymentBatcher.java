@@ -0,0 +1,302 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.model.PaymentEvent;
+import com.mctrack.common.model.TrackedEvent;
+import com.mctrack.common.queue.EventQueue;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sends payments straight to ingestion, ahead of the regular batches.
+ *
+ * <p>Payments submitted within {@code payment-linger-ms} of each other share one request.
+ * Each future completes when ingestion acknowledges its request. If the request fails, the
+ * payments are written to the disk spool instead, or put in the event queue if there is no
+ * spool. A request still running after {@code payment-timeout-ms} completes its futures as
+ * {@link PaymentDelivery#PENDING} but is left to finish, since ingestion may already have
+ * stored it; it is only spooled if it then fails. A refused API key (401/403) counts as a
+ * failure. When ingestion rejects a request otherwise (4xx), its payments are resent one at
+ * a time so only the offending ones fail their future.</p>
+ *
+ * <p>Futures complete on an HTTP or scheduler thread, never the submitting one.</p>
+ */
+final class PaymentBatcher {
+    // Also capped at the batch size ingestion accepts
+    private static final int MAX_BATCH = 500;
+    // Time left for cancelled requests to fall back to the spool
+    static final long CANCEL_GRACE_MS = 1000;
+
+    private final MCTrackConfig config;
+    private final Consumer<String> logger;
+    private final BatchSender sender;
+    private final EventQueue<TrackedEvent> queue;
+    private final ScheduledExecutorService scheduler;
+    private final PipelineMetrics metrics;
+
+    private final List<Pending> pending = new ArrayList<>();
+    private final Set<Call> inFlight = new HashSet<>();
+    private boolean flushScheduled;
+    private boolean stopped;
+    private long acknowledgedCount;
+    private long storedCount;
+
+    private static final class Pending {
+        final PaymentEvent event;
+        final CompletableFuture<PaymentDelivery> future = new CompletableFuture<>();
+
+        Pending(PaymentEvent event) {
+            this.event = event;
+        }
+    }
+
+    PaymentBatcher(MCTrackConfig config, Consumer<String> logger, BatchSender sender,
+                   EventQueue<TrackedEvent> queue, ScheduledExecutorService scheduler, PipelineMetrics metrics) {
+        this.config = config;
+        this.logger = logger;
+        this.sender = sender;
+        this.queue = queue;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+    }
+
+    CompletableFuture<PaymentDelivery> submit(PaymentEvent event) {
+        Pending payment = new Pending(event);
+        synchronized (this) {
+            if (stopped) {
+                payment.future.completeExceptionally(new IllegalStateException("MCTrack API is stopped"));
+                return payment.future;
+            }
+            pending.add(payment);
+            if (pending.size() >= MAX_BATCH) {
+                schedule(0);
+            } else if (!flushScheduled) {
+                schedule(config.getPaymentLingerMs());
+            }
+        }
+        return payment.future;
+    }
+
+    synchronized long getAcknowledgedCount() {
+        return acknowledgedCount;
+    }
+
+    synchronized long getStoredCount() {
+        return storedCount;
+    }
+
+    /**
+     * Refuses new payments and stores the ones not sent yet. Requests in flight carry on;
+     * see {@link #settle(long, long)}.
+     */
+    void stop() {
+        List<Pending> unsent;
+        synchronized (this) {
+            stopped = true;
+            unsent = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (!unsent.isEmpty()) {
+            store(unsent, null);
+        }
+    }
+
+    /**
+     * Waits for requests in flight until {@code cancelAt}, then cancels the rest and gives
+     * them until {@code deadline} to fall back to the spool. Both are {@link System#nanoTime()} values.
+     */
+    synchronized void settle(long cancelAt, long deadline) {
+        awaitInFlight(cancelAt);
+        if (!inFlight.isEmpty()) {
+            for (Call call : inFlight) {
+                call.cancel();
+            }
+            awaitInFlight(deadline);
+        }
+    }
+
+    private void awaitInFlight(long deadline) {
+        while (!inFlight.isEmpty()) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) return;
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void schedule(long delayMs) {
+        flushScheduled = true;
+        try {
+            scheduler.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled = false;
+        }
+    }
+
+    private void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        int maxBatch = Math.min(MAX_BATCH, sender.getMaxBatchSize());
+        for (int i = 0; i < batch.size(); i += maxBatch) {
+            send(batch.subList(i, Math.min(batch.size(), i + maxBatch)));
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        // Skip the request entirely while ingestion is known to be down
+        if (sender.getBreakerState() == CircuitBreaker.State.OPEN) {
+            store(batch, null);
+            return;
+        }
+
+        Call call;
+        try {
+            call = sender.newDirectCall(payload(batch));
+        } catch (Exception e) {
+            store(batch, e);
+            return;
+        }
+
+        synchronized (this) {
+            inFlight.add(call);
+        }
+        FlightEvents.BatchSend sendEvent = FlightEvents.beginSend("payment", batch.size(), 0, 1);
+        ScheduledFuture<?> timeout;
+        try {
+            // Cancelling could spool a request ingestion already stored, and replaying it would count it twice
+            timeout = scheduler.schedule(() -> complete(batch, PaymentDelivery.PENDING, false),
+                config.getPaymentTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            timeout = null;
+        }
+        ScheduledFuture<?> timer = timeout;
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                FlightEvents.endSend(sendEvent, 0, e);
+                try {
+                    store(batch, e);
+                } finally {
+                    done(call, timer);
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    BatchSender.checkResponse(response);
+                    FlightEvents.endSend(sendEvent, response.code(), null);
+                    synchronized (PaymentBatcher.this) {
+                        acknowledgedCount += batch.size();
+                    }
+                    long now = System.nanoTime();
+                    for (Pending payment : batch) {
+                        metrics.delivered(payment.event, now);
+                        payment.future.complete(PaymentDelivery.ACKNOWLEDGED);
+                    }
+                } catch (ApiException e) {
+                    FlightEvents.endSend(sendEvent, e.getStatusCode(), e);
+                    if (e.isRetryable() || e.isAuthFailure()) {
+                        store(batch, e);
+                    } else if (batch.size() > 1) {
+                        // One bad payment must not fail the unrelated ones sharing its request
+                        logger.accept("[MCTrack] Ingestion rejected " + batch.size() + " payments, resending them one at a time: " + e.getMessage());
+                        for (Pending payment : batch) {
+                            send(List.of(payment));
+                        }
+                    } else {
+                        Pending payment = batch.get(0);
+                        logger.accept("[MCTrack] Ingestion rejected payment " + payment.event.getPaymentUuid() + ": " + e.getMessage());
+                        payment.future.completeExceptionally(e);
+                    }
+                } catch (IOException e) {
+                    FlightEvents.endSend(sendEvent, response.code(), e);
+                    store(batch, e);
+                } finally {
+                    done(call, timer);
+                }
+            }
+        });
+    }
+
+    private synchronized void done(Call call, ScheduledFuture<?> timer) {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        inFlight.remove(call);
+        notifyAll();
+    }
+
+    /**
+     * Durable fallback: the spool if possible, otherwise the event queue (critical lane).
+     * Only free space in the queue is used; evicting queued events would lose them instead.
+     */
+    private void store(List<Pending> batch, Exception cause) {
+        if (cause != null) {
+            logger.accept("[MCTrack] Failed to send " + batch.size() + " payments, storing them for retry: " + cause.getMessage());
+        }
+
+        if (sender.spoolPayload(payload(batch))) {
+            complete(batch, PaymentDelivery.SPOOLED, true);
+            return;
+        }
+
+        for (Pending payment : batch) {
+            if (queue.offerIfRoom(payment.event)) {
+                complete(payment, PaymentDelivery.QUEUED, true);
+            } else {
+                IOException error = new IOException("Payment could not be stored: event queue is full", cause);
+                if (!payment.future.completeExceptionally(error)) {
+                    // Already reported as pending to the caller
+                    logger.accept("[MCTrack] Lost payment " + payment.event.getPaymentUuid() + ": " + error.getMessage());
+                }
+            }
+        }
+    }
+
+    private void complete(List<Pending> batch, PaymentDelivery delivery, boolean stored) {
+        for (Pending payment : batch) {
+            complete(payment, delivery, stored);
+        }
+    }
+
+    private void complete(Pending payment, PaymentDelivery delivery, boolean stored) {
+        if (stored) {
+            synchronized (this) {
+                storedCount++;
+            }
+        }
+        payment.future.complete(delivery);
+    }
+
+    private BatchPayload payload(List<Pending> batch) {
+        List<PaymentEvent> events = new ArrayList<>(batch.size());
+        for (Pending payment : batch) {
+            events.add(payment.event);
+        }
+        return BatchPayload.ofPayments(config.getNetworkId(), config.getServerName(), events);
+    }
+}
@@ -0,0 +1,18 @@
+package com.mctrack.common.api;
+
+/**
+ * Outcome of {@link MCTrackAPI#trackPaymentAsync}.
+ */
+public enum PaymentDelivery {
+    /** Ingestion accepted the payment. */
+    ACKNOWLEDGED,
+    /** Ingestion was unreachable; the payment was written to the disk spool and is replayed later. */
+    SPOOLED,
+    /** Ingestion was unreachable and the spool unavailable; the payment waits in the event queue. */
+    QUEUED,
+    /**
+     * Ingestion has not answered within {@code payment-timeout-ms}. The request keeps running and
+     * the payment is spooled if it fails; it is never sent twice while ingestion may have stored it.
+     */
+    PENDING
+}
@@ -0,0 +1,153 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.metrics.Counter;
+import com.mctrack.common.metrics.Histogram;
+import com.mctrack.common.metrics.Meter;
+import com.mctrack.common.metrics.MetricsRegistry;
+import com.mctrack.common.model.TrackedEvent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics recorded along the delivery pipeline, registered in the API's {@link MetricsRegistry}.
+ */
+final class PipelineMetrics {
+    private static final double MICROS_TO_SECONDS = 1e-6;
+
+    final Meter enqueued;
+    final Counter batchesSent;
+    final Counter eventsSent;
+    final Counter uploadBytes;
+    final Histogram batchEvents;
+    final Histogram batchBytes;
+    final Histogram sendLatencyMicros;
+
+    private final MetricsRegistry registry;
+    private final Map<String, Counter> failures = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retries = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Histogram> deliveryLatencyMicros = new ConcurrentHashMap<>();
+
+    PipelineMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.enqueued = registry.meter("mctrack_events_enqueued_total", "Events accepted into the queue");
+        this.batchesSent = registry.counter("mctrack_batches_sent_total", "Batches acknowledged by ingestion");
+        this.eventsSent = registry.counter("mctrack_events_sent_total", "Events in acknowledged batches");
+        this.uploadBytes = registry.counter("mctrack_upload_bytes_total", "Request body bytes sent, after compression, including retries");
+        this.batchEvents = registry.histogram("mctrack_batch_events", "Events per batch", 1);
+        this.batchBytes = registry.histogram("mctrack_batch_bytes", "Encoded size of each batch before compression", 1);
+        this.sendLatencyMicros = registry.histogram("mctrack_send_latency_seconds", "Time from sending a batch to its response", MICROS_TO_SECONDS);
+    }
+
+    void failure(String cause) {
+        failures.computeIfAbsent(cause, key -> registry.counter("mctrack_send_failures_total",
+            "Failed batch sends by cause", "cause", key)).inc();
+    }
+
+    void retry(String cause) {
+        retries.computeIfAbsent(cause, key -> registry.counter("mctrack_send_retries_total",
+            "Batch sends scheduled for retry by cause", "cause", key)).inc();
+    }
+
+    /**
+     * Counts a batch dropped because ingestion will never accept it.
+     */
+    void rejected(String cause) {
+        rejections.computeIfAbsent(cause, key -> registry.counter("mctrack_batches_rejected_total",
+            "Batches dropped because ingestion refused them for good, by cause", "cause", key)).inc();
+    }
+
+    /**
+     * Records the time from queueing to acknowledgement for each event of an acknowledged request.
+     * Events replayed from the spool are skipped; their enqueue time is not stored on disk.
+     */
+    void delivered(List<? extends TrackedEvent> events) {
+        long now = System.nanoTime();
+        for (TrackedEvent event : events) {
+            delivered(event, now);
+        }
+    }
+
+    void delivered(TrackedEvent event, long nowNanos) {
+        long enqueued = event.getEnqueuedNanos();
+        if (enqueued == 0) return;
+        deliveryLatencyMicros.computeIfAbsent(event.getClass(), type -> registry.histogram(
+            "mctrack_delivery_latency_seconds", "Time from queueing an event to its acknowledgement by ingestion",
+            "type", typeName(type), MICROS_TO_SECONDS)
+        ).record(TimeUnit.NANOSECONDS.toMicros(nowNanos - enqueued));
+    }
+
+    /**
+     * Delivery latency in microseconds by event type, for the status command.
+     */
+    Map<String, Histogram> getDeliveryLatency() {
+        Map<String, Histogram> latency = new TreeMap<>();
+        deliveryLatencyMicros.forEach((type, histogram) -> latency.put(typeName(type), histogram));
+        return latency;
+    }
+
+    /**
+     * Failure counts by cause, for the status command.
+     */
+    Map<String, Long> getFailures() {
+        Map<String, Long> counts = new TreeMap<>();
+        failures.forEach((cause, counter) -> counts.put(cause, counter.get()));
+        return counts;
+    }
+
+    /**
+     * Rejected batch counts by cause, for the status command.
+     */
+    Map<String, Long> getRejections() {
+        Map<String, Long> counts = new TreeMap<>();
+        rejections.forEach((cause, counter) -> counts.put(cause, counter.get()));
+        return counts;
+    }
+
+    /**
+     * Short label for why a send failed, used as the {@code cause} label.
+     */
+    static String causeOf(IOException error) {
+        if (error instanceof ApiException) {
+            int status = ((ApiException) error).getStatusCode();
+            if (status == 429) return "http_429";
+            return status >= 500 ? "http_5xx" : "http_4xx";
+        }
+        if (error instanceof ConnectException || error instanceof UnknownHostException
+            || error instanceof NoRouteToHostException) {
+            return "connect";
+        }
+        if (error instanceof InterruptedIOException) {
+            return "timeout";
+        }
+        return "io";
+    }
+
+    /**
+     * Label for an event class, e.g. {@code session_start} for {@code SessionStartEvent}.
+     */
+    static String typeName(Class<?> type) {
+        String name = type.getSimpleName();
+        if (name.endsWith("Event")) {
+            name = name.substring(0, name.length() - "Event".length());
+        }
+        StringBuilder label = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && i > 0) {
+                label.append('_');
+            }
+            label.append(Character.toLowerCase(c));
+        }
+        return label.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.mctrack.common.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with jitter.
+ *
+ * <p>The delay for attempt {@code n} is drawn uniformly from {@code [d/2, d]} where
+ * {@code d = min(max, base * 2^(n-1))}, so servers that failed at the same moment do
+ * not all retry at the same moment.</p>
+ */
+final class RetryBackoff {
+    private final long baseMs;
+    private final long maxMs;
+
+    RetryBackoff(long baseMs, long maxMs) {
+        this.baseMs = Math.max(1, baseMs);
+        this.maxMs = Math.max(this.baseMs, maxMs);
+    }
+
+    /**
+     * @param attempt 1 for the first retry
+     */
+    long delayMs(int attempt) {
+        int shift = Math.min(Math.max(attempt - 1, 0), 30);
+        long ceiling = Math.min(maxMs, baseMs << shift);
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(ceiling - half + 1);
+    }
+
+    long delayNanos(int attempt) {
+        return TimeUnit.MILLISECONDS.toNanos(delayMs(attempt));
+    }
+}
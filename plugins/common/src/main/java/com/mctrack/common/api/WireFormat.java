@@ -0,0 +1,20 @@
+package com.mctrack.common.api;
+
+/**
+ * Encoding of batch uploads.
+ */
+public enum WireFormat {
+    /** Gson-serialized JSON, understood by every ingestion version. */
+    JSON,
+    /** Compact columnar binary format (see {@link BinaryBatchEncoder}), used once the API advertises it. */
+    BINARY;
+
+    public static WireFormat fromConfig(String value, WireFormat defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.mctrack.common.api;
+
+import com.github.luben.zstd.Zstd;
+
+import java.io.IOException;
+
+/**
+ * Isolates the optional zstd-jni dependency so the plugin loads without it.
+ */
+final class ZstdSupport {
+    private static final int LEVEL = 3;
+    private static final boolean AVAILABLE = probe();
+
+    private ZstdSupport() {
+    }
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    static void compress(byte[] data, int offset, int length, BatchBuffer out) throws IOException {
+        if (!AVAILABLE) {
+            throw new IOException("zstd-jni is not available");
+        }
+
+        int bound = (int) Zstd.compressBound(length);
+        out.ensureCapacity(bound);
+        long written = Zstd.compressByteArray(out.array(), out.size(), bound, data, offset, length, LEVEL);
+        if (Zstd.isError(written)) {
+            throw new IOException("zstd compression failed: " + Zstd.getErrorName(written));
+        }
+        out.advance((int) written);
+    }
+
+    private static boolean probe() {
+        try {
+            Class.forName("com.github.luben.zstd.Zstd", false, ZstdSupport.class.getClassLoader());
+            Zstd.compress(new byte[1], LEVEL);
+            return true;
+        } catch (Throwable t) {
+            // Class missing or native library could not be loaded
+            return false;
+        }
+    }
+}
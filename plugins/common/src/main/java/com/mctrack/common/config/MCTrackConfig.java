@@ -1,5 +1,9 @@
 package com.mctrack.common.config;
 
+import com.mctrack.common.api.BatchCompression;
+import com.mctrack.common.api.HeartbeatMode;
+import com.mctrack.common.api.WireFormat;
+import com.mctrack.common.queue.OverflowPolicy;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.*;
@@ -18,8 +22,57 @@ public class MCTrackConfig {
     private final boolean trackJoinDomain;
     private final boolean noProxy;
 
+    // Event queue (optional keys, defaults apply when absent)
+    private int queueCapacity = 10000;
+    private OverflowPolicy queueOverflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private int queueBlockTimeoutMs = 50;
+
+    // Disk spool for undelivered batches
+    private boolean spoolEnabled = true;
+    private int spoolSegmentSizeKb = 4096;
+    private int spoolMaxSizeMb = 256;
+    private boolean spoolSync = false;
+
+    // Request body compression
+    private BatchCompression compression = BatchCompression.GZIP;
+    private int compressionThresholdBytes = 1024;
+    private WireFormat wireFormat = WireFormat.BINARY;
+
+    // Concurrent batch uploads
+    private int maxInFlight = 4;
+
+    // Async payment API
+    private int paymentLingerMs = 20;
+    private int paymentTimeoutMs = 10000;
+
+    // Shutdown
+    private int shutdownTimeoutMs = 5000;
+
+    // Prometheus endpoint (0 = disabled)
+    private int metricsPort = 0;
+    private String metricsBindAddress = "127.0.0.1";
+
+    // Adaptive batching (batch-size / batch-interval are the starting point)
+    private boolean adaptiveBatching = true;
+    private int batchSizeMin = 50;
+    private int batchSizeMax = 1000;
+    private int batchIntervalMinMs = 500;
+    private int batchIntervalMaxMs = 30000;
+    private int batchLatencyTargetMs = 1000;
+
+    // Heartbeats
+    private HeartbeatMode heartbeatMode = HeartbeatMode.SNAPSHOT;
+    private boolean coalesceEvents = true;
+
+    // Retries and circuit breaker
+    private int retryMaxAttempts = 5;
+    private int retryBaseDelayMs = 1000;
+    private int retryMaxDelayMs = 60000;
+    private int circuitBreakerThreshold = 5;
+
     // Fetched from API on startup (not from config file)
-    private String gamemodeId;
+    private volatile String gamemodeId;
+    private volatile boolean gamemodeResolved;
 
     public MCTrackConfig(String apiUrl, String apiKey, String networkId, String serverName,
                         int heartbeatInterval, int batchSize, int batchInterval,
@@ -40,7 +93,7 @@ public class MCTrackConfig {
     }
 
     public MCTrackConfig() {
-        this("https://api.mctrack.io", "", "", "default", 60, 100, 5, false, false, true, false);
+        this("https://api.mctrack.io", "", "", "default", 60, 500, 5, false, false, true, false);
     }
 
     public static MCTrackConfig load(File file) {
@@ -55,19 +108,21 @@ public class MCTrackConfig {
                 return new MCTrackConfig();
             }
 
-            return new MCTrackConfig(
+            MCTrackConfig config = new MCTrackConfig(
                 getStringOrDefault(data, "api-url", "https://api.mctrack.io"),
                 getStringOrDefault(data, "api-key", ""),
                 getStringOrDefault(data, "network-id", ""),
                 getStringOrDefault(data, "server-name", "default"),
                 getIntOrDefault(data, "heartbeat-interval", 60),
-                getIntOrDefault(data, "batch-size", 100),
+                getIntOrDefault(data, "batch-size", 500),
                 getIntOrDefault(data, "batch-interval", 5),
                 getBooleanOrDefault(data, "debug", false),
                 getBooleanOrDefault(data, "track-ip-addresses", false),
                 getBooleanOrDefault(data, "track-join-domain", true),
                 getBooleanOrDefault(data, "no-proxy", false)
             );
+            config.loadTuning(data);
+            return config;
         } catch (IOException e) {
             return new MCTrackConfig();
         }
@@ -102,11 +157,78 @@ public class MCTrackConfig {
 
             # Heartbeat interval in seconds (sends player count updates)
             heartbeat-interval: 60
+            # snapshot: one presence snapshot per interval listing every online session (compact)
+            # per-player: one heartbeat event per player (used automatically with older APIs)
+            heartbeat-mode: "snapshot"
+            # Drop superseded heartbeats, merge rapid server switches and send short sessions
+            # as one record before each batch goes out
+            coalesce-events: true
 
-            # Event batching (reduces API calls)
-            batch-size: 100
+            # Event batching (reduces API calls). Batches are capped at what the API advertises:
+            # up to 1000 events, or 100 for older API versions and until it has been reached
+            batch-size: 500
             batch-interval: 5
 
+            # Adaptive batching tunes batch size and interval from queue depth, latency and errors
+            # (batch-size and batch-interval above are used as the starting point)
+            adaptive-batching: true
+            batch-size-min: 50
+            batch-size-max: 1000
+            batch-interval-min-ms: 500
+            batch-interval-max-ms: 30000
+            # Back off when the average request takes longer than this
+            batch-latency-target-ms: 1000
+
+            # Compress batch uploads larger than the threshold (bytes): gzip, zstd or none
+            # zstd requires zstd-jni on the server classpath and falls back to gzip otherwise
+            compression: "gzip"
+            compression-threshold: 1024
+            # Batch encoding: binary (compact, used when the API supports it) or json
+            wire-format: "binary"
+
+            # How many batches may be uploading at once (events of one player always stay in order)
+            max-in-flight: 4
+
+            # Payments tracked with trackPaymentAsync skip the batch queue. Payments arriving within
+            # payment-linger-ms share one request; failed requests are spooled to disk and retried
+            # with the regular batches. Requests slower than payment-timeout-ms are reported as
+            # pending and left to finish, so a payment ingestion already stored is never sent twice
+            payment-linger-ms: 20
+            payment-timeout-ms: 10000
+
+            # On shutdown, queued events are sent in parallel for up to this long (ms);
+            # whatever is left is written to the disk spool and sent on the next start
+            shutdown-timeout-ms: 5000
+
+            # Serve pipeline metrics (queue depth, batch sizes, send latency, failures) in the
+            # Prometheus text format at http://<metrics-bind-address>:<metrics-port>/metrics; 0 disables it
+            metrics-port: 0
+            metrics-bind-address: "127.0.0.1"
+
+            # Failed batches are retried with exponential backoff (plus jitter), then spooled to disk
+            retry-max-attempts: 5
+            retry-base-delay-ms: 1000
+            retry-max-delay-ms: 60000
+            # Pause all sends after this many consecutive failures, probing until the API recovers
+            circuit-breaker-threshold: 5
+
+            # Event queue (bounded, memory stays capped if the API is unreachable)
+            # Events are sent in the order they happened; when the queue is full, heartbeats are
+            # shed first, then switches, and payments and session starts/ends last. Switches may use
+            # at most half of the capacity and heartbeats a quarter
+            queue-capacity: 10000
+            # What to do when the queue is full: drop-oldest, block or reject
+            # drop-oldest sheds heartbeats first and never lets an event displace a more important one
+            queue-overflow-policy: "drop-oldest"
+            # How long (ms) the block policy waits for space before rejecting
+            queue-block-timeout-ms: 50
+
+            # Disk spool (batches that cannot be delivered are kept on disk and replayed on restart)
+            spool-enabled: true
+            spool-max-size-mb: 256
+            # Force every append to disk (survives OS crashes, costs throughput)
+            spool-sync: false
+
             # Privacy Settings
             # Whether to track player IP addresses (for geo-location)
             track-ip-addresses: false
@@ -124,6 +246,39 @@ public class MCTrackConfig {
         }
     }
 
+    private void loadTuning(Map<String, Object> data) {
+        queueCapacity = Math.max(1, getIntOrDefault(data, "queue-capacity", queueCapacity));
+        queueOverflowPolicy = OverflowPolicy.fromConfig(
+            getStringOrDefault(data, "queue-overflow-policy", null), queueOverflowPolicy);
+        queueBlockTimeoutMs = Math.max(0, getIntOrDefault(data, "queue-block-timeout-ms", queueBlockTimeoutMs));
+        spoolEnabled = getBooleanOrDefault(data, "spool-enabled", spoolEnabled);
+        spoolSegmentSizeKb = Math.max(4, getIntOrDefault(data, "spool-segment-size-kb", spoolSegmentSizeKb));
+        spoolMaxSizeMb = Math.max(1, getIntOrDefault(data, "spool-max-size-mb", spoolMaxSizeMb));
+        spoolSync = getBooleanOrDefault(data, "spool-sync", spoolSync);
+        compression = BatchCompression.fromConfig(getStringOrDefault(data, "compression", null), compression);
+        compressionThresholdBytes = Math.max(0, getIntOrDefault(data, "compression-threshold", compressionThresholdBytes));
+        wireFormat = WireFormat.fromConfig(getStringOrDefault(data, "wire-format", null), wireFormat);
+        maxInFlight = Math.max(1, getIntOrDefault(data, "max-in-flight", maxInFlight));
+        paymentLingerMs = Math.max(0, getIntOrDefault(data, "payment-linger-ms", paymentLingerMs));
+        paymentTimeoutMs = Math.max(100, getIntOrDefault(data, "payment-timeout-ms", paymentTimeoutMs));
+        shutdownTimeoutMs = Math.max(0, getIntOrDefault(data, "shutdown-timeout-ms", shutdownTimeoutMs));
+        metricsPort = Math.max(0, Math.min(65535, getIntOrDefault(data, "metrics-port", metricsPort)));
+        metricsBindAddress = getStringOrDefault(data, "metrics-bind-address", metricsBindAddress);
+        adaptiveBatching = getBooleanOrDefault(data, "adaptive-batching", adaptiveBatching);
+        batchSizeMin = Math.max(1, getIntOrDefault(data, "batch-size-min", batchSizeMin));
+        // The API rejects batches of more than 1000 events
+        batchSizeMax = Math.min(1000, Math.max(1, getIntOrDefault(data, "batch-size-max", batchSizeMax)));
+        batchIntervalMinMs = Math.max(50, getIntOrDefault(data, "batch-interval-min-ms", batchIntervalMinMs));
+        batchIntervalMaxMs = Math.max(50, getIntOrDefault(data, "batch-interval-max-ms", batchIntervalMaxMs));
+        batchLatencyTargetMs = Math.max(1, getIntOrDefault(data, "batch-latency-target-ms", batchLatencyTargetMs));
+        heartbeatMode = HeartbeatMode.fromConfig(getStringOrDefault(data, "heartbeat-mode", null), heartbeatMode);
+        coalesceEvents = getBooleanOrDefault(data, "coalesce-events", coalesceEvents);
+        retryMaxAttempts = Math.max(1, getIntOrDefault(data, "retry-max-attempts", retryMaxAttempts));
+        retryBaseDelayMs = Math.max(1, getIntOrDefault(data, "retry-base-delay-ms", retryBaseDelayMs));
+        retryMaxDelayMs = Math.max(retryBaseDelayMs, getIntOrDefault(data, "retry-max-delay-ms", retryMaxDelayMs));
+        circuitBreakerThreshold = Math.max(1, getIntOrDefault(data, "circuit-breaker-threshold", circuitBreakerThreshold));
+    }
+
     private static String getStringOrDefault(Map<String, Object> data, String key, String defaultValue) {
         Object value = data.get(key);
         return value != null ? value.toString() : defaultValue;
@@ -161,9 +316,44 @@ public class MCTrackConfig {
     public boolean isTrackIpAddresses() { return trackIpAddresses; }
     public boolean isTrackJoinDomain() { return trackJoinDomain; }
     public boolean isNoProxy() { return noProxy; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public OverflowPolicy getQueueOverflowPolicy() { return queueOverflowPolicy; }
+    public int getQueueBlockTimeoutMs() { return queueBlockTimeoutMs; }
+    public boolean isSpoolEnabled() { return spoolEnabled; }
+    public int getSpoolSegmentSizeKb() { return spoolSegmentSizeKb; }
+    public int getSpoolMaxSizeMb() { return spoolMaxSizeMb; }
+    public boolean isSpoolSync() { return spoolSync; }
+    public BatchCompression getCompression() { return compression; }
+    public int getCompressionThresholdBytes() { return compressionThresholdBytes; }
+    public WireFormat getWireFormat() { return wireFormat; }
+    public int getMaxInFlight() { return maxInFlight; }
+    public int getPaymentLingerMs() { return paymentLingerMs; }
+    public int getPaymentTimeoutMs() { return paymentTimeoutMs; }
+    public int getShutdownTimeoutMs() { return shutdownTimeoutMs; }
+    public int getMetricsPort() { return metricsPort; }
+    public String getMetricsBindAddress() { return metricsBindAddress; }
+    public boolean isAdaptiveBatching() { return adaptiveBatching; }
+    public int getBatchSizeMin() { return batchSizeMin; }
+    public int getBatchSizeMax() { return batchSizeMax; }
+    public int getBatchIntervalMinMs() { return batchIntervalMinMs; }
+    public int getBatchIntervalMaxMs() { return batchIntervalMaxMs; }
+    public int getBatchLatencyTargetMs() { return batchLatencyTargetMs; }
+    public HeartbeatMode getHeartbeatMode() { return heartbeatMode; }
+    public boolean isCoalesceEvents() { return coalesceEvents; }
+    public int getRetryMaxAttempts() { return retryMaxAttempts; }
+    public int getRetryBaseDelayMs() { return retryBaseDelayMs; }
+    public int getRetryMaxDelayMs() { return retryMaxDelayMs; }
+    public int getCircuitBreakerThreshold() { return circuitBreakerThreshold; }
 
-    // Gamemode ID is fetched from API based on the API key
+    // Gamemode ID is fetched from API based on the API key (null for network-wide keys)
     public String getGamemodeId() { return gamemodeId; }
-    public void setGamemodeId(String gamemodeId) { this.gamemodeId = gamemodeId; }
+    public void setGamemodeId(String gamemodeId) {
+        this.gamemodeId = gamemodeId;
+        this.gamemodeResolved = true;
+    }
     public boolean hasGamemode() { return gamemodeId != null && !gamemodeId.isBlank(); }
+    /** False until the key's scope is known, from the API or the local cache. */
+    public boolean isGamemodeResolved() { return gamemodeResolved; }
+    /** Whether to emit gamemode session events; while the scope is unknown the API holds them back. */
+    public boolean tracksGamemodeSessions() { return hasGamemode() || !gamemodeResolved; }
 }
@@ -0,0 +1,109 @@
+package com.mctrack.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values with quantiles over the last one to two minutes.
+ *
+ * <p>Values are counted in log-linear buckets, eight per power of two, so a quantile is
+ * within about 6% of the true value and recording is a single atomic increment. Two bucket
+ * arrays take turns: one collects the current {@link #WINDOW_MS} window while the other
+ * still holds the previous one. The count and sum cover everything since startup.</p>
+ */
+public class Histogram {
+    static final long WINDOW_MS = 60_000;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] windows = { new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS) };
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private volatile int current;
+    private volatile long windowStart = System.currentTimeMillis();
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        rotateIfDue();
+        windows[current].incrementAndGet(bucketOf(value));
+        count.increment();
+        sum.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Value below which the given fraction of recent values fall, or 0 if nothing was recorded recently.
+     */
+    public long quantile(double q) {
+        rotateIfDue();
+        long[] buckets = new long[BUCKETS];
+        long total = 0;
+        for (AtomicLongArray window : windows) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = window.get(i);
+                buckets[i] += n;
+                total += n;
+            }
+        }
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank && buckets[i] > 0) {
+                return midpointOf(i);
+            }
+        }
+        return midpointOf(BUCKETS - 1);
+    }
+
+    private void rotateIfDue() {
+        if (System.currentTimeMillis() - windowStart >= WINDOW_MS) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - windowStart;
+        if (elapsed < WINDOW_MS) return;
+
+        int next = 1 - current;
+        AtomicLongArray stale = windows[next];
+        for (int i = 0; i < BUCKETS; i++) {
+            stale.set(i, 0);
+        }
+        if (elapsed >= 2 * WINDOW_MS) {
+            // Idle for more than a window: the current one is out of range too
+            AtomicLongArray old = windows[current];
+            for (int i = 0; i < BUCKETS; i++) {
+                old.set(i, 0);
+            }
+        }
+        current = next;
+        windowStart = now;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long midpointOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+}
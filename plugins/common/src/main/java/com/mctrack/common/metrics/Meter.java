@@ -0,0 +1,34 @@
+package com.mctrack.common.metrics;
+
+/**
+ * Counter that also tracks its one-minute rate as an exponentially weighted moving average
+ * (the same decay as the Unix load average). {@link #tick()} must be called every
+ * {@link #TICK_SECONDS} seconds.
+ */
+public class Meter extends Counter {
+    public static final int TICK_SECONDS = 5;
+    private static final double ALPHA = 1 - Math.exp(-TICK_SECONDS / 60.0);
+
+    private long lastCount;
+    private volatile double rate;
+    private boolean initialized;
+
+    public synchronized void tick() {
+        long count = get();
+        double instantRate = (count - lastCount) / (double) TICK_SECONDS;
+        lastCount = count;
+        if (initialized) {
+            rate += ALPHA * (instantRate - rate);
+        } else {
+            rate = instantRate;
+            initialized = true;
+        }
+    }
+
+    /**
+     * Events per second over roughly the last minute.
+     */
+    public double getOneMinuteRate() {
+        return rate;
+    }
+}
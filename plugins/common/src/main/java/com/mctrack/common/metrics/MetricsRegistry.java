@@ -0,0 +1,182 @@
+package com.mctrack.common.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named metrics of one plugin instance, written out in the Prometheus text format.
+ *
+ * <p>Metrics are registered once and then updated without touching the registry, except
+ * labelled counters, which are created on first use. Histograms are exported as summaries
+ * with p50/p99/p999 quantiles, scaled from their recorded unit to the exported one.</p>
+ */
+public class MetricsRegistry {
+    private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+    private enum Type { COUNTER, GAUGE, SUMMARY }
+
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        // Label set (empty for none) -> metric, in registration order
+        final Map<String, Object> series = new ConcurrentHashMap<>();
+        final List<String> order = new ArrayList<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private static final class ScaledHistogram {
+        final Histogram histogram;
+        final double scale;
+
+        ScaledHistogram(Histogram histogram, double scale) {
+            this.histogram = histogram;
+            this.scale = scale;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>();
+    private final List<Family> familyOrder = new ArrayList<>();
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, null, null);
+    }
+
+    /**
+     * Counter for one value of a label, created the first time it is asked for.
+     */
+    public Counter counter(String name, String help, String labelName, String labelValue) {
+        return (Counter) register(name, help, Type.COUNTER, labels(labelName, labelValue), Counter::new);
+    }
+
+    /**
+     * Counter read from a count kept elsewhere, such as a {@link java.util.concurrent.atomic.LongAdder}
+     * its owner already increments; the value must never go down.
+     */
+    public void counter(String name, String help, LongSupplier count) {
+        register(name, help, Type.COUNTER, "", () -> (DoubleSupplier) count::getAsLong);
+    }
+
+    public Meter meter(String name, String help) {
+        return (Meter) register(name, help, Type.COUNTER, "", Meter::new);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value) {
+        gauge(name, help, null, null, value);
+    }
+
+    public void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier value) {
+        register(name, help, Type.GAUGE, labels(labelName, labelValue), () -> value);
+    }
+
+    /**
+     * @param scale factor from the recorded unit to the exported one, e.g. 1e-6 for microseconds to seconds
+     */
+    public Histogram histogram(String name, String help, double scale) {
+        return histogram(name, help, null, null, scale);
+    }
+
+    /**
+     * Histogram for one value of a label, created the first time it is asked for.
+     */
+    public Histogram histogram(String name, String help, String labelName, String labelValue, double scale) {
+        ScaledHistogram scaled = (ScaledHistogram) register(name, help, Type.SUMMARY, labels(labelName, labelValue),
+            () -> new ScaledHistogram(new Histogram(), scale));
+        return scaled.histogram;
+    }
+
+    /**
+     * Every metric in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        List<Family> families;
+        synchronized (this) {
+            families = new ArrayList<>(familyOrder);
+        }
+        for (Family family : families) {
+            List<String> labelSets;
+            synchronized (this) {
+                labelSets = new ArrayList<>(family.order);
+            }
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name().toLowerCase(Locale.ROOT)).append('\n');
+            for (String labels : labelSets) {
+                write(out, family, labels, family.series.get(labels));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void write(StringBuilder out, Family family, String labels, Object metric) {
+        if (metric instanceof Counter) {
+            sample(out, family.name, labels, ((Counter) metric).get());
+        } else if (metric instanceof DoubleSupplier) {
+            sample(out, family.name, labels, ((DoubleSupplier) metric).getAsDouble());
+        } else if (metric instanceof ScaledHistogram) {
+            Histogram histogram = ((ScaledHistogram) metric).histogram;
+            double scale = ((ScaledHistogram) metric).scale;
+            for (double q : QUANTILES) {
+                String quantile = "quantile=\"" + q + "\"}";
+                sample(out, family.name, labels.isEmpty()
+                    ? "{" + quantile
+                    : labels.substring(0, labels.length() - 1) + "," + quantile, histogram.quantile(q) * scale);
+            }
+            sample(out, family.name + "_sum", labels, histogram.getSum() * scale);
+            sample(out, family.name + "_count", labels, histogram.getCount());
+        }
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name).append(labels).append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private Object register(String name, String help, Type type, String labels, Supplier<Object> factory) {
+        Family family = families.get(name);
+        if (family != null) {
+            Object existing = family.series.get(labels);
+            if (existing != null) return existing;
+        }
+
+        synchronized (this) {
+            family = families.get(name);
+            if (family == null) {
+                family = new Family(name, help, type);
+                families.put(name, family);
+                familyOrder.add(family);
+            } else if (family.type != type) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+            }
+            Object metric = family.series.get(labels);
+            if (metric == null) {
+                metric = factory.get();
+                family.series.put(labels, metric);
+                family.order.add(labels);
+            }
+            return metric;
+        }
+    }
+
+    private static String labels(String labelName, String labelValue) {
+        if (labelName == null) return "";
+        String escaped = labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return "{" + labelName + "=\"" + escaped + "\"}";
+    }
+}
@@ -0,0 +1,45 @@
+package com.mctrack.common.model;
+
+/**
+ * A network session that started and ended within one batch, sent as a single record
+ * instead of a {@link SessionStartEvent} and {@link SessionEndEvent} pair.
+ */
+public class CompletedSession extends TrackedEvent {
+    private final String sessionUuid;
+    private final String playerUuid;
+    private final String playerName;
+    private final Platform platform;
+    private final String bedrockDevice;
+    private final String ipAddress;
+    private final String joinDomain;
+    private final String serverName;
+    private final String gamemode;
+    private final long timestamp;
+    private final long endTimestamp;
+
+    public CompletedSession(SessionStartEvent start, SessionEndEvent end) {
+        this.sessionUuid = start.getSessionUuid();
+        this.playerUuid = start.getPlayerUuid();
+        this.playerName = start.getPlayerName();
+        this.platform = start.getPlatform();
+        this.bedrockDevice = start.getBedrockDevice();
+        this.ipAddress = start.getIpAddress();
+        this.joinDomain = start.getJoinDomain();
+        this.serverName = start.getServerName();
+        this.gamemode = start.getGamemode();
+        this.timestamp = start.getTimestamp();
+        this.endTimestamp = end.getTimestamp();
+    }
+
+    public String getSessionUuid() { return sessionUuid; }
+    public String getPlayerUuid() { return playerUuid; }
+    public String getPlayerName() { return playerName; }
+    public Platform getPlatform() { return platform; }
+    public String getBedrockDevice() { return bedrockDevice; }
+    public String getIpAddress() { return ipAddress; }
+    public String getJoinDomain() { return joinDomain; }
+    public String getServerName() { return serverName; }
+    public String getGamemode() { return gamemode; }
+    public long getTimestamp() { return timestamp; }
+    public long getEndTimestamp() { return endTimestamp; }
+}
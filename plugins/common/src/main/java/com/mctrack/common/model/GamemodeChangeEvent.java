@@ -1,6 +1,6 @@
 package com.mctrack.common.model;
 
-public class GamemodeChangeEvent {
+public class GamemodeChangeEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final String fromGamemode;
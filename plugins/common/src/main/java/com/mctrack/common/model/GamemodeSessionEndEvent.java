@@ -3,7 +3,7 @@ package com.mctrack.common.model;
 /**
  * Event for when a player leaves a gamemode server.
  */
-public class GamemodeSessionEndEvent {
+public class GamemodeSessionEndEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
 
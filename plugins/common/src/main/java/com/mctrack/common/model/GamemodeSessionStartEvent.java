@@ -4,7 +4,7 @@ package com.mctrack.common.model;
  * Event for when a player joins a gamemode server (Spigot/Paper).
  * This is separate from network sessions which are tracked by the proxy.
  */
-public class GamemodeSessionStartEvent {
+public class GamemodeSessionStartEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final String playerName;
@@ -35,4 +35,13 @@ public class GamemodeSessionStartEvent {
     public String getIpAddress() { return ipAddress; }
     public String getPlatform() { return platform; }
     public String getBedrockDevice() { return bedrockDevice; }
+
+    /**
+     * Copy of this event for the given gamemode, used when the event was created before the
+     * API key's gamemode was known.
+     */
+    public GamemodeSessionStartEvent withGamemodeId(String gamemodeId) {
+        return new GamemodeSessionStartEvent(sessionUuid, playerUuid, playerName, gamemodeId,
+            serverName, ipAddress, platform, bedrockDevice);
+    }
 }
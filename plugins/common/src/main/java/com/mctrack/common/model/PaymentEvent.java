@@ -3,7 +3,7 @@ package com.mctrack.common.model;
 import java.util.Collections;
 import java.util.List;
 
-public class PaymentEvent {
+public class PaymentEvent extends TrackedEvent {
     private final String paymentUuid;
     private final String playerUuid;
     private final String playerName;
@@ -0,0 +1,38 @@
+package com.mctrack.common.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liveness heartbeat for every online session at once: session IDs grouped by server,
+ * sharing one timestamp. Replaces one {@link SessionHeartbeatEvent} per player.
+ */
+public class PresenceSnapshot extends TrackedEvent {
+    private final Map<String, List<String>> servers;
+    private final long timestamp;
+
+    /**
+     * @param servers server name to the IDs of the network sessions on it ("" for unknown servers)
+     */
+    public PresenceSnapshot(Map<String, List<String>> servers) {
+        this.servers = servers;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public Map<String, List<String>> getServers() { return servers; }
+    public long getTimestamp() { return timestamp; }
+
+    public int getSessionCount() {
+        int count = 0;
+        for (List<String> sessionUuids : servers.values()) {
+            count += sessionUuids.size();
+        }
+        return count;
+    }
+
+    /**
+     * Covers many players, so it has no single owner.
+     */
+    @Override
+    public String getPlayerUuid() { return null; }
+}
@@ -1,6 +1,6 @@
 package com.mctrack.common.model;
 
-public class ServerSwitchEvent {
+public class ServerSwitchEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final String fromServer;
@@ -8,11 +8,15 @@ public class ServerSwitchEvent {
     private final long timestamp;
 
     public ServerSwitchEvent(String sessionUuid, String playerUuid, String fromServer, String toServer) {
+        this(sessionUuid, playerUuid, fromServer, toServer, System.currentTimeMillis());
+    }
+
+    public ServerSwitchEvent(String sessionUuid, String playerUuid, String fromServer, String toServer, long timestamp) {
         this.sessionUuid = sessionUuid;
         this.playerUuid = playerUuid;
         this.fromServer = fromServer;
         this.toServer = toServer;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
     }
 
     public String getSessionUuid() { return sessionUuid; }
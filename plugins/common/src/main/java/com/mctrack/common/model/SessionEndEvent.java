@@ -1,14 +1,18 @@
 package com.mctrack.common.model;
 
-public class SessionEndEvent {
+public class SessionEndEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final long timestamp;
 
     public SessionEndEvent(String sessionUuid, String playerUuid) {
+        this(sessionUuid, playerUuid, System.currentTimeMillis());
+    }
+
+    public SessionEndEvent(String sessionUuid, String playerUuid, long timestamp) {
         this.sessionUuid = sessionUuid;
         this.playerUuid = playerUuid;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
     }
 
     public String getSessionUuid() { return sessionUuid; }
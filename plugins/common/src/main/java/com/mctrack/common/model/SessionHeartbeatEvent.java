@@ -1,6 +1,6 @@
 package com.mctrack.common.model;
 
-public class SessionHeartbeatEvent {
+public class SessionHeartbeatEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final String serverName;
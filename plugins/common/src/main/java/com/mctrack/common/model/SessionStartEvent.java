@@ -1,6 +1,6 @@
 package com.mctrack.common.model;
 
-public class SessionStartEvent {
+public class SessionStartEvent extends TrackedEvent {
     private final String sessionUuid;
     private final String playerUuid;
     private final String playerName;
@@ -15,6 +15,13 @@ public class SessionStartEvent {
     public SessionStartEvent(String sessionUuid, String playerUuid, String playerName, Platform platform,
                             String bedrockDevice, String ipAddress, String joinDomain,
                             String serverName, String gamemode) {
+        this(sessionUuid, playerUuid, playerName, platform, bedrockDevice, ipAddress, joinDomain,
+            serverName, gamemode, System.currentTimeMillis());
+    }
+
+    public SessionStartEvent(String sessionUuid, String playerUuid, String playerName, Platform platform,
+                            String bedrockDevice, String ipAddress, String joinDomain,
+                            String serverName, String gamemode, long timestamp) {
         this.sessionUuid = sessionUuid;
         this.playerUuid = playerUuid;
         this.playerName = playerName;
@@ -24,7 +31,7 @@ public class SessionStartEvent {
         this.joinDomain = joinDomain;
         this.serverName = serverName;
         this.gamemode = gamemode;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
     }
 
     public String getSessionUuid() { return sessionUuid; }
@@ -0,0 +1,28 @@
+package com.mctrack.common.model;
+
+/**
+ * Base type for every event queued by MCTrackAPI.
+ */
+public abstract class TrackedEvent {
+
+    // Transient so it never reaches the wire format
+    private transient long enqueuedNanos;
+
+    /**
+     * UUID of the player the event belongs to, or null if it is not tied to a player.
+     * Used to keep each player's events in order when batches are sent concurrently.
+     */
+    public abstract String getPlayerUuid();
+
+    /**
+     * {@link System#nanoTime()} when MCTrackAPI queued the event, or 0 if it was never queued.
+     * Used to measure how long events take to be acknowledged by ingestion.
+     */
+    public long getEnqueuedNanos() {
+        return enqueuedNanos;
+    }
+
+    public void setEnqueuedNanos(long enqueuedNanos) {
+        this.enqueuedNanos = enqueuedNanos;
+    }
+}
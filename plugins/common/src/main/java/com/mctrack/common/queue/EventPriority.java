@@ -0,0 +1,15 @@
+package com.mctrack.common.queue;
+
+/**
+ * Lanes of the event queue, highest priority first. Lanes decide what is given up first
+ * when the queue is full and which partitions are sent first; events still leave the queue
+ * in the order they were queued.
+ */
+public enum EventPriority {
+    /** Payments and session boundaries: dropped last, their partitions sent and spooled first. */
+    CRITICAL,
+    /** State changes such as server switches. */
+    NORMAL,
+    /** Heartbeats and presence snapshots, superseded by the next one anyway. */
+    BULK
+}
@@ -0,0 +1,210 @@
+package com.mctrack.common.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Bounded event queue with one preallocated ring buffer per {@link EventPriority} lane.
+ *
+ * <p>The lanes share a single capacity. {@link #poll()} returns events in the order they
+ * were offered regardless of lane, so one player's events come out in the order they
+ * happened; priority only decides what is given up when the queue is full, where an event
+ * may only displace events of its own or a lower priority, lowest first. Applies the
+ * configured overflow policy and counts every event it had to give up on.</p>
+ *
+ * <p>Only the critical lane can hold the whole capacity; the normal lane holds half of it
+ * and the bulk lane a quarter. A flood of switches or heartbeats is therefore shed within
+ * its own lane while the queue still has room for critical events, and the rings take
+ * 1.75 times the capacity in slots rather than 3 times.</p>
+ */
+public final class EventQueue<E> {
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
+
+    private final EventRingBuffer<E>[] lanes;
+    private final int capacity;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong nextStamp = new AtomicLong();
+    private final OverflowPolicy policy;
+    private final long blockTimeoutNanos;
+    private final Function<? super E, EventPriority> priorityOf;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param capacity maximum number of queued events across all lanes (rounded up to a power of two)
+     * @param policy what to do when the queue is full
+     * @param blockTimeoutMs how long {@link OverflowPolicy#BLOCK} waits for space
+     * @param priorityOf lane of each event
+     */
+    @SuppressWarnings("unchecked")
+    public EventQueue(int capacity, OverflowPolicy policy, long blockTimeoutMs,
+                      Function<? super E, EventPriority> priorityOf) {
+        this.lanes = (EventRingBuffer<E>[]) new EventRingBuffer<?>[PRIORITIES.length];
+        for (int i = 0; i < lanes.length; i++) {
+            // Each lane below critical gets half the slots of the one above it
+            lanes[i] = new EventRingBuffer<>(Math.max(1, capacity >> i));
+        }
+        this.capacity = lanes[0].capacity();
+        this.policy = policy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMs));
+        this.priorityOf = priorityOf;
+    }
+
+    /**
+     * Enqueues an event from a producer thread, applying the overflow policy if full.
+     *
+     * @return true if the event was queued
+     */
+    public boolean offer(E event) {
+        if (tryOffer(event)) return true;
+
+        switch (policy) {
+            case BLOCK:
+                return offerBlocking(event);
+            case REJECT:
+                rejected.increment();
+                return false;
+            case DROP_OLDEST:
+            default:
+                return offerEvicting(event);
+        }
+    }
+
+    /**
+     * Enqueues an event only if there is room, whatever the overflow policy. Never blocks
+     * and never evicts another event.
+     *
+     * @return true if the event was queued
+     */
+    public boolean offerIfRoom(E event) {
+        if (tryOffer(event)) return true;
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Removes the oldest event across all lanes, or returns null if the queue is empty.
+     *
+     * <p>An event offered after another one was queued (on the same thread, or after any
+     * other happens-before edge) is never returned before it.</p>
+     */
+    public E poll() {
+        for (;;) {
+            EventRingBuffer<E> oldest = null;
+            long oldestStamp = Long.MAX_VALUE;
+            for (EventRingBuffer<E> lane : lanes) {
+                long stamp = lane.peekStamp();
+                if (stamp < oldestStamp) {
+                    oldest = lane;
+                    oldestStamp = stamp;
+                }
+            }
+            if (oldest == null) return null;
+
+            E event = oldest.poll();
+            if (event != null) {
+                count.decrementAndGet();
+                return event;
+            }
+            // Evicted by a producer in the meantime, look again
+        }
+    }
+
+    public EventPriority priorityOf(E event) {
+        return priorityOf.apply(event);
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Events queued in one lane. May be momentarily stale under contention.
+     */
+    public int size(EventPriority priority) {
+        return lanes[priority.ordinal()].size();
+    }
+
+    public boolean isEmpty() {
+        return count.get() == 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Events evicted or shed by {@link OverflowPolicy#DROP_OLDEST}. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /** Events refused because the queue stayed full. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private boolean tryOffer(E event) {
+        for (;;) {
+            int current = count.get();
+            if (current >= capacity) return false;
+            if (count.compareAndSet(current, current + 1)) break;
+        }
+        // Taken before the event becomes visible, so anything queued before it has a lower stamp
+        if (lanes[priorityOf.apply(event).ordinal()].offer(event, nextStamp.getAndIncrement())) return true;
+        count.decrementAndGet();
+        return false;
+    }
+
+    private boolean offerEvicting(E event) {
+        int priority = priorityOf.apply(event).ordinal();
+        EventRingBuffer<E> lane = lanes[priority];
+        for (;;) {
+            if (lane.size() >= lane.capacity()) {
+                // Its own lane is full, so only dropping the lane's oldest event makes room
+                if (lane.poll() != null) {
+                    count.decrementAndGet();
+                    dropped.increment();
+                }
+            } else if (evictBelow(priority)) {
+                dropped.increment();
+            } else if (!isEmpty()) {
+                // Everything queued outranks the new event, so shed the new one instead
+                dropped.increment();
+                return false;
+            }
+            if (tryOffer(event)) return true;
+        }
+    }
+
+    /**
+     * Evicts the oldest event of the lowest non-empty lane at or below the given priority.
+     */
+    private boolean evictBelow(int priority) {
+        for (int i = lanes.length - 1; i >= priority; i--) {
+            if (lanes[i].poll() != null) {
+                count.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean offerBlocking(E event) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            if (tryOffer(event)) return true;
+        }
+        rejected.increment();
+        return false;
+    }
+}
@@ -0,0 +1,144 @@
+package com.mctrack.common.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Fixed-capacity, lock-free ring buffer (bounded sequence-per-slot queue).
+ * All slots are allocated up front so a full buffer never grows the heap.
+ * Any number of threads may offer; polling is also safe from several threads,
+ * which lets producers evict the oldest element when applying an overflow policy.
+ * Each element may carry a stamp, which lets several buffers be merged back into insertion order.
+ */
+public final class EventRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final long[] stamps;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    public EventRingBuffer(int requestedCapacity) {
+        int capacity = roundToPowerOfTwo(Math.max(2, requestedCapacity));
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        this.stamps = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Appends an element, returning false if the buffer is full.
+     */
+    public boolean offer(E element) {
+        return offer(element, 0);
+    }
+
+    /**
+     * Appends an element with a stamp readable through {@link #peekStamp()}, returning false if the buffer is full.
+     */
+    public boolean offer(E element, long stamp) {
+        if (element == null) throw new NullPointerException("element");
+
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    // Published together with the element by the sequence write below
+                    stamps[index] = stamp;
+                    slots.lazySet(index, element);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest element, or null if the buffer is empty.
+     */
+    public E poll() {
+        return pollIf(null);
+    }
+
+    /**
+     * Removes the oldest element only if it matches the condition.
+     * Returns null if the buffer is empty or the oldest element does not match.
+     */
+    public E pollIf(Predicate<? super E> condition) {
+        long pos = head.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                // The slot is stable until head moves past it, so it is safe to inspect first
+                E element = slots.get(index);
+                if (condition != null && !condition.test(element)) {
+                    return null;
+                }
+                if (head.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return element;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Stamp of the oldest element, or {@link Long#MAX_VALUE} if the buffer is empty.
+     */
+    public long peekStamp() {
+        for (;;) {
+            long pos = head.get();
+            int index = (int) (pos & mask);
+            if (sequences.get(index) != pos + 1) {
+                if (head.get() == pos) return Long.MAX_VALUE;
+                continue;
+            }
+            long stamp = stamps[index];
+            // The slot may have been polled and refilled while the stamp was read
+            if (sequences.get(index) == pos + 1) return stamp;
+        }
+    }
+
+    /**
+     * Number of queued elements. O(1), may be momentarily stale under contention.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        if (size < 0) return 0;
+        return (int) Math.min(size, capacity());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private static int roundToPowerOfTwo(int value) {
+        int highest = Integer.highestOneBit(value);
+        if (highest == value) return value;
+        if (highest >= (1 << 30)) return 1 << 30;
+        return highest << 1;
+    }
+}
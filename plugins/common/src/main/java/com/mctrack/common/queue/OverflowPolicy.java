@@ -0,0 +1,22 @@
+package com.mctrack.common.queue;
+
+/**
+ * What the event queue does when it is full.
+ */
+public enum OverflowPolicy {
+    /** Evict the oldest queued event of the lowest priority lane; events never displace higher-priority ones. */
+    DROP_OLDEST,
+    /** Wait briefly for space, then reject. */
+    BLOCK,
+    /** Reject the new event immediately. */
+    REJECT;
+
+    public static OverflowPolicy fromConfig(String value, OverflowPolicy defaultValue) {
+        if (value == null) return defaultValue;
+        try {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package com.mctrack.common.spool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, segmented write-ahead spool backed by memory-mapped files.
+ *
+ * <p>Each record is laid out as {@code [int length][int crc32][byte type][payload]}.
+ * The length is written last and acts as the commit marker, so a record torn by a
+ * crash is simply not seen on the next open. Records are consumed in append order
+ * via {@link #peek()} / {@link #ack()}; segments are unmapped and deleted once fully
+ * acked, rather than keeping their mapping until the buffer happens to be collected.</p>
+ */
+public final class DiskSpool implements Closeable {
+    private static final int HEADER_BYTES = 9;
+    private static final int ACK_BYTES = 16;
+    private static final int ACK_MAGIC = 0x4d435350; // "MCSP"
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String ACK_FILE = "spool.ack";
+    // Unsafe.invokeCleaner(ByteBuffer), or null where it is not available
+    private static final MethodHandle INVOKE_CLEANER = findInvokeCleaner();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final boolean sync;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer ackBuffer;
+
+    private long readSegmentId;
+    private int readOffset;
+    private int pendingCount;
+    private long pendingBytes;
+
+    /**
+     * A record read back from the spool.
+     */
+    public static final class Entry {
+        private final byte type;
+        private final byte[] data;
+
+        Entry(byte type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+
+        public byte getType() { return type; }
+        public byte[] getData() { return data; }
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        final MappedByteBuffer buffer;
+        int end;
+
+        Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    private DiskSpool(Path directory, int segmentSize, long maxBytes, boolean sync) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens (or creates) the spool in the given directory and recovers any records
+     * left over from a previous run.
+     */
+    public static DiskSpool open(Path directory, int segmentSize, long maxBytes, boolean sync) throws IOException {
+        Files.createDirectories(directory);
+        DiskSpool spool = new DiskSpool(directory, Math.max(segmentSize, 4096), maxBytes, sync);
+        spool.recover();
+        return spool;
+    }
+
+    /**
+     * Appends a record. Returns false if the spool is at its size limit.
+     */
+    public synchronized boolean append(byte type, byte[] data, int offset, int length) throws IOException {
+        int recordSize = HEADER_BYTES + length;
+        if (pendingBytes + recordSize > maxBytes) {
+            return false;
+        }
+
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.end + recordSize > segment.buffer.capacity()) {
+            segment = createSegment(segment == null ? readSegmentId : segment.id + 1, Math.max(segmentSize, recordSize));
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int position = segment.end;
+        buffer.put(position + 8, type);
+        buffer.put(position + HEADER_BYTES, data, offset, length);
+        // Clear the next length slot so stale bytes from a torn write are never read as a record
+        if (position + recordSize + 4 <= buffer.capacity()) {
+            buffer.putInt(position + recordSize, 0);
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(data, offset, length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+        if (sync) {
+            buffer.force();
+        }
+
+        segment.end += recordSize;
+        pendingCount++;
+        pendingBytes += recordSize;
+        return true;
+    }
+
+    public boolean append(byte type, byte[] data) throws IOException {
+        return append(type, data, 0, data.length);
+    }
+
+    /**
+     * Returns the oldest unacknowledged record without consuming it, or null if the spool is empty.
+     */
+    public synchronized Entry peek() {
+        Segment segment = advanceToReadable();
+        if (segment == null) return null;
+        return read(segment, readOffset);
+    }
+
+    /**
+     * Returns up to {@code max} unacknowledged records after skipping the {@code skip} oldest,
+     * without consuming them. {@link #ack()} still acknowledges the oldest record first.
+     */
+    public synchronized List<Entry> peek(int skip, int max) {
+        List<Entry> entries = new ArrayList<>(Math.min(max, 16));
+        Segment segment = advanceToReadable();
+        int offset = readOffset;
+        int index = 0;
+        while (segment != null && entries.size() < max) {
+            if (offset >= segment.end) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(segment.id);
+                segment = next != null ? next.getValue() : null;
+                offset = 0;
+                continue;
+            }
+            if (index++ >= skip) {
+                entries.add(read(segment, offset));
+            }
+            offset += HEADER_BYTES + segment.buffer.getInt(offset);
+        }
+        return entries;
+    }
+
+    private static Entry read(Segment segment, int offset) {
+        MappedByteBuffer buffer = segment.buffer;
+        byte[] data = new byte[buffer.getInt(offset)];
+        buffer.get(offset + HEADER_BYTES, data);
+        return new Entry(buffer.get(offset + 8), data);
+    }
+
+    /**
+     * Marks the record returned by the last {@link #peek()} as delivered.
+     */
+    public synchronized void ack() {
+        Segment segment = advanceToReadable();
+        if (segment == null) return;
+
+        int recordSize = HEADER_BYTES + segment.buffer.getInt(readOffset);
+        readOffset += recordSize;
+        pendingCount--;
+        pendingBytes -= recordSize;
+        writeAck();
+        advanceToReadable();
+    }
+
+    public synchronized boolean hasPending() {
+        return pendingCount > 0;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            unmap(segment.buffer);
+        }
+        if (ackBuffer != null) {
+            ackBuffer.force();
+            unmap(ackBuffer);
+        }
+        segments.clear();
+        ackBuffer = null;
+    }
+
+    /**
+     * Moves the read position past fully consumed segments, deleting them.
+     * Returns the segment holding the next record, or null if there is none.
+     */
+    private Segment advanceToReadable() {
+        while (true) {
+            Segment segment = segments.get(readSegmentId);
+            if (segment == null) {
+                Map.Entry<Long, Segment> next = segments.ceilingEntry(readSegmentId);
+                if (next == null) return null;
+                readSegmentId = next.getKey();
+                readOffset = 0;
+                continue;
+            }
+            if (readOffset < segment.end) {
+                return segment;
+            }
+            if (segment == segments.lastEntry().getValue()) {
+                // Keep the tail segment open for appends
+                return null;
+            }
+            deleteSegment(segment);
+            readSegmentId = segment.id + 1;
+            readOffset = 0;
+            writeAck();
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, mapSegment(id, path, Files.size(path)));
+                } catch (NumberFormatException ignored) {
+                    // Not one of ours
+                }
+            }
+        }
+
+        ackBuffer = map(directory.resolve(ACK_FILE), ACK_BYTES);
+        long ackSegment = ackBuffer.getLong(0);
+        int ackOffset = ackBuffer.getInt(8);
+        if (ackBuffer.getInt(12) != ackChecksum(ackSegment, ackOffset)) {
+            // Missing or torn ack: start over from the oldest segment (at-least-once)
+            ackSegment = segments.isEmpty() ? 0 : segments.firstKey();
+            ackOffset = 0;
+        }
+
+        // Drop segments that were fully acked before the last shutdown
+        while (!segments.isEmpty() && segments.firstKey() < ackSegment) {
+            deleteSegment(segments.firstEntry().getValue());
+        }
+
+        readSegmentId = ackSegment;
+        readOffset = segments.containsKey(ackSegment) ? ackOffset : 0;
+
+        for (Segment segment : segments.values()) {
+            int offset = 0;
+            while (true) {
+                int next = nextRecord(segment.buffer, offset);
+                if (next < 0) break;
+                if (segment.id > readSegmentId || (segment.id == readSegmentId && offset >= readOffset)) {
+                    pendingCount++;
+                    pendingBytes += next - offset;
+                }
+                offset = next;
+            }
+            segment.end = offset;
+        }
+        if (segments.containsKey(readSegmentId)) {
+            readOffset = Math.min(readOffset, segments.get(readSegmentId).end);
+        }
+    }
+
+    /**
+     * Validates the record at the given offset and returns the offset after it, or -1 at the end of valid data.
+     */
+    private int nextRecord(MappedByteBuffer buffer, int offset) {
+        if (offset + HEADER_BYTES > buffer.capacity()) return -1;
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_BYTES + length > buffer.capacity()) return -1;
+
+        byte[] data = new byte[length];
+        buffer.get(offset + HEADER_BYTES, data);
+        crc.reset();
+        crc.update(buffer.get(offset + 8));
+        crc.update(data, 0, length);
+        if ((int) crc.getValue() != buffer.getInt(offset + 4)) return -1;
+        return offset + HEADER_BYTES + length;
+    }
+
+    private Segment createSegment(long id, int size) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        Segment segment = mapSegment(id, path, size);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment mapSegment(long id, Path path, long size) throws IOException {
+        return new Segment(id, path, map(path, size));
+    }
+
+    private static MappedByteBuffer map(Path path, long size) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (file.length() < size) {
+                file.setLength(size);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.id);
+        // Nothing reads the buffer after this: peek() hands out copies
+        unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ignored) {
+            // Still mapped if unmapping is unavailable; it is below the ack position and removed on the next open
+        }
+    }
+
+    /**
+     * Releases the mapping now instead of when the buffer is garbage collected. The buffer
+     * must not be touched afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+        } catch (Throwable ignored) {
+            // Left to the garbage collector
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void writeAck() {
+        ackBuffer.putLong(0, readSegmentId);
+        ackBuffer.putInt(8, readOffset);
+        ackBuffer.putInt(12, ackChecksum(readSegmentId, readOffset));
+        if (sync) {
+            ackBuffer.force();
+        }
+    }
+
+    private static int ackChecksum(long segment, int offset) {
+        return (int) (segment ^ (segment >>> 32)) ^ offset ^ ACK_MAGIC;
+    }
+}
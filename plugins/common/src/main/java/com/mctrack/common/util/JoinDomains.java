@@ -0,0 +1,49 @@
+package com.mctrack.common.util;
+
+import java.util.Locale;
+
+/**
+ * Normalizes the address a client typed to connect, as sent in its handshake.
+ */
+public final class JoinDomains {
+    private static final int MAX_LENGTH = 255;
+
+    private JoinDomains() {
+    }
+
+    /**
+     * Returns the bare, lower-case host of a handshake address such as
+     * {@code "Play.Example.com.:25565"} or {@code "play.example.com\0FML2\0"},
+     * or null if there is none. Never does a DNS lookup.
+     */
+    public static String normalize(String handshakeHost) {
+        if (handshakeHost == null) return null;
+
+        String host = handshakeHost;
+        // Forge markers and BungeeCord IP forwarding are appended after a NUL
+        int nul = host.indexOf('\0');
+        if (nul >= 0) {
+            host = host.substring(0, nul);
+        }
+
+        if (host.startsWith("[")) {
+            int close = host.indexOf(']');
+            host = close > 0 ? host.substring(1, close) : host.substring(1);
+        } else {
+            int colon = host.lastIndexOf(':');
+            if (colon >= 0 && host.indexOf(':') == colon) {
+                host = host.substring(0, colon);
+            }
+        }
+
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        host = host.trim();
+        if (host.isEmpty()) return null;
+        if (host.length() > MAX_LENGTH) {
+            host = host.substring(0, MAX_LENGTH);
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+}
@@ -2,28 +2,66 @@ package com.mctrack.common.util;
 
 import java.util.UUID;
 
+/**
+ * One online player, owned by a {@link SessionStore}.
+ *
+ * <p>IDs are kept as the two halves of their UUIDs and only turned into strings when an
+ * event first needs them; the current server and gamemode are interned ids. Changes go through
+ * {@link SessionStore#updateServer} and {@link SessionStore#updateGamemode} so the store's
+ * indexes and counters stay in sync.</p>
+ */
 public class PlayerSession {
-    private final String sessionUuid;
-    private final String gamemodeSessionUuid;
-    private final UUID playerUuid;
+    private final SessionStore store;
+    final long playerMost;
+    final long playerLeast;
+    private final long sessionMost;
+    private final long sessionLeast;
+    // Formatted on first use and reused for every event of the session
+    private String sessionUuid;
+    // Null until first asked for; most players never get a gamemode session
+    private String gamemodeSessionUuid;
     private final String playerName;
     private final long startTime;
-    private String currentServer;
 
-    public PlayerSession(String sessionUuid, UUID playerUuid, String playerName) {
-        this.sessionUuid = sessionUuid;
-        this.gamemodeSessionUuid = UUID.randomUUID().toString();
-        this.playerUuid = playerUuid;
+    // Guarded by the store
+    int serverId = SessionStore.NO_SERVER;
+    int serverSlot = -1;
+    int gamemodeId = SessionStore.NO_GAMEMODE;
+
+    PlayerSession(SessionStore store, UUID playerUuid, String playerName, UUID sessionUuid) {
+        this.store = store;
+        this.playerMost = playerUuid.getMostSignificantBits();
+        this.playerLeast = playerUuid.getLeastSignificantBits();
+        this.sessionMost = sessionUuid.getMostSignificantBits();
+        this.sessionLeast = sessionUuid.getLeastSignificantBits();
         this.playerName = playerName;
         this.startTime = System.currentTimeMillis();
     }
 
-    public String getSessionUuid() { return sessionUuid; }
-    public String getGamemodeSessionUuid() { return gamemodeSessionUuid; }
-    public UUID getPlayerUuid() { return playerUuid; }
+    public String getSessionUuid() {
+        // Racy but safe: every thread formats the same immutable string
+        String id = sessionUuid;
+        if (id == null) {
+            id = new UUID(sessionMost, sessionLeast).toString();
+            sessionUuid = id;
+        }
+        return id;
+    }
+
+    public UUID getPlayerUuid() { return new UUID(playerMost, playerLeast); }
     public String getPlayerName() { return playerName; }
     public long getStartTime() { return startTime; }
 
-    public String getCurrentServer() { return currentServer; }
-    public void setCurrentServer(String currentServer) { this.currentServer = currentServer; }
+    /**
+     * The gamemode session ID, generated the first time it is asked for.
+     */
+    public synchronized String getGamemodeSessionUuid() {
+        if (gamemodeSessionUuid == null) {
+            gamemodeSessionUuid = store.nextId().toString();
+        }
+        return gamemodeSessionUuid;
+    }
+
+    public String getCurrentServer() { return store.serverName(this); }
+    public String getGamemode() { return store.gamemodeName(this); }
 }
@@ -0,0 +1,26 @@
+package com.mctrack.common.util;
+
+import java.util.UUID;
+
+/**
+ * Source of session IDs for a {@link SessionStore}.
+ */
+@FunctionalInterface
+public interface SessionIdGenerator {
+
+    UUID next();
+
+    /**
+     * Time-ordered UUIDv7s; the default.
+     */
+    static SessionIdGenerator timeOrdered() {
+        return UuidV7Generator.INSTANCE;
+    }
+
+    /**
+     * Random UUIDv4s from {@link UUID#randomUUID()}, as IDs were generated before.
+     */
+    static SessionIdGenerator random() {
+        return UUID::randomUUID;
+    }
+}
@@ -0,0 +1,470 @@
+package com.mctrack.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Online player sessions of one plugin instance.
+ *
+ * <p>Sessions live in an open-addressing table keyed by the two halves of the player UUID,
+ * so no {@link UUID} or map entry is kept per player. Server names are interned to small
+ * ids, and each server keeps an array of its sessions (removal swaps in the last one),
+ * which makes per-server lookups O(k).</p>
+ *
+ * <p>Live counts per server and per gamemode are kept in {@link LongAdder}s next to the
+ * interned names, so they can be read from any thread without taking the store's lock.
+ * Gamemodes are only set by the Spigot plugin, from its API key's gamemode; proxies do not
+ * know which gamemode a backend server runs, so their gamemode counts stay empty.</p>
+ *
+ * <p>Changes take a {@link StampedLock}'s write lock. {@link #getSession}, called for
+ * almost every tracked event, reads optimistically and only falls back to the read lock
+ * when a change raced with it, so lookups from many threads never block each other.</p>
+ *
+ * <p>All methods are thread-safe. Collections returned are snapshots.</p>
+ */
+public class SessionStore {
+    static final int NO_SERVER = -1;
+    static final int NO_GAMEMODE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final SessionIdGenerator idGenerator;
+    private final StampedLock lock = new StampedLock();
+    private PlayerSession[] table = new PlayerSession[INITIAL_CAPACITY];
+    private volatile int size;
+
+    // Interned names; ids index the arrays below and are never reused. The name and counter
+    // arrays are replaced, never modified in place, so they can be read without the lock.
+    private final Map<String, Integer> serverIds = new HashMap<>();
+    private volatile String[] serverNames = new String[0];
+    private volatile LongAdder[] serverCounts = new LongAdder[0];
+    private PlayerSession[][] serverSessions = new PlayerSession[0][];
+    private int[] serverSizes = new int[0];
+
+    private final Map<String, Integer> gamemodeIds = new HashMap<>();
+    private volatile String[] gamemodeNames = new String[0];
+    private volatile LongAdder[] gamemodeCounts = new LongAdder[0];
+
+    public SessionStore() {
+        this(SessionIdGenerator.timeOrdered());
+    }
+
+    public SessionStore(SessionIdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Starts a session for the player, replacing any session it already had.
+     */
+    public PlayerSession createSession(UUID playerUuid, String playerName) {
+        // Generated outside the lock; joins on different threads only contend on the table
+        PlayerSession session = new PlayerSession(this, playerUuid, playerName, idGenerator.next());
+        long stamp = lock.writeLock();
+        try {
+            remove(playerUuid);
+            if ((size + 1) * 2 > table.length) {
+                resize(table.length * 2);
+            }
+            table[indexFor(session.playerMost, session.playerLeast, table.length)] = session;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return session;
+    }
+
+    public PlayerSession getSession(UUID playerUuid) {
+        long most = playerUuid.getMostSignificantBits();
+        long least = playerUuid.getLeastSignificantBits();
+
+        long stamp = lock.tryOptimisticRead();
+        // May see a table being changed; the probe still ends since it is never more than half full
+        PlayerSession session = lookup(table, most, least);
+        if (lock.validate(stamp)) {
+            return session;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return lookup(table, most, least);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public PlayerSession removeSession(UUID playerUuid) {
+        long stamp = lock.writeLock();
+        try {
+            return remove(playerUuid);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void updateServer(UUID playerUuid, String serverName) {
+        long stamp = lock.writeLock();
+        try {
+            int index = find(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+            if (index < 0) return;
+
+            PlayerSession session = table[index];
+            int serverId = serverName != null ? internServer(serverName) : NO_SERVER;
+            if (session.serverId == serverId) return;
+            leaveServer(session);
+            if (serverId != NO_SERVER) {
+                joinServer(session, serverId);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sets the gamemode the player is counted under, or clears it when {@code gamemodeId} is null.
+     * Only called by the Spigot plugin; the proxies never set a gamemode.
+     */
+    public void updateGamemode(UUID playerUuid, String gamemodeId) {
+        long stamp = lock.writeLock();
+        try {
+            int index = find(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+            if (index < 0) return;
+
+            setGamemode(table[index], gamemodeId != null ? internGamemode(gamemodeId) : NO_GAMEMODE);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public List<PlayerSession> getAllSessions() {
+        long stamp = lock.readLock();
+        try {
+            List<PlayerSession> sessions = new ArrayList<>(size);
+            for (PlayerSession session : table) {
+                if (session != null) {
+                    sessions.add(session);
+                }
+            }
+            return sessions;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public int getOnlineCount() {
+        return size;
+    }
+
+    /**
+     * Players currently on the server; does not take the store's lock.
+     */
+    public int getOnlineCount(String serverName) {
+        return (int) count(serverNames, serverCounts, serverName);
+    }
+
+    /**
+     * Players currently counted under the gamemode; does not take the store's lock. Always 0
+     * on a proxy, see {@link #updateGamemode}.
+     */
+    public int getGamemodeCount(String gamemodeId) {
+        return (int) count(gamemodeNames, gamemodeCounts, gamemodeId);
+    }
+
+    /**
+     * Player count of every server that has players, in the order servers were first seen.
+     */
+    public Map<String, Integer> getServerCounts() {
+        return counts(serverNames, serverCounts);
+    }
+
+    /**
+     * Player count of every gamemode that has players, in the order gamemodes were first seen.
+     * Always empty on a proxy, see {@link #updateGamemode}.
+     */
+    public Map<String, Integer> getGamemodeCounts() {
+        return counts(gamemodeNames, gamemodeCounts);
+    }
+
+    /**
+     * Live distribution for the status command, as label/value pairs in display order.
+     */
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new LinkedHashMap<>();
+        Map<String, Integer> servers = getServerCounts();
+        if (!servers.isEmpty()) {
+            status.put("Players per Server", formatCounts(servers));
+        }
+        Map<String, Integer> gamemodes = getGamemodeCounts();
+        status.put("Players per Gamemode", gamemodes.isEmpty()
+            ? "n/a (only counted on Spigot servers with a gamemode API key)"
+            : formatCounts(gamemodes));
+        return status;
+    }
+
+    public List<PlayerSession> getSessionsOn(String serverName) {
+        long stamp = lock.readLock();
+        try {
+            Integer serverId = serverIds.get(serverName);
+            if (serverId == null) return Collections.emptyList();
+            return Arrays.asList(Arrays.copyOf(serverSessions[serverId], serverSizes[serverId]));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Calls the action once per server that has sessions, outside the store's lock.
+     * Sessions not on any server are passed last under a null server name.
+     */
+    public void forEachServer(BiConsumer<String, List<PlayerSession>> action) {
+        List<String> names = new ArrayList<>();
+        List<List<PlayerSession>> groups = new ArrayList<>();
+        long stamp = lock.readLock();
+        try {
+            String[] serverNames = this.serverNames;
+            for (int id = 0; id < serverNames.length; id++) {
+                if (serverSizes[id] > 0) {
+                    names.add(serverNames[id]);
+                    groups.add(Arrays.asList(Arrays.copyOf(serverSessions[id], serverSizes[id])));
+                }
+            }
+            List<PlayerSession> unassigned = new ArrayList<>();
+            for (PlayerSession session : table) {
+                if (session != null && session.serverId == NO_SERVER) {
+                    unassigned.add(session);
+                }
+            }
+            if (!unassigned.isEmpty()) {
+                names.add(null);
+                groups.add(unassigned);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        for (int i = 0; i < names.size(); i++) {
+            action.accept(names.get(i), groups.get(i));
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            table = new PlayerSession[INITIAL_CAPACITY];
+            size = 0;
+            Arrays.fill(serverSizes, 0);
+            for (PlayerSession[] sessions : serverSessions) {
+                Arrays.fill(sessions, null);
+            }
+            for (LongAdder count : serverCounts) {
+                count.reset();
+            }
+            for (LongAdder count : gamemodeCounts) {
+                count.reset();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    UUID nextId() {
+        return idGenerator.next();
+    }
+
+    String serverName(PlayerSession session) {
+        int serverId = session.serverId;
+        return serverId != NO_SERVER ? serverNames[serverId] : null;
+    }
+
+    String gamemodeName(PlayerSession session) {
+        int gamemodeId = session.gamemodeId;
+        return gamemodeId != NO_GAMEMODE ? gamemodeNames[gamemodeId] : null;
+    }
+
+    private PlayerSession remove(UUID playerUuid) {
+        int index = find(playerUuid.getMostSignificantBits(), playerUuid.getLeastSignificantBits());
+        if (index < 0) return null;
+
+        PlayerSession session = table[index];
+        leaveServer(session);
+        setGamemode(session, NO_GAMEMODE);
+        deleteAt(index);
+        size--;
+        return session;
+    }
+
+    private int internServer(String serverName) {
+        Integer existing = serverIds.get(serverName);
+        if (existing != null) return existing;
+
+        int id = serverSizes.length;
+        serverSessions = Arrays.copyOf(serverSessions, id + 1);
+        serverSessions[id] = new PlayerSession[8];
+        serverSizes = Arrays.copyOf(serverSizes, id + 1);
+        // Counter before name, so a lock-free reader that sees the name also sees its counter
+        serverCounts = append(serverCounts, new LongAdder());
+        serverNames = append(serverNames, serverName);
+        serverIds.put(serverName, id);
+        return id;
+    }
+
+    private int internGamemode(String gamemodeId) {
+        Integer existing = gamemodeIds.get(gamemodeId);
+        if (existing != null) return existing;
+
+        int id = gamemodeNames.length;
+        gamemodeCounts = append(gamemodeCounts, new LongAdder());
+        gamemodeNames = append(gamemodeNames, gamemodeId);
+        gamemodeIds.put(gamemodeId, id);
+        return id;
+    }
+
+    private void setGamemode(PlayerSession session, int gamemodeId) {
+        if (session.gamemodeId == gamemodeId) return;
+        if (session.gamemodeId != NO_GAMEMODE) {
+            gamemodeCounts[session.gamemodeId].decrement();
+        }
+        if (gamemodeId != NO_GAMEMODE) {
+            gamemodeCounts[gamemodeId].increment();
+        }
+        session.gamemodeId = gamemodeId;
+    }
+
+    private void joinServer(PlayerSession session, int serverId) {
+        PlayerSession[] sessions = serverSessions[serverId];
+        int count = serverSizes[serverId];
+        if (count == sessions.length) {
+            sessions = Arrays.copyOf(sessions, count * 2);
+            serverSessions[serverId] = sessions;
+        }
+        sessions[count] = session;
+        session.serverSlot = count;
+        serverSizes[serverId] = count + 1;
+        serverCounts[serverId].increment();
+        session.serverId = serverId;
+    }
+
+    private void leaveServer(PlayerSession session) {
+        int serverId = session.serverId;
+        if (serverId == NO_SERVER) return;
+
+        PlayerSession[] sessions = serverSessions[serverId];
+        int last = --serverSizes[serverId];
+        PlayerSession moved = sessions[last];
+        sessions[session.serverSlot] = moved;
+        moved.serverSlot = session.serverSlot;
+        sessions[last] = null;
+        serverCounts[serverId].decrement();
+        session.serverId = NO_SERVER;
+        session.serverSlot = -1;
+    }
+
+    private int find(long most, long least) {
+        int mask = table.length - 1;
+        for (int index = hash(most, least) & mask; ; index = (index + 1) & mask) {
+            PlayerSession session = table[index];
+            if (session == null) return -1;
+            if (session.playerMost == most && session.playerLeast == least) return index;
+        }
+    }
+
+    private static PlayerSession lookup(PlayerSession[] table, long most, long least) {
+        int mask = table.length - 1;
+        for (int index = hash(most, least) & mask; ; index = (index + 1) & mask) {
+            PlayerSession session = table[index];
+            if (session == null || session.playerMost == most && session.playerLeast == least) return session;
+        }
+    }
+
+    /**
+     * First free slot for the key in the given table (the key must not be present).
+     */
+    private int indexFor(long most, long least, int length) {
+        int mask = length - 1;
+        int index = hash(most, least) & mask;
+        while (table[index] != null) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * Removes the entry at the index and shifts later entries of the same probe run back,
+     * so lookups never need tombstones.
+     */
+    private void deleteAt(int index) {
+        int mask = table.length - 1;
+        int hole = index;
+        table[hole] = null;
+        for (int next = (hole + 1) & mask; table[next] != null; next = (next + 1) & mask) {
+            PlayerSession session = table[next];
+            int home = hash(session.playerMost, session.playerLeast) & mask;
+            // Move it into the hole unless its home slot lies cyclically in (hole, next]
+            boolean stays = hole <= next ? hole < home && home <= next : hole < home || home <= next;
+            if (!stays) {
+                table[hole] = session;
+                table[next] = null;
+                hole = next;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        PlayerSession[] old = table;
+        table = new PlayerSession[capacity];
+        for (PlayerSession session : old) {
+            if (session != null) {
+                table[indexFor(session.playerMost, session.playerLeast, capacity)] = session;
+            }
+        }
+    }
+
+    private static long count(String[] names, LongAdder[] counts, String name) {
+        for (int id = 0; id < names.length; id++) {
+            if (names[id].equals(name)) {
+                return counts[id].sum();
+            }
+        }
+        return 0;
+    }
+
+    private static Map<String, Integer> counts(String[] names, LongAdder[] counts) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int id = 0; id < names.length; id++) {
+            long count = counts[id].sum();
+            if (count > 0) {
+                result.put(names[id], (int) count);
+            }
+        }
+        return result;
+    }
+
+    private static String formatCounts(Map<String, Integer> counts) {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (builder.length() > 0) builder.append(", ");
+            builder.append(entry.getKey()).append(' ').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+
+    private static <T> T[] append(T[] array, T element) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = element;
+        return copy;
+    }
+
+    private static int hash(long most, long least) {
+        long h = most ^ least;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mctrack.common.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates UUIDv7s (RFC 9562): a 48-bit Unix millisecond timestamp followed by random bits,
+ * so IDs sort by creation time and land next to each other in ClickHouse's primary key.
+ *
+ * <p>Each thread keeps its own last timestamp and a 12-bit counter in the {@code rand_a} field,
+ * seeded randomly every millisecond, so IDs from one thread are strictly increasing even
+ * within a millisecond or when the clock steps back. Randomness comes from
+ * {@link ThreadLocalRandom}; there is no lock or shared state between threads.</p>
+ */
+final class UuidV7Generator implements SessionIdGenerator {
+    static final UuidV7Generator INSTANCE = new UuidV7Generator();
+
+    private static final long COUNTER_MASK = 0xFFF;
+
+    private static final class State {
+        long lastMillis;
+        long counter;
+    }
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    private UuidV7Generator() {
+    }
+
+    @Override
+    public UUID next() {
+        State state = STATE.get();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long millis = System.currentTimeMillis();
+        if (millis > state.lastMillis) {
+            state.lastMillis = millis;
+            // Top bit left clear so the counter has room to grow within the millisecond
+            state.counter = random.nextLong() & (COUNTER_MASK >>> 1);
+        } else if (++state.counter > COUNTER_MASK) {
+            // Counter exhausted (or the clock went back): borrow the next millisecond
+            state.lastMillis++;
+            state.counter = random.nextLong() & (COUNTER_MASK >>> 1);
+        }
+
+        long most = (state.lastMillis << 16) | 0x7000L | state.counter;
+        long least = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(most, least);
+    }
+}
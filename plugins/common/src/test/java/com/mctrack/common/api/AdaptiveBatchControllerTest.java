@@ -0,0 +1,73 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.config.MCTrackConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveBatchControllerTest {
+    @TempDir
+    Path directory;
+
+    private AdaptiveBatchController controller;
+
+    @BeforeEach
+    void start() throws IOException {
+        Path file = directory.resolve("config.yml");
+        Files.writeString(file, "adaptive-batching: true\n"
+            + "batch-size: 500\n");
+        controller = new AdaptiveBatchController(MCTrackConfig.load(file.toFile()));
+    }
+
+    @Test
+    void measuresTheBacklogAgainstTheServerLimit() {
+        assertEquals(AdaptiveBatchController.LEGACY_MAX_BATCH_EVENTS, controller.getBatchSize());
+
+        controller.adjust(150);
+
+        assertEquals("backlog", controller.getMode());
+        assertEquals(AdaptiveBatchController.LEGACY_MAX_BATCH_EVENTS, controller.getBatchSize());
+    }
+
+    @Test
+    void doesNotGrowPastTheServerLimitWhileBackingOff() {
+        for (int i = 0; i < 5; i++) {
+            controller.recordBatch(10, 0, false);
+            controller.adjust(0);
+            assertEquals("backoff", controller.getMode());
+        }
+
+        // Raising the limit starts from what was actually sent, not from growth hidden behind the cap
+        controller.setServerLimit(1000);
+        assertEquals(AdaptiveBatchController.LEGACY_MAX_BATCH_EVENTS, controller.getBatchSize());
+    }
+
+    @Test
+    void raisesALoweredLimitBackAfterSuccessfulSends() {
+        controller.limitBatchSize(25);
+        assertEquals(25, controller.getBatchSize());
+
+        for (int i = 1; i < AdaptiveBatchController.LIMIT_RECOVERY_BATCHES; i++) {
+            controller.recordBatch(25, 0, true);
+        }
+        // A failure restarts the run
+        controller.recordBatch(25, 0, false);
+        for (int i = 1; i < AdaptiveBatchController.LIMIT_RECOVERY_BATCHES; i++) {
+            controller.recordBatch(25, 0, true);
+        }
+        assertEquals(25, controller.getBatchSize());
+
+        controller.recordBatch(25, 0, true);
+        assertEquals(50, controller.getBatchSize());
+        for (int i = 0; i < 2 * AdaptiveBatchController.LIMIT_RECOVERY_BATCHES; i++) {
+            controller.recordBatch(50, 0, true);
+        }
+        assertEquals(AdaptiveBatchController.LEGACY_MAX_BATCH_EVENTS, controller.getBatchSize());
+    }
+}
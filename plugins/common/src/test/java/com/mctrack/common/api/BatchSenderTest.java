@@ -0,0 +1,169 @@
+package com.mctrack.common.api;
+
+import com.google.gson.Gson;
+import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.metrics.MetricsRegistry;
+import com.mctrack.common.model.ServerSwitchEvent;
+import com.mctrack.common.model.TrackedEvent;
+import com.mctrack.common.queue.EventPriority;
+import com.mctrack.common.queue.EventQueue;
+import com.mctrack.common.queue.OverflowPolicy;
+import com.mctrack.common.spool.DiskSpool;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSenderTest {
+    private static final int PARTITIONS = 2;
+
+    @TempDir
+    Path directory;
+
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch replayArrived = new CountDownLatch(1);
+    private final CountDownLatch releaseReplay = new CountDownLatch(1);
+    private volatile boolean failing = true;
+    private volatile String heldPlayer;
+
+    private HttpServer server;
+    private ScheduledExecutorService scheduler;
+    private DiskSpool spool;
+    private EventQueue<TrackedEvent> queue;
+    private BatchSender sender;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/session/batch", this::batch);
+        server.start();
+
+        Path file = directory.resolve("config.yml");
+        Files.writeString(file, "api-url: \"http://127.0.0.1:" + server.getAddress().getPort() + "\"\n"
+            + "api-key: \"test\"\n"
+            + "max-in-flight: " + PARTITIONS + "\n"
+            + "retry-max-attempts: 1\n"
+            + "coalesce-events: false\n");
+        MCTrackConfig config = MCTrackConfig.load(file.toFile());
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        spool = DiskSpool.open(directory.resolve("spool"), 4096, 1 << 20, false);
+        queue = new EventQueue<>(1024, OverflowPolicy.DROP_OLDEST, 0, event -> EventPriority.NORMAL);
+        sender = new BatchSender(config, message -> { }, new OkHttpClient(), queue, spool,
+            new JsonBatchEncoder(new Gson()), new AdaptiveBatchController(config), scheduler,
+            new PipelineMetrics(new MetricsRegistry()), () -> { });
+    }
+
+    @AfterEach
+    void stop() {
+        releaseReplay.countDown();
+        sender.close();
+        spool.close();
+        scheduler.shutdownNow();
+        server.stop(0);
+    }
+
+    private void batch(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (failing) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            String held = heldPlayer;
+            if (held != null && body.contains(held) && replayArrived.getCount() > 0) {
+                replayArrived.countDown();
+                try {
+                    releaseReplay.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            received.add(body);
+            exchange.sendResponseHeaders(200, -1);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+        }
+    }
+
+    private boolean delivered(String marker) {
+        return received.stream().anyMatch(body -> body.contains(marker));
+    }
+
+    private void track(String player, String toServer) {
+        queue.offer(new ServerSwitchEvent(UUID.randomUUID().toString(), player, "lobby", toServer));
+    }
+
+    @Test
+    void sendsOtherPlayersLiveWhileABacklogReplays() throws InterruptedException {
+        String spooledPlayer = UUID.randomUUID().toString();
+        String livePlayer;
+        do {
+            livePlayer = UUID.randomUUID().toString();
+        } while (Math.floorMod(livePlayer.hashCode(), PARTITIONS) == Math.floorMod(spooledPlayer.hashCode(), PARTITIONS));
+
+        // Ingestion is down, so the first batch ends up in the spool
+        track(spooledPlayer, "spooled");
+        sender.flush(true);
+        await(() -> spool.getPendingCount() == 1);
+
+        failing = false;
+        heldPlayer = spooledPlayer;
+        sender.flush(true);
+        assertTrue(replayArrived.await(10, TimeUnit.SECONDS));
+
+        // The replay is still in flight; only the spooled player's new events wait behind it
+        track(livePlayer, "live");
+        track(spooledPlayer, "after-replay");
+        sender.flush(true);
+        await(() -> delivered("live"));
+        assertFalse(delivered("spooled"));
+        assertFalse(delivered("after-replay"));
+
+        releaseReplay.countDown();
+        await(() -> spool.getPendingCount() == 0);
+        sender.flush(true);
+        await(() -> delivered("after-replay"));
+        assertTrue(delivered("spooled"));
+        assertEquals(3, received.size());
+    }
+
+    @Test
+    void spoolsWithoutSendingWhenNoTimeIsLeft() throws InterruptedException {
+        failing = false;
+        track(UUID.randomUUID().toString(), "late");
+
+        sender.drain(System.nanoTime());
+        sender.close();
+
+        assertEquals(1, spool.getPendingCount());
+        Thread.sleep(200);
+        assertTrue(received.isEmpty());
+    }
+}
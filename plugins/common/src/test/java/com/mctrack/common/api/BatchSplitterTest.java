@@ -0,0 +1,123 @@
+package com.mctrack.common.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mctrack.common.model.*;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSplitterTest {
+    private static final String PLAYER_A = "7d2a4c9e-1b3f-4e8a-9c6d-2f5b8e1a3c7d";
+    private static final String PLAYER_B = "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0";
+    private static final long TIME = 1_700_000_000_000L;
+
+    private static BatchPayload payload() {
+        Map<String, List<String>> servers = new LinkedHashMap<>();
+        servers.put("lobby", List.of("11111111-2222-3333-4444-555555555555"));
+        servers.put("survival", List.of("not-a-uuid"));
+        return new BatchPayload("network", "proxy",
+            List.of(new SessionStartEvent("aaaaaaaa-0000-0000-0000-000000000001", PLAYER_A, "Alice", Platform.JAVA,
+                null, "10.0.0.1", "play.example.com", "lobby", null, TIME)),
+            List.of(new SessionEndEvent("session-b", PLAYER_B, TIME + 5000)),
+            List.of(new SessionHeartbeatEvent("aaaaaaaa-0000-0000-0000-000000000001", PLAYER_A, "lobby", "skywars")),
+            List.of(new PresenceSnapshot(servers)),
+            List.of(new ServerSwitchEvent("session-b", PLAYER_B, "lobby", "survival", TIME + 1000)),
+            List.of(new GamemodeChangeEvent("aaaaaaaa-0000-0000-0000-000000000001", PLAYER_A, null, "skywars")),
+            List.of(new PaymentEvent("bbbbbbbb-0000-0000-0000-000000000002", PLAYER_B, "Bob", 9.99, "EUR", "tebex",
+                "tx-1", List.of(new PaymentProduct("Rank", 1, 9.99), new PaymentProduct("Key", -2)))),
+            List.of(new GamemodeSessionStartEvent("cccccccc-0000-0000-0000-000000000003", PLAYER_A, "Alice",
+                "skywars", "lobby", null, "JAVA", null)),
+            List.of(new GamemodeSessionEndEvent("cccccccc-0000-0000-0000-000000000003", PLAYER_A)),
+            null);
+    }
+
+    private static byte[] encode(BatchEncoder encoder, BatchPayload payload) throws IOException {
+        BatchBuffer out = new BatchBuffer(256);
+        encoder.encode(payload, out);
+        byte[] bytes = new byte[out.size()];
+        System.arraycopy(out.array(), 0, bytes, 0, out.size());
+        return bytes;
+    }
+
+    private static JsonObject json(BatchPayload payload) throws IOException {
+        byte[] bytes = encode(new JsonBatchEncoder(new Gson()), payload);
+        return JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    @Test
+    void binaryDecodesToTheJsonBody() throws IOException {
+        BatchPayload payload = payload();
+        byte[] binary = encode(new BinaryBatchEncoder(), payload);
+
+        assertEquals(json(payload), BinaryBatchDecoder.decode(binary, 0, binary.length));
+    }
+
+    @Test
+    void decoderRejectsTruncatedBatches() throws IOException {
+        byte[] binary = encode(new BinaryBatchEncoder(), payload());
+
+        assertThrows(IOException.class, () -> BinaryBatchDecoder.decode(binary, 0, binary.length - 1));
+    }
+
+    @Test
+    void splitKeepsEachPlayerInOnePart() throws IOException {
+        byte[] binary = encode(new BinaryBatchEncoder(), payload());
+
+        List<byte[]> parts = BatchSplitter.split(BinaryBatchEncoder.SPOOL_TYPE, binary);
+
+        assertEquals(2, parts.size());
+        JsonObject first = JsonParser.parseString(new String(parts.get(0), StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonObject second = JsonParser.parseString(new String(parts.get(1), StandardCharsets.UTF_8)).getAsJsonObject();
+        assertEquals(List.of(PLAYER_A), players(first));
+        assertEquals(List.of(PLAYER_B), players(second));
+        assertEquals("network", first.get("networkId").getAsString());
+        assertEquals("network", second.get("networkId").getAsString());
+        assertEquals(1, (first.has("presence") ? 1 : 0) + (second.has("presence") ? 1 : 0));
+    }
+
+    @Test
+    void singlePlayerBatchCannotBeSplit() throws IOException {
+        BatchPayload payload = new BatchPayload("network", "proxy", null, null,
+            List.of(new SessionHeartbeatEvent("s", PLAYER_A, "lobby", null),
+                new SessionHeartbeatEvent("s", PLAYER_A, "lobby", null)),
+            null, null, null, null, null, null, null);
+
+        assertTrue(BatchSplitter.split(JsonBatchEncoder.SPOOL_TYPE, encode(new JsonBatchEncoder(new Gson()), payload)).isEmpty());
+    }
+
+    @Test
+    void classifiesIngestionErrors() {
+        assertTrue(new ApiException(401, "{\"error\":\"INVALID_API_KEY\"}", 0).isAuthFailure());
+        assertTrue(new ApiException(413, "", 0).isTooLarge());
+        assertTrue(new ApiException(400, "{\"error\":\"BATCH_TOO_LARGE\"}", 0).isTooLarge());
+
+        ApiException invalid = new ApiException(400, "{\"error\":\"VALIDATION_ERROR\"}", 0);
+        assertFalse(invalid.isTooLarge());
+        assertEquals("validation_error", invalid.getRejectionCause());
+        assertEquals("http_422", new ApiException(422, "<html>", 0).getRejectionCause());
+    }
+
+    private static List<String> players(JsonObject body) {
+        List<String> players = new ArrayList<>();
+        body.entrySet().forEach(section -> {
+            if (!section.getValue().isJsonArray()) return;
+            for (var row : (JsonArray) section.getValue()) {
+                var player = row.getAsJsonObject().get("playerUuid");
+                if (player != null && !players.contains(player.getAsString())) {
+                    players.add(player.getAsString());
+                }
+            }
+        });
+        return players;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mctrack.common.api;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins the binary wire format to a fixture shared with ingestion's decoder test
+ * ({@code apps/ingestion/test/batch-codec.test.ts}). The JSON file is the source of truth;
+ * after an intentional format change, regenerate the bytes with
+ * {@code MCTRACK_UPDATE_GOLDEN=1 gradle :common:test}.
+ */
+class BinaryBatchGoldenTest {
+    private static final Path FIXTURES = Path.of("..", "..", "apps", "ingestion", "test", "fixtures");
+    private static final Path JSON = FIXTURES.resolve("golden-batch.json");
+    private static final Path BINARY = FIXTURES.resolve("golden-batch.bin");
+
+    private static byte[] encodeFixture() throws IOException {
+        BatchPayload payload = new Gson().fromJson(Files.readString(JSON, StandardCharsets.UTF_8), BatchPayload.class);
+        BatchBuffer out = new BatchBuffer(1024);
+        new BinaryBatchEncoder().encode(payload, out);
+        return Arrays.copyOf(out.array(), out.size());
+    }
+
+    @Test
+    void encodesFixtureToGoldenBytes() throws IOException {
+        byte[] encoded = encodeFixture();
+        if (System.getenv("MCTRACK_UPDATE_GOLDEN") != null) {
+            Files.write(BINARY, encoded);
+        }
+
+        assertArrayEquals(Files.readAllBytes(BINARY), encoded);
+    }
+
+    @Test
+    void goldenBytesDecodeToFixture() throws IOException {
+        byte[] golden = Files.readAllBytes(BINARY);
+
+        assertEquals(JsonParser.parseString(Files.readString(JSON, StandardCharsets.UTF_8)),
+            BinaryBatchDecoder.decode(golden, 0, golden.length));
+    }
+}
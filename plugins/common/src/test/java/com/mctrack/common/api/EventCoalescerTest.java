@@ -0,0 +1,132 @@
+package com.mctrack.common.api;
+
+import com.mctrack.common.model.*;
+import com.mctrack.common.queue.EventQueue;
+import com.mctrack.common.queue.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventCoalescerTest {
+    private static final String PLAYER = "7d2a4c9e-1b3f-4e8a-9c6d-2f5b8e1a3c7d";
+    private static final String SESSION = "aaaaaaaa-0000-0000-0000-000000000001";
+    private static final long TIME = 1_700_000_000_000L;
+
+    private final EventCoalescer coalescer = new EventCoalescer();
+
+    private static SessionStartEvent start(String session) {
+        return new SessionStartEvent(session, PLAYER, "Alice", Platform.JAVA, null, null, null, "lobby", null, TIME);
+    }
+
+    private static SessionEndEvent end(String session) {
+        return new SessionEndEvent(session, PLAYER, TIME + 60_000);
+    }
+
+    private static SessionHeartbeatEvent heartbeat(String session) {
+        return new SessionHeartbeatEvent(session, PLAYER, "lobby", null);
+    }
+
+    private static ServerSwitchEvent switchAt(String from, String to, long offsetMs) {
+        return new ServerSwitchEvent(SESSION, PLAYER, from, to, TIME + offsetMs);
+    }
+
+    @Test
+    void keepsOnlyTheNewestHeartbeatOfEachSession() {
+        SessionHeartbeatEvent first = heartbeat(SESSION);
+        SessionHeartbeatEvent other = heartbeat("other");
+        SessionHeartbeatEvent last = heartbeat(SESSION);
+
+        assertEquals(List.of(other, last), coalescer.coalesce(List.of(first, other, last), false));
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void dropsHeartbeatsAfterTheSessionEnded() {
+        SessionEndEvent end = end(SESSION);
+
+        assertEquals(List.of(end), coalescer.coalesce(List.of(end, heartbeat(SESSION)), false));
+    }
+
+    @Test
+    void mergesRapidSwitchesIntoOne() {
+        List<TrackedEvent> result = coalescer.coalesce(List.of(
+            switchAt("lobby", "hub", 0),
+            switchAt("hub", "survival", 1000)), false);
+
+        assertEquals(1, result.size());
+        ServerSwitchEvent merged = (ServerSwitchEvent) result.get(0);
+        assertEquals("lobby", merged.getFromServer());
+        assertEquals("survival", merged.getToServer());
+        assertEquals(TIME + 1000, merged.getTimestamp());
+        assertEquals(1, coalescer.getMergedSwitchCount());
+    }
+
+    @Test
+    void keepsSwitchesFurtherApart() {
+        List<TrackedEvent> events = List.of(
+            switchAt("lobby", "hub", 0),
+            switchAt("hub", "survival", EventCoalescer.RAPID_SWITCH_MS));
+
+        assertEquals(events, coalescer.coalesce(events, false));
+    }
+
+    @Test
+    void keepsRoundTripAsTwoSwitches() {
+        List<TrackedEvent> events = List.of(
+            switchAt("lobby", "hub", 0),
+            switchAt("hub", "lobby", 1000));
+
+        assertEquals(events, coalescer.coalesce(events, false));
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    void foldsSessionWithOnlyHeartbeatsIntoCompletedSession() {
+        SessionStartEvent start = start(SESSION);
+        SessionEndEvent end = end(SESSION);
+
+        List<TrackedEvent> result = coalescer.coalesce(List.of(start, heartbeat(SESSION), end), true);
+
+        assertEquals(1, result.size());
+        CompletedSession completed = (CompletedSession) result.get(0);
+        assertEquals(SESSION, completed.getSessionUuid());
+        assertEquals(start.getTimestamp(), completed.getTimestamp());
+        assertEquals(end.getTimestamp(), completed.getEndTimestamp());
+    }
+
+    @Test
+    void doesNotFoldWithoutServerSupportOrAfterASwitch() {
+        List<TrackedEvent> unsupported = List.of(start(SESSION), end(SESSION));
+        assertEquals(unsupported, coalescer.coalesce(unsupported, false));
+
+        List<TrackedEvent> switched = List.of(start(SESSION), switchAt("lobby", "hub", 1000), end(SESSION));
+        assertEquals(switched, coalescer.coalesce(switched, true));
+    }
+
+    @Test
+    void foldsEventsQueuedInDifferentLanes() {
+        // Start and end go to the critical lane, heartbeats to bulk, switches to normal
+        EventQueue<TrackedEvent> queue = new EventQueue<>(16, OverflowPolicy.DROP_OLDEST, 0, MCTrackAPI::priorityOf);
+        SessionStartEvent start = start(SESSION);
+        ServerSwitchEvent hop = new ServerSwitchEvent("other", PLAYER, "lobby", "hub", TIME);
+        SessionEndEvent end = end(SESSION);
+        queue.offer(start);
+        queue.offer(heartbeat(SESSION));
+        queue.offer(hop);
+        queue.offer(heartbeat(SESSION));
+        queue.offer(end);
+
+        List<TrackedEvent> polled = new ArrayList<>();
+        for (TrackedEvent event; (event = queue.poll()) != null; ) {
+            polled.add(event);
+        }
+        List<TrackedEvent> result = coalescer.coalesce(polled, true);
+
+        assertEquals(2, result.size());
+        assertInstanceOf(CompletedSession.class, result.get(0));
+        assertSame(hop, result.get(1));
+    }
+}
@@ -0,0 +1,111 @@
+package com.mctrack.common.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventQueueTest {
+
+    private static EventQueue<String> queue(int capacity, OverflowPolicy policy) {
+        // "c..." critical, "n..." normal, anything else bulk
+        return new EventQueue<>(capacity, policy, 0, event -> event.startsWith("c") ? EventPriority.CRITICAL
+            : event.startsWith("n") ? EventPriority.NORMAL
+            : EventPriority.BULK);
+    }
+
+    private static List<String> drain(EventQueue<String> queue) {
+        List<String> events = new ArrayList<>();
+        for (String event; (event = queue.poll()) != null; ) {
+            events.add(event);
+        }
+        return events;
+    }
+
+    @Test
+    void pollKeepsQueueOrderAcrossLanes() {
+        EventQueue<String> queue = queue(16, OverflowPolicy.DROP_OLDEST);
+        List<String> offered = List.of("c-start", "b-heartbeat", "n-switch", "b-heartbeat2", "n-switch2", "c-end");
+        for (String event : offered) {
+            assertTrue(queue.offer(event));
+        }
+
+        assertEquals(offered, drain(queue));
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void dropOldestEvictsLowestLaneFirst() {
+        EventQueue<String> queue = queue(4, OverflowPolicy.DROP_OLDEST);
+        queue.offer("b1");
+        queue.offer("c1");
+        queue.offer("n1");
+        queue.offer("b2");
+
+        assertTrue(queue.offer("c2"));
+        assertTrue(queue.offer("n2"));
+
+        assertEquals(List.of("c1", "n1", "c2", "n2"), drain(queue));
+        assertEquals(2, queue.getDroppedCount());
+    }
+
+    @Test
+    void offerIfRoomNeverEvicts() {
+        EventQueue<String> queue = queue(2, OverflowPolicy.DROP_OLDEST);
+        queue.offer("b1");
+        queue.offer("n1");
+
+        assertFalse(queue.offerIfRoom("c1"));
+
+        assertEquals(List.of("b1", "n1"), drain(queue));
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals(1, queue.getRejectedCount());
+    }
+
+    @Test
+    void dropOldestShedsEventsThatWouldDisplaceHigherLanes() {
+        EventQueue<String> queue = queue(2, OverflowPolicy.DROP_OLDEST);
+        queue.offer("c1");
+        queue.offer("c2");
+
+        assertFalse(queue.offer("b1"));
+        assertEquals(List.of("c1", "c2"), drain(queue));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    void fullLowerLaneShedsItsOwnOldestEvent() {
+        EventQueue<String> queue = queue(8, OverflowPolicy.DROP_OLDEST);
+        queue.offer("c1");
+        queue.offer("b1");
+        queue.offer("b2");
+
+        // The bulk lane holds a quarter of the capacity
+        assertTrue(queue.offer("b3"));
+        assertEquals(List.of("c1", "b2", "b3"), drain(queue));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    void criticalLaneCanUseWholeCapacity() {
+        EventQueue<String> queue = queue(8, OverflowPolicy.REJECT);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer("c" + i));
+        }
+        assertFalse(queue.offer("c8"));
+        assertEquals(8, queue.size(EventPriority.CRITICAL));
+    }
+
+    @Test
+    void rejectPolicyRefusesWhenFull() {
+        EventQueue<String> queue = queue(2, OverflowPolicy.REJECT);
+        queue.offer("b1");
+        queue.offer("b2");
+
+        assertFalse(queue.offer("c1"));
+        assertEquals(1, queue.getRejectedCount());
+        assertEquals(2, queue.size());
+    }
+}
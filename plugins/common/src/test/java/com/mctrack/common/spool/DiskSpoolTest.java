@@ -0,0 +1,58 @@
+package com.mctrack.common.spool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskSpoolTest {
+    private static final byte TYPE = 1;
+
+    @TempDir
+    Path directory;
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".spool")).count();
+        }
+    }
+
+    private static byte[] record(int i) {
+        byte[] data = new byte[1000];
+        data[0] = (byte) i;
+        return data;
+    }
+
+    @Test
+    void deletesAckedSegmentsAndKeepsReadingAfterThem() throws IOException {
+        DiskSpool spool = DiskSpool.open(directory, 4096, 1 << 20, false);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(spool.append(TYPE, record(i)));
+        }
+        assertEquals(3, segmentFiles());
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals((byte) i, spool.peek().getData()[0]);
+            spool.ack();
+        }
+
+        assertEquals(1, segmentFiles());
+        assertEquals(2, spool.getPendingCount());
+        assertEquals((byte) 8, spool.peek().getData()[0]);
+        List<DiskSpool.Entry> ahead = spool.peek(1, 5);
+        assertEquals(1, ahead.size());
+        assertEquals((byte) 9, ahead.get(0).getData()[0]);
+        spool.close();
+
+        DiskSpool reopened = DiskSpool.open(directory, 4096, 1 << 20, false);
+        assertEquals(2, reopened.getPendingCount());
+        assertEquals((byte) 8, reopened.peek().getData()[0]);
+        reopened.close();
+    }
+}
@@ -0,0 +1,83 @@
+package com.mctrack.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+
+    @Test
+    void findsSessionsAcrossResizesAndRemovals() {
+        SessionStore store = new SessionStore();
+        List<UUID> players = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            UUID player = UUID.randomUUID();
+            players.add(player);
+            store.createSession(player, "p" + i);
+        }
+        for (int i = 0; i < players.size(); i += 2) {
+            assertNotNull(store.removeSession(players.get(i)));
+        }
+
+        for (int i = 0; i < players.size(); i++) {
+            PlayerSession session = store.getSession(players.get(i));
+            if (i % 2 == 0) {
+                assertNull(session);
+            } else {
+                assertEquals(players.get(i), session.getPlayerUuid());
+            }
+        }
+        assertEquals(250, store.getOnlineCount());
+    }
+
+    @Test
+    void lookupsSeeStablePlayersWhileOthersChurn() throws InterruptedException {
+        SessionStore store = new SessionStore();
+        List<UUID> stable = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            UUID player = UUID.randomUUID();
+            stable.add(player);
+            store.createSession(player, "stable" + i);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                for (UUID player : stable) {
+                    if (store.getSession(player) == null) {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int round = 0; round < 200; round++) {
+            List<UUID> churn = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                UUID player = UUID.randomUUID();
+                churn.add(player);
+                store.createSession(player, "churn");
+            }
+            churn.forEach(store::removeSession);
+        }
+        running.set(false);
+        reader.join();
+
+        assertEquals(0, misses.get());
+    }
+
+    @Test
+    void sessionIdIsFormattedOnce() {
+        PlayerSession session = new SessionStore().createSession(UUID.randomUUID(), "player");
+
+        assertSame(session.getSessionUuid(), session.getSessionUuid());
+        assertSame(session.getGamemodeSessionUuid(), session.getGamemodeSessionUuid());
+    }
+}
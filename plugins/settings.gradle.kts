@@ -4,3 +4,4 @@ include("common")
 include("spigot")
 include("velocity")
 include("bungeecord")
+include("benchmarks")
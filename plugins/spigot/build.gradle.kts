@@ -10,8 +10,8 @@ repositories {
 dependencies {
     implementation(project(":common"))
 
-    // Spigot API
-    compileOnly("org.spigotmc:spigot-api:1.20.4-R0.1-SNAPSHOT")
+    // Paper API: the Spigot API plus the Folia schedulers (only used when running on Folia)
+    compileOnly("io.papermc.paper:paper-api:1.20.4-R0.1-SNAPSHOT")
 }
 
 tasks {
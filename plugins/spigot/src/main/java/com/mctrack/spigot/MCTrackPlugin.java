@@ -4,8 +4,10 @@ import com.mctrack.common.api.MCTrackAPI;
 import com.mctrack.common.config.MCTrackConfig;
 import com.mctrack.common.model.*;
 import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
+import com.mctrack.common.util.SessionStore;
+import com.mctrack.spigot.capture.CapturePipeline;
 import com.mctrack.spigot.listener.PlayerListener;
+import com.mctrack.spigot.scheduler.TaskScheduler;
 import com.mctrack.spigot.task.HeartbeatTask;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
@@ -13,22 +15,35 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class MCTrackPlugin extends JavaPlugin {
 
-    private MCTrackConfig config;
-    private MCTrackAPI api;
-    private HeartbeatTask heartbeatTask;
+    private final SessionStore sessionStore = new SessionStore();
+    // Replaced by /mctrack reload while the capture worker, timers and (on Folia) region threads read them
+    private volatile MCTrackConfig config;
+    private volatile MCTrackAPI api;
+    private CapturePipeline capturePipeline;
+    private TaskScheduler scheduler;
+    private TaskScheduler.Task heartbeatTask;
 
     @Override
     public void onEnable() {
         // Load configuration
         loadConfiguration();
 
+        // Bukkit or Folia scheduling
+        scheduler = TaskScheduler.create(this);
+
         // Initialize API
-        api = new MCTrackAPI(config, message -> getLogger().info(message));
+        api = new MCTrackAPI(config, message -> getLogger().info(message), getDataFolder());
         api.start();
 
+        // Start tracking worker
+        capturePipeline = new CapturePipeline(this);
+        capturePipeline.start();
+
         // Register listeners
         getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
 
@@ -43,12 +58,17 @@ public class MCTrackPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        // Finish tracking joins and quits that already happened
+        if (capturePipeline != null) {
+            capturePipeline.stop(config.getShutdownTimeoutMs());
+        }
+
         // End all sessions
         endAllSessions();
 
         // Stop heartbeat
-        if (heartbeatTask != null) {
-            heartbeatTask.cancel();
+        if (scheduler != null) {
+            scheduler.cancelTasks();
         }
 
         // Stop API
@@ -57,7 +77,7 @@ public class MCTrackPlugin extends JavaPlugin {
         }
 
         // Clear sessions
-        SessionManager.clear();
+        sessionStore.clear();
 
         getLogger().info("MCTrack disabled!");
     }
@@ -76,7 +96,7 @@ public class MCTrackPlugin extends JavaPlugin {
                 case "reload":
                     loadConfiguration();
                     api.stop();
-                    api = new MCTrackAPI(config, message -> getLogger().info(message));
+                    api = new MCTrackAPI(config, message -> getLogger().info(message), getDataFolder());
                     api.start();
                     sender.sendMessage("§aMCTrack configuration reloaded!");
                     break;
@@ -84,8 +104,14 @@ public class MCTrackPlugin extends JavaPlugin {
                     sender.sendMessage("§6MCTrack Status:");
                     sender.sendMessage("§7  Configured: " + (config.isConfigured() ? "§aYes" : "§cNo"));
                     sender.sendMessage("§7  Server Name: §f" + config.getServerName());
-                    sender.sendMessage("§7  Online Players: §f" + SessionManager.getOnlineCount());
+                    sender.sendMessage("§7  Online Players: §f" + sessionStore.getOnlineCount());
+                    for (Map.Entry<String, String> entry : sessionStore.getStatus().entrySet()) {
+                        sender.sendMessage("§7  " + entry.getKey() + ": §f" + entry.getValue());
+                    }
                     sender.sendMessage("§7  Debug Mode: " + (config.isDebug() ? "§aEnabled" : "§7Disabled"));
+                    for (Map.Entry<String, String> entry : api.getStatus().entrySet()) {
+                        sender.sendMessage("§7  " + entry.getKey() + ": §f" + entry.getValue());
+                    }
                     break;
                 default:
                     sender.sendMessage("§6MCTrack Commands:");
@@ -108,52 +134,19 @@ public class MCTrackPlugin extends JavaPlugin {
         if (heartbeatTask != null) {
             heartbeatTask.cancel();
         }
-        heartbeatTask = new HeartbeatTask(this);
-        heartbeatTask.runTaskTimerAsynchronously(
-            this,
-            config.getHeartbeatInterval() * 20L,
-            config.getHeartbeatInterval() * 20L
-        );
+        heartbeatTask = scheduler.runAsyncTimer(new HeartbeatTask(this), config.getHeartbeatInterval(), TimeUnit.SECONDS);
     }
 
     private void trackOnlinePlayers() {
-        for (Player player : getServer().getOnlinePlayers()) {
-            PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getName());
-            session.setCurrentServer(config.getServerName());
-
-            // Track network session if no-proxy mode
-            if (config.isNoProxy()) {
-                api.trackSessionStart(new SessionStartEvent(
-                    session.getSessionUuid(),
-                    player.getUniqueId().toString(),
-                    player.getName(),
-                    Platform.JAVA,
-                    null,
-                    null,
-                    null,
-                    config.getServerName(),
-                    null
-                ));
+        scheduler.runGlobal(() -> {
+            for (Player player : getServer().getOnlinePlayers()) {
+                capturePipeline.publishJoin(player.getUniqueId(), player.getName(), null);
             }
-
-            // Track gamemode session if API key is scoped to a gamemode
-            if (config.hasGamemode()) {
-                api.trackGamemodeSessionStart(new GamemodeSessionStartEvent(
-                    session.getGamemodeSessionUuid(),
-                    player.getUniqueId().toString(),
-                    player.getName(),
-                    config.getGamemodeId(),
-                    config.getServerName(),
-                    null,
-                    Platform.JAVA.name().toLowerCase(),
-                    null
-                ));
-            }
-        }
+        });
     }
 
     private void endAllSessions() {
-        for (PlayerSession session : SessionManager.getAllSessions()) {
+        for (PlayerSession session : sessionStore.getAllSessions()) {
             // End network session if no-proxy mode
             if (config.isNoProxy()) {
                 api.trackSessionEnd(new SessionEndEvent(
@@ -162,8 +155,8 @@ public class MCTrackPlugin extends JavaPlugin {
                 ));
             }
 
-            // End gamemode session if API key is scoped to a gamemode
-            if (config.hasGamemode()) {
+            // End gamemode session if API key is scoped to a gamemode (or the scope is not known yet)
+            if (config.tracksGamemodeSessions()) {
                 api.trackGamemodeSessionEnd(new GamemodeSessionEndEvent(
                     session.getGamemodeSessionUuid(),
                     session.getPlayerUuid().toString()
@@ -179,4 +172,12 @@ public class MCTrackPlugin extends JavaPlugin {
     public MCTrackAPI getApi() {
         return api;
     }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
+    public CapturePipeline getCapturePipeline() {
+        return capturePipeline;
+    }
 }
@@ -0,0 +1,256 @@
+package com.mctrack.spigot.capture;
+
+import com.mctrack.common.config.MCTrackConfig;
+import com.mctrack.common.model.*;
+import com.mctrack.common.util.JoinDomains;
+import com.mctrack.common.util.PlayerSession;
+import com.mctrack.common.util.SessionStore;
+import com.mctrack.spigot.MCTrackPlugin;
+
+import java.net.InetAddress;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves session tracking off the server thread.
+ *
+ * <p>Event handlers only publish a small immutable capture into a lock-free queue. One worker
+ * thread then updates the {@link SessionStore}, builds and enriches the events and hands them to
+ * the API, in publish order. Timestamps are taken at publish time, so the delay does not show
+ * up in the data.</p>
+ */
+public class CapturePipeline {
+
+    private enum Type { LOGIN, JOIN, QUIT }
+
+    private static final class Capture {
+        final Type type;
+        final UUID playerUuid;
+        final String playerName;
+        final InetAddress address;
+        final String hostname;
+        final long timestamp;
+
+        Capture(Type type, UUID playerUuid, String playerName, InetAddress address, String hostname) {
+            this.type = type;
+            this.playerUuid = playerUuid;
+            this.playerName = playerName;
+            this.address = address;
+            this.hostname = hostname;
+            this.timestamp = System.currentTimeMillis();
+        }
+    }
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // A join follows its login within a tick or two; older logins were disconnected before joining
+    private static final long LOGIN_EXPIRY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final MCTrackPlugin plugin;
+    private final Queue<Capture> queue = new ConcurrentLinkedQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    // Worker thread only: logins in arrival order, until the matching join or quit, or expiry
+    // for players disconnected before they joined (no quit is fired for them)
+    private final Map<UUID, Capture> pendingLogins = new LinkedHashMap<>();
+
+    public CapturePipeline(MCTrackPlugin plugin) {
+        this.plugin = plugin;
+        this.worker = new Thread(this::run, "MCTrack Capture");
+        this.worker.setDaemon(true);
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    /**
+     * Processes everything already published, then stops the worker.
+     */
+    public void stop(long timeoutMs) {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(timeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            plugin.getLogger().warning("[MCTrack] Capture worker did not finish within " + timeoutMs + " ms, "
+                + queue.size() + " player events not tracked");
+        }
+    }
+
+    public void publishLogin(UUID playerUuid, String hostname) {
+        publish(new Capture(Type.LOGIN, playerUuid, null, null, hostname));
+    }
+
+    /**
+     * @param address the player's address, or null if it should not be recorded
+     */
+    public void publishJoin(UUID playerUuid, String playerName, InetAddress address) {
+        publish(new Capture(Type.JOIN, playerUuid, playerName, address, null));
+    }
+
+    public void publishQuit(UUID playerUuid, String playerName) {
+        publish(new Capture(Type.QUIT, playerUuid, playerName, null, null));
+    }
+
+    private void publish(Capture capture) {
+        queue.offer(capture);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Capture capture = queue.poll();
+            if (capture == null) {
+                if (!running) return;
+                idle = true;
+                // Re-check after announcing idleness, or a publish in between could be missed
+                if (queue.isEmpty() && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                idle = false;
+                continue;
+            }
+
+            try {
+                process(capture);
+            } catch (RuntimeException e) {
+                plugin.getLogger().warning("[MCTrack] Failed to track " + capture.type.name().toLowerCase()
+                    + " of " + capture.playerUuid + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void process(Capture capture) {
+        switch (capture.type) {
+            case LOGIN:
+                expireLogins(capture.timestamp);
+                // Re-inserted so the map stays in arrival order
+                pendingLogins.remove(capture.playerUuid);
+                pendingLogins.put(capture.playerUuid, capture);
+                break;
+            case JOIN:
+                join(capture);
+                break;
+            case QUIT:
+                quit(capture);
+                break;
+        }
+    }
+
+    private void expireLogins(long now) {
+        Iterator<Capture> logins = pendingLogins.values().iterator();
+        while (logins.hasNext() && now - logins.next().timestamp >= LOGIN_EXPIRY_MS) {
+            logins.remove();
+        }
+    }
+
+    private void join(Capture capture) {
+        MCTrackConfig config = plugin.getMCTrackConfig();
+        SessionStore sessions = plugin.getSessionStore();
+
+        PlayerSession session = sessions.createSession(capture.playerUuid, capture.playerName);
+        sessions.updateServer(capture.playerUuid, config.getServerName());
+        sessions.updateGamemode(capture.playerUuid, config.getGamemodeId());
+
+        String playerUuid = capture.playerUuid.toString();
+        String ipAddress = config.isTrackIpAddresses() && capture.address != null
+            ? capture.address.getHostAddress()
+            : null;
+        Capture login = pendingLogins.remove(capture.playerUuid);
+        String joinDomain = JoinDomains.normalize(login != null ? login.hostname : null);
+
+        // Track network session if no-proxy mode (standalone server)
+        if (config.isNoProxy()) {
+            plugin.getApi().trackSessionStart(new SessionStartEvent(
+                session.getSessionUuid(),
+                playerUuid,
+                capture.playerName,
+                Platform.JAVA,
+                null,
+                ipAddress,
+                joinDomain,
+                config.getServerName(),
+                null,
+                capture.timestamp
+            ));
+
+            if (config.isDebug()) {
+                plugin.getLogger().info("[MCTrack] Network session started for " + capture.playerName);
+            }
+        }
+
+        // Track gamemode session if API key is scoped to a gamemode (or the scope is not known yet)
+        if (config.tracksGamemodeSessions()) {
+            plugin.getApi().trackGamemodeSessionStart(new GamemodeSessionStartEvent(
+                session.getGamemodeSessionUuid(),
+                playerUuid,
+                capture.playerName,
+                config.getGamemodeId(),
+                config.getServerName(),
+                ipAddress,
+                Platform.JAVA.name().toLowerCase(),
+                null
+            ));
+
+            if (config.isDebug()) {
+                plugin.getLogger().info("[MCTrack] Gamemode session started for " + capture.playerName);
+            }
+        }
+
+        if (config.isDebug()) {
+            plugin.getLogger().info("[MCTrack] Player " + capture.playerName + " joined - Session: " + session.getSessionUuid());
+        }
+    }
+
+    private void quit(Capture capture) {
+        MCTrackConfig config = plugin.getMCTrackConfig();
+
+        pendingLogins.remove(capture.playerUuid);
+        PlayerSession session = plugin.getSessionStore().removeSession(capture.playerUuid);
+        if (session == null) return;
+
+        String playerUuid = capture.playerUuid.toString();
+
+        // End network session if no-proxy mode
+        if (config.isNoProxy()) {
+            plugin.getApi().trackSessionEnd(new SessionEndEvent(
+                session.getSessionUuid(),
+                playerUuid,
+                capture.timestamp
+            ));
+
+            if (config.isDebug()) {
+                plugin.getLogger().info("[MCTrack] Network session ended for " + capture.playerName);
+            }
+        }
+
+        // End gamemode session if API key is scoped to a gamemode (or the scope is not known yet)
+        if (config.tracksGamemodeSessions()) {
+            plugin.getApi().trackGamemodeSessionEnd(new GamemodeSessionEndEvent(
+                session.getGamemodeSessionUuid(),
+                playerUuid
+            ));
+
+            if (config.isDebug()) {
+                plugin.getLogger().info("[MCTrack] Gamemode session ended for " + capture.playerName);
+            }
+        }
+
+        if (config.isDebug()) {
+            plugin.getLogger().info("[MCTrack] Player " + capture.playerName + " quit - Session: " + session.getSessionUuid());
+        }
+    }
+}
@@ -1,17 +1,20 @@
 package com.mctrack.spigot.listener;
 
 import com.mctrack.common.config.MCTrackConfig;
-import com.mctrack.common.model.*;
-import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
 import com.mctrack.spigot.MCTrackPlugin;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.net.InetSocketAddress;
+
+/**
+ * Publishes joins and quits to the capture pipeline; all tracking work happens off the server thread.
+ */
 public class PlayerListener implements Listener {
 
     private final MCTrackPlugin plugin;
@@ -21,103 +24,30 @@ public class PlayerListener implements Listener {
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
-    public void onPlayerJoin(PlayerJoinEvent event) {
-        Player player = event.getPlayer();
+    public void onPlayerLogin(PlayerLoginEvent event) {
         MCTrackConfig config = plugin.getMCTrackConfig();
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) return;
+        if (!config.isNoProxy() || !config.isTrackJoinDomain()) return;
 
-        // Create session
-        PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getName());
-        session.setCurrentServer(config.getServerName());
-
-        // Get IP address if configured
-        String ipAddress = null;
-        if (config.isTrackIpAddresses() && player.getAddress() != null) {
-            ipAddress = player.getAddress().getAddress().getHostAddress();
-        }
-
-        // Track network session if no-proxy mode (standalone server)
-        if (config.isNoProxy()) {
-            String joinDomain = null;
-            if (config.isTrackJoinDomain() && player.getAddress() != null) {
-                joinDomain = player.getAddress().getHostName();
-            }
-
-            plugin.getApi().trackSessionStart(new SessionStartEvent(
-                session.getSessionUuid(),
-                player.getUniqueId().toString(),
-                player.getName(),
-                Platform.JAVA,
-                null,
-                ipAddress,
-                joinDomain,
-                config.getServerName(),
-                null
-            ));
-
-            if (config.isDebug()) {
-                plugin.getLogger().info("[MCTrack] Network session started for " + player.getName());
-            }
+        // Handshake hostname, picked up by the join that follows (no DNS lookup)
+        String hostname = event.getHostname();
+        if (hostname != null) {
+            plugin.getCapturePipeline().publishLogin(event.getPlayer().getUniqueId(), hostname);
         }
+    }
 
-        // Track gamemode session if API key is scoped to a gamemode
-        if (config.hasGamemode()) {
-            plugin.getApi().trackGamemodeSessionStart(new GamemodeSessionStartEvent(
-                session.getGamemodeSessionUuid(),
-                player.getUniqueId().toString(),
-                player.getName(),
-                config.getGamemodeId(),
-                config.getServerName(),
-                ipAddress,
-                Platform.JAVA.name().toLowerCase(),
-                null
-            ));
-
-            if (config.isDebug()) {
-                plugin.getLogger().info("[MCTrack] Gamemode session started for " + player.getName());
-            }
-        }
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
 
-        if (config.isDebug()) {
-            plugin.getLogger().info("[MCTrack] Player " + player.getName() + " joined - Session: " + session.getSessionUuid());
-        }
+        InetSocketAddress address = plugin.getMCTrackConfig().isTrackIpAddresses() ? player.getAddress() : null;
+        plugin.getCapturePipeline().publishJoin(player.getUniqueId(), player.getName(),
+            address != null ? address.getAddress() : null);
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerQuit(PlayerQuitEvent event) {
         Player player = event.getPlayer();
-        MCTrackConfig config = plugin.getMCTrackConfig();
-
-        // Get and remove session
-        PlayerSession session = SessionManager.removeSession(player.getUniqueId());
-
-        if (session != null) {
-            // End network session if no-proxy mode
-            if (config.isNoProxy()) {
-                plugin.getApi().trackSessionEnd(new SessionEndEvent(
-                    session.getSessionUuid(),
-                    player.getUniqueId().toString()
-                ));
-
-                if (config.isDebug()) {
-                    plugin.getLogger().info("[MCTrack] Network session ended for " + player.getName());
-                }
-            }
-
-            // End gamemode session if API key is scoped to a gamemode
-            if (config.hasGamemode()) {
-                plugin.getApi().trackGamemodeSessionEnd(new GamemodeSessionEndEvent(
-                    session.getGamemodeSessionUuid(),
-                    player.getUniqueId().toString()
-                ));
-
-                if (config.isDebug()) {
-                    plugin.getLogger().info("[MCTrack] Gamemode session ended for " + player.getName());
-                }
-            }
-
-            if (config.isDebug()) {
-                plugin.getLogger().info("[MCTrack] Player " + player.getName() + " quit - Session: " + session.getSessionUuid());
-            }
-        }
+        plugin.getCapturePipeline().publishQuit(player.getUniqueId(), player.getName());
     }
 }
@@ -0,0 +1,38 @@
+package com.mctrack.spigot.scheduler;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskScheduler} on the Bukkit scheduler, for servers with a single main thread.
+ */
+class BukkitTaskScheduler implements TaskScheduler {
+
+    private static final long MILLIS_PER_TICK = 50;
+
+    private final Plugin plugin;
+
+    BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long period, TimeUnit unit) {
+        long ticks = Math.max(1, unit.toMillis(period) / MILLIS_PER_TICK);
+        BukkitTask scheduled = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, task, ticks, ticks);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public Task runGlobal(Runnable task) {
+        BukkitTask scheduled = plugin.getServer().getScheduler().runTask(plugin, task);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void cancelTasks() {
+        plugin.getServer().getScheduler().cancelTasks(plugin);
+    }
+}
@@ -0,0 +1,39 @@
+package com.mctrack.spigot.scheduler;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TaskScheduler} for Folia, which has no main thread: timers run on the async scheduler
+ * and global work on the global region scheduler. Only loaded when Folia is detected.
+ */
+class FoliaTaskScheduler implements TaskScheduler {
+
+    private final Plugin plugin;
+
+    FoliaTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public Task runAsyncTimer(Runnable task, long period, TimeUnit unit) {
+        ScheduledTask scheduled = plugin.getServer().getAsyncScheduler()
+            .runAtFixedRate(plugin, ignored -> task.run(), period, period, unit);
+        return scheduled::cancel;
+    }
+
+    @Override
+    public Task runGlobal(Runnable task) {
+        ScheduledTask scheduled = plugin.getServer().getGlobalRegionScheduler()
+            .run(plugin, ignored -> task.run());
+        return scheduled::cancel;
+    }
+
+    @Override
+    public void cancelTasks() {
+        plugin.getServer().getAsyncScheduler().cancelTasks(plugin);
+        plugin.getServer().getGlobalRegionScheduler().cancelTasks(plugin);
+    }
+}
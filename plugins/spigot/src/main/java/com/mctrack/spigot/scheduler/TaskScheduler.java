@@ -0,0 +1,48 @@
+package com.mctrack.spigot.scheduler;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the plugin's tasks on whatever threading model the server uses: the Bukkit
+ * scheduler on Spigot/Paper, the global region and async schedulers on Folia.
+ */
+public interface TaskScheduler {
+
+    /**
+     * Handle to a scheduled task.
+     */
+    interface Task {
+        void cancel();
+    }
+
+    /**
+     * Runs the task repeatedly off every server thread, first after one period.
+     */
+    Task runAsyncTimer(Runnable task, long period, TimeUnit unit);
+
+    /**
+     * Runs the task once on the thread that owns global server state
+     * (the main thread, or Folia's global region thread).
+     */
+    Task runGlobal(Runnable task);
+
+    /**
+     * Cancels every task this plugin scheduled.
+     */
+    void cancelTasks();
+
+    static TaskScheduler create(Plugin plugin) {
+        return isFolia() ? new FoliaTaskScheduler(plugin) : new BukkitTaskScheduler(plugin);
+    }
+
+    static boolean isFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
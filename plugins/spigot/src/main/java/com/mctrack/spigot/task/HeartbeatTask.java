@@ -1,12 +1,8 @@
 package com.mctrack.spigot.task;
 
-import com.mctrack.common.model.SessionHeartbeatEvent;
-import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
 import com.mctrack.spigot.MCTrackPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
-public class HeartbeatTask extends BukkitRunnable {
+public class HeartbeatTask implements Runnable {
 
     private final MCTrackPlugin plugin;
 
@@ -16,17 +12,10 @@ public class HeartbeatTask extends BukkitRunnable {
 
     @Override
     public void run() {
-        for (PlayerSession session : SessionManager.getAllSessions()) {
-            plugin.getApi().trackHeartbeat(new SessionHeartbeatEvent(
-                session.getSessionUuid(),
-                session.getPlayerUuid().toString(),
-                session.getCurrentServer(),
-                null  // No longer tracking vanilla Minecraft gamemode
-            ));
-        }
+        plugin.getApi().trackHeartbeats(plugin.getSessionStore());
 
         if (plugin.getMCTrackConfig().isDebug()) {
-            plugin.getLogger().info("[MCTrack] Sent heartbeat for " + SessionManager.getOnlineCount() + " players");
+            plugin.getLogger().info("[MCTrack] Sent heartbeat for " + plugin.getSessionStore().getOnlineCount() + " players");
         }
     }
 }
@@ -5,7 +5,7 @@ import com.mctrack.common.api.MCTrackAPI;
 import com.mctrack.common.config.MCTrackConfig;
 import com.mctrack.common.model.*;
 import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
+import com.mctrack.common.util.SessionStore;
 import com.mctrack.velocity.command.MCTrackCommand;
 import com.mctrack.velocity.listener.PlayerListener;
 import com.velocitypowered.api.command.CommandMeta;
@@ -35,6 +35,7 @@ public class MCTrackVelocity {
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
+    private final SessionStore sessionStore = new SessionStore();
 
     private MCTrackConfig config;
     private MCTrackAPI api;
@@ -52,7 +53,7 @@ public class MCTrackVelocity {
         loadConfiguration();
 
         // Initialize API
-        api = new MCTrackAPI(config, message -> logger.info(message));
+        api = new MCTrackAPI(config, message -> logger.info(message), dataDirectory.toFile());
         api.start();
 
         // Register listeners
@@ -84,7 +85,7 @@ public class MCTrackVelocity {
         }
 
         // Clear sessions
-        SessionManager.clear();
+        sessionStore.clear();
 
         logger.info("MCTrack disabled!");
     }
@@ -98,32 +99,26 @@ public class MCTrackVelocity {
     public void reloadConfiguration() {
         loadConfiguration();
         api.stop();
-        api = new MCTrackAPI(config, message -> logger.info(message));
+        api = new MCTrackAPI(config, message -> logger.info(message), dataDirectory.toFile());
         api.start();
     }
 
     private void startHeartbeatTask() {
         server.getScheduler().buildTask(this, () -> {
-            for (PlayerSession session : SessionManager.getAllSessions()) {
-                api.trackHeartbeat(new SessionHeartbeatEvent(
-                    session.getSessionUuid(),
-                    session.getPlayerUuid().toString(),
-                    session.getCurrentServer(),
-                    null  // No longer tracking vanilla Minecraft gamemode
-                ));
-            }
+            api.trackHeartbeats(sessionStore);
 
             if (config.isDebug()) {
-                logger.info("[MCTrack] Sent heartbeat for " + SessionManager.getOnlineCount() + " players");
+                logger.info("[MCTrack] Sent heartbeat for " + sessionStore.getOnlineCount() + " players "
+                    + sessionStore.getServerCounts());
             }
         }).repeat(config.getHeartbeatInterval(), TimeUnit.SECONDS).schedule();
     }
 
     private void trackOnlinePlayers() {
         for (Player player : server.getAllPlayers()) {
-            PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getUsername());
+            PlayerSession session = sessionStore.createSession(player.getUniqueId(), player.getUsername());
             player.getCurrentServer().ifPresent(serverConnection ->
-                session.setCurrentServer(serverConnection.getServerInfo().getName())
+                sessionStore.updateServer(player.getUniqueId(), serverConnection.getServerInfo().getName())
             );
 
             api.trackSessionStart(new SessionStartEvent(
@@ -141,7 +136,7 @@ public class MCTrackVelocity {
     }
 
     private void endAllSessions() {
-        for (PlayerSession session : SessionManager.getAllSessions()) {
+        for (PlayerSession session : sessionStore.getAllSessions()) {
             api.trackSessionEnd(new SessionEndEvent(
                 session.getSessionUuid(),
                 session.getPlayerUuid().toString()
@@ -164,4 +159,8 @@ public class MCTrackVelocity {
     public MCTrackAPI getApi() {
         return api;
     }
+
+    public SessionStore getSessionStore() {
+        return sessionStore;
+    }
 }
@@ -1,12 +1,12 @@
 package com.mctrack.velocity.command;
 
-import com.mctrack.common.util.SessionManager;
 import com.mctrack.velocity.MCTrackVelocity;
 import com.velocitypowered.api.command.SimpleCommand;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 public class MCTrackCommand implements SimpleCommand {
@@ -50,14 +50,26 @@ public class MCTrackCommand implements SimpleCommand {
                 );
                 invocation.source().sendMessage(
                     Component.text("  Online Players: ", NamedTextColor.GRAY)
-                        .append(Component.text(String.valueOf(SessionManager.getOnlineCount()), NamedTextColor.WHITE))
+                        .append(Component.text(String.valueOf(plugin.getSessionStore().getOnlineCount()), NamedTextColor.WHITE))
                 );
+                for (Map.Entry<String, String> entry : plugin.getSessionStore().getStatus().entrySet()) {
+                    invocation.source().sendMessage(
+                        Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY)
+                            .append(Component.text(entry.getValue(), NamedTextColor.WHITE))
+                    );
+                }
                 invocation.source().sendMessage(
                     Component.text("  Debug Mode: ", NamedTextColor.GRAY)
                         .append(plugin.getMCTrackConfig().isDebug()
                             ? Component.text("Enabled", NamedTextColor.GREEN)
                             : Component.text("Disabled", NamedTextColor.GRAY))
                 );
+                for (Map.Entry<String, String> entry : plugin.getApi().getStatus().entrySet()) {
+                    invocation.source().sendMessage(
+                        Component.text("  " + entry.getKey() + ": ", NamedTextColor.GRAY)
+                            .append(Component.text(entry.getValue(), NamedTextColor.WHITE))
+                    );
+                }
                 break;
             default:
                 invocation.source().sendMessage(Component.text("MCTrack Commands:", NamedTextColor.GOLD));
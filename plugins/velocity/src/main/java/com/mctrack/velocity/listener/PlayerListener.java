@@ -1,8 +1,8 @@
 package com.mctrack.velocity.listener;
 
 import com.mctrack.common.model.*;
+import com.mctrack.common.util.JoinDomains;
 import com.mctrack.common.util.PlayerSession;
-import com.mctrack.common.util.SessionManager;
 import com.mctrack.velocity.MCTrackVelocity;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
@@ -23,7 +23,7 @@ public class PlayerListener {
         Player player = event.getPlayer();
 
         // Create session
-        PlayerSession session = SessionManager.createSession(player.getUniqueId(), player.getUsername());
+        PlayerSession session = plugin.getSessionStore().createSession(player.getUniqueId(), player.getUsername());
 
         // Get IP address if configured
         String ipAddress = null;
@@ -34,10 +34,7 @@ public class PlayerListener {
         // Get virtual host (join domain) if configured
         String joinDomain = null;
         if (plugin.getMCTrackConfig().isTrackJoinDomain()) {
-            player.getVirtualHost().ifPresent(host -> {
-                // Store temporarily - will be applied in the session start event
-            });
-            joinDomain = player.getVirtualHost().map(host -> host.getHostString()).orElse(null);
+            joinDomain = player.getVirtualHost().map(host -> JoinDomains.normalize(host.getHostString())).orElse(null);
         }
 
         // Track session start
@@ -63,7 +60,7 @@ public class PlayerListener {
         Player player = event.getPlayer();
 
         // Get and remove session
-        PlayerSession session = SessionManager.removeSession(player.getUniqueId());
+        PlayerSession session = plugin.getSessionStore().removeSession(player.getUniqueId());
 
         if (session != null) {
             plugin.getApi().trackSessionEnd(new SessionEndEvent(
@@ -80,7 +77,7 @@ public class PlayerListener {
     @Subscribe
     public void onServerConnected(ServerConnectedEvent event) {
         Player player = event.getPlayer();
-        PlayerSession session = SessionManager.getSession(player.getUniqueId());
+        PlayerSession session = plugin.getSessionStore().getSession(player.getUniqueId());
         if (session == null) return;
 
         String toServer = event.getServer().getServerInfo().getName();
@@ -89,7 +86,7 @@ public class PlayerListener {
             .orElse(null);
 
         // Update session
-        SessionManager.updateServer(player.getUniqueId(), toServer);
+        plugin.getSessionStore().updateServer(player.getUniqueId(), toServer);
 
         // Track server switch (only if there was a previous server)
         if (fromServer != null) {